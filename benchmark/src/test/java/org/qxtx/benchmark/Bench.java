@@ -0,0 +1,225 @@
+package org.qxtx.benchmark;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * A small harness in the way of JMH for benchmarks that run as unit tests. Every benchmark is warmed up, then
+ * measured for some iterations of a fixed time, and it reports the throughput and the bytes allocated per
+ * operation. Allocation is read from the thread by com.sun.management.ThreadMXBean, it is -1 on a JVM without it.
+ * <p>
+ * Settings are read from system properties, see the build file of the module.
+ */
+public final class Bench {
+    private static final int WARMUP_MILLIS = Integer.getInteger("bench.warmupMillis", 500);
+    private static final int ITERATIONS = Integer.getInteger("bench.iterations", 5);
+    private static final int ITERATION_MILLIS = Integer.getInteger("bench.iterationMillis", 1000);
+    private static final String SIZES = System.getProperty("bench.sizes", "1000,10000,100000,1000000");
+
+    /** Target time of a timed batch of operations, long enough for the clock and the allocation counter. */
+    private static final long BATCH_NANOS = 10000000L;
+
+    /**
+     * An operation to measure.
+     */
+    public abstract static class Op {
+        private final boolean setUpPerInvocation;
+
+        protected Op() {
+            this(false);
+        }
+
+        /**
+         * @param setUpPerInvocation    Call {@link #setUp()} before every operation and time them one by one,
+         *                              for operations that consume their state. Only fit for slow operations.
+         */
+        protected Op(boolean setUpPerInvocation) {
+            this.setUpPerInvocation = setUpPerInvocation;
+        }
+
+        /**
+         * Not measured. Called before every operation, or once before every batch of operations.
+         */
+        protected void setUp() {
+        }
+
+        /**
+         * @param i Count of the operation, to pick different inputs.
+         * @return  Something computed from the work, so the JIT can not drop it.
+         */
+        protected abstract long run(int i);
+    }
+
+    public static final class Result {
+        public final String name;
+        public final String param;
+        public final double opsPerSecond;
+        public final double error;
+        public final double bytesPerOp;
+
+        Result(String name, String param, double opsPerSecond, double error, double bytesPerOp) {
+            this.name = name;
+            this.param = param;
+            this.opsPerSecond = opsPerSecond;
+            this.error = error;
+            this.bytesPerOp = bytesPerOp;
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.US, "%-44s %9s %16.1f +- %12.1f ops/s %14.1f B/op",
+                    name, param, opsPerSecond, error, bytesPerOp);
+        }
+    }
+
+    private static final ThreadMXBean THREADS = ManagementFactory.getThreadMXBean();
+    private static final boolean ALLOCATION_SUPPORTED = isAllocationSupported();
+    /** Bytes allocated by reading the counter twice, taken off every reading. */
+    private static final long ALLOCATION_OVERHEAD = allocationOverhead();
+
+    /** Consumes the results of the operations. */
+    private static volatile long sink;
+
+    private final List<Result> results = new ArrayList<>();
+
+    /**
+     * @return  List sizes to run the size dependent benchmarks at.
+     */
+    public static int[] sizes() {
+        String[] parts = SIZES.split(",");
+        int[] sizes = new int[parts.length];
+        for (int i = 0; i < parts.length; i++) {
+            sizes[i] = Integer.parseInt(parts[i].trim());
+        }
+        return sizes;
+    }
+
+    public Result run(String name, Op op) {
+        return run(name, "-", op);
+    }
+
+    public Result run(String name, String param, Op op) {
+        long batch = 1;
+        long warmupEnd = System.nanoTime() + WARMUP_MILLIS * 1000000L;
+        while (System.nanoTime() < warmupEnd) {
+            long[] measured = measure(op, batch);
+            if (!op.setUpPerInvocation && measured[1] < BATCH_NANOS / 2 && batch < (1 << 24)) {
+                batch *= 2;
+            }
+        }
+
+        double[] throughput = new double[ITERATIONS];
+        long totalOps = 0;
+        long totalBytes = 0;
+        for (int iteration = 0; iteration < ITERATIONS; iteration++) {
+            long ops = 0;
+            long nanos = 0;
+            long iterationEnd = System.nanoTime() + ITERATION_MILLIS * 1000000L;
+            do {
+                long[] measured = measure(op, batch);
+                ops += measured[0];
+                nanos += measured[1];
+                totalBytes += measured[2];
+            } while (System.nanoTime() < iterationEnd);
+            totalOps += ops;
+            throughput[iteration] = ops * 1e9 / Math.max(1, nanos);
+        }
+
+        double mean = 0;
+        for (double value : throughput) {
+            mean += value;
+        }
+        mean /= ITERATIONS;
+        double variance = 0;
+        for (double value : throughput) {
+            variance += (value - mean) * (value - mean);
+        }
+        double error = ITERATIONS > 1 ? Math.sqrt(variance / (ITERATIONS - 1)) : 0;
+        double bytesPerOp = ALLOCATION_SUPPORTED ? (double) totalBytes / totalOps : -1;
+
+        Result result = new Result(name, param, mean, error, bytesPerOp);
+        results.add(result);
+        System.out.println(result);
+        return result;
+    }
+
+    /**
+     * Print all results of this harness together, like the summary of JMH.
+     */
+    public void printSummary(String title) {
+        System.out.println();
+        System.out.println("# " + title);
+        System.out.println(String.format(Locale.US, "%-44s %9s %16s   %12s %20s",
+                "Benchmark", "(param)", "Score", "Error", "Alloc"));
+        for (Result result : results) {
+            System.out.println(result);
+        }
+    }
+
+    /**
+     * @return  Operations done, nanos and bytes taken by them.
+     */
+    private static long[] measure(Op op, long batch) {
+        long result = 0;
+        long nanos = 0;
+        long bytes = 0;
+        if (op.setUpPerInvocation) {
+            for (int i = 0; i < batch; i++) {
+                op.setUp();
+                long allocatedBefore = allocatedBytes();
+                long start = System.nanoTime();
+                result += op.run(i);
+                nanos += System.nanoTime() - start;
+                bytes += allocatedBytes() - allocatedBefore - ALLOCATION_OVERHEAD;
+            }
+        } else {
+            op.setUp();
+            long allocatedBefore = allocatedBytes();
+            long start = System.nanoTime();
+            for (int i = 0; i < batch; i++) {
+                result += op.run(i);
+            }
+            nanos = System.nanoTime() - start;
+            bytes = allocatedBytes() - allocatedBefore - ALLOCATION_OVERHEAD;
+        }
+        sink += result;
+        return new long[]{batch, nanos, Math.max(0, bytes)};
+    }
+
+    private static long allocatedBytes() {
+        if (!ALLOCATION_SUPPORTED) {
+            return 0;
+        }
+        return ((com.sun.management.ThreadMXBean) THREADS).getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    private static boolean isAllocationSupported() {
+        try {
+            if (THREADS instanceof com.sun.management.ThreadMXBean) {
+                com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) THREADS;
+                if (!threads.isThreadAllocatedMemoryEnabled()) {
+                    threads.setThreadAllocatedMemoryEnabled(true);
+                }
+                return threads.isThreadAllocatedMemorySupported();
+            }
+        } catch (UnsupportedOperationException | LinkageError e) {
+            //Not a HotSpot like JVM.
+        }
+        return false;
+    }
+
+    private static long allocationOverhead() {
+        if (!ALLOCATION_SUPPORTED) {
+            return 0;
+        }
+        long min = Long.MAX_VALUE;
+        for (int i = 0; i < 1000; i++) {
+            long before = allocatedBytes();
+            min = Math.min(min, allocatedBytes() - before);
+        }
+        return min;
+    }
+}
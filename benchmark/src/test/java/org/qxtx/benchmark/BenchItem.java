@@ -0,0 +1,56 @@
+package org.qxtx.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Item of the lists that the benchmarks bind.
+ */
+public final class BenchItem {
+    public final long id;
+    public final String title;
+    public final String subtitle;
+    public final int version;
+
+    public BenchItem(long id, String title, String subtitle, int version) {
+        this.id = id;
+        this.title = title;
+        this.subtitle = subtitle;
+        this.version = version;
+    }
+
+    public static ArrayList<BenchItem> list(int size) {
+        ArrayList<BenchItem> list = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            list.add(new BenchItem(i, "Title " + i, "Subtitle " + i, 0));
+        }
+        return list;
+    }
+
+    /**
+     * Copy of the list with some items changed, removed and inserted at random, like a refresh from a server.
+     */
+    public static ArrayList<BenchItem> edited(List<BenchItem> source, int edits, long seed) {
+        Random random = new Random(seed);
+        ArrayList<BenchItem> list = new ArrayList<>(source);
+        long nextId = source.size();
+        for (int i = 0; i < edits && !list.isEmpty(); i++) {
+            int position = random.nextInt(list.size());
+            switch (i % 3) {
+                case 0:
+                    BenchItem old = list.get(position);
+                    list.set(position, new BenchItem(old.id, old.title, old.subtitle + "*", old.version + 1));
+                    break;
+                case 1:
+                    list.remove(position);
+                    break;
+                default:
+                    long id = nextId++;
+                    list.add(position, new BenchItem(id, "Title " + id, "Subtitle " + id, 0));
+                    break;
+            }
+        }
+        return list;
+    }
+}
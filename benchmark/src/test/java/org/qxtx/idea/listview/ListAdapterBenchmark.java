@@ -0,0 +1,93 @@
+package org.qxtx.idea.listview;
+
+import android.content.Context;
+import android.view.View;
+import android.widget.ListView;
+
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.qxtx.benchmark.Bench;
+import org.qxtx.benchmark.BenchItem;
+import org.qxtx.benchmark.R;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import java.util.ArrayList;
+
+/**
+ * Hot paths of the listview {@link IdeaAdapter}: getView with a reused convertView, and {@link IdeaAdapter.Holder}.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 21)
+public class ListAdapterBenchmark {
+    private static final Bench bench = new Bench();
+
+    private Context context;
+    private ListView parent;
+    private IdeaAdapter<BenchItem> adapter;
+
+    @Before
+    public void setUp() {
+        context = RuntimeEnvironment.application;
+        parent = new ListView(context);
+        ArrayList<BenchItem> list = BenchItem.list(1000);
+        adapter = new IdeaAdapter<BenchItem>(context, list, R.layout.bench_item) {
+            @Override
+            public void bindView(Holder holder, BenchItem obj) {
+                holder.setText(R.id.bench_title, obj.title);
+                holder.setText(R.id.bench_subtitle, obj.subtitle);
+                holder.setText(R.id.bench_badge, obj.version == 0 ? "" : "new");
+                holder.setVisibility(R.id.bench_detail, View.GONE);
+            }
+        };
+    }
+
+    @AfterClass
+    public static void summary() {
+        bench.printSummary("IdeaAdapter (listview)");
+    }
+
+    @Test
+    public void getView() {
+        final int size = adapter.getCount();
+        final View convertView = adapter.getView(0, null, parent);
+
+        bench.run("getView convertView reused", new Bench.Op() {
+            @Override
+            protected long run(int i) {
+                return adapter.getView(i % size, convertView, parent).getId();
+            }
+        });
+        bench.run("getView inflated", new Bench.Op() {
+            @Override
+            protected long run(int i) {
+                return adapter.getView(i % size, null, parent).getId();
+            }
+        });
+    }
+
+    @Test
+    public void holderBind() {
+        final View convertView = IdeaAdapter.Holder.bind(0, null, parent, R.layout.bench_item, context).getItem();
+
+        bench.run("Holder.bind convertView reused", new Bench.Op() {
+            @Override
+            protected long run(int i) {
+                IdeaAdapter.Holder holder = IdeaAdapter.Holder.bind(i, convertView, parent, R.layout.bench_item, context);
+                return holder.getItemPosition();
+            }
+        });
+        bench.run("Holder.getView", new Bench.Op() {
+            private final IdeaAdapter.Holder holder = (IdeaAdapter.Holder) convertView.getTag();
+
+            @Override
+            protected long run(int i) {
+                View view = holder.getView(i % 2 == 0 ? R.id.bench_title : R.id.bench_icon);
+                return view.getId();
+            }
+        });
+    }
+}
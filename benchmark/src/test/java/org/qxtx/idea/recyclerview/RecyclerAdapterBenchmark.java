@@ -0,0 +1,255 @@
+package org.qxtx.idea.recyclerview;
+
+import android.content.Context;
+import android.support.v7.util.DiffUtil;
+import android.support.v7.widget.LinearLayoutManager;
+import android.support.v7.widget.RecyclerView;
+import android.view.MotionEvent;
+import android.view.View;
+
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.qxtx.benchmark.Bench;
+import org.qxtx.benchmark.BenchItem;
+import org.qxtx.benchmark.R;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Hot paths of {@link IdeaAdapter}: view lookups and listeners of {@link IdeaAdapter.MyHolder}, binding,
+ * replacing the whole list, diffing and the range edits. The adapter is not attached to a RecyclerView, so the
+ * notifications only reach the adapter itself, what is measured is the work of the adapter.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 21)
+public class RecyclerAdapterBenchmark {
+    private static final int[] VIEW_IDS = {
+            R.id.bench_icon, R.id.bench_title, R.id.bench_subtitle,
+            R.id.bench_detail, R.id.bench_badge, R.id.bench_action
+    };
+
+    private static final Bench bench = new Bench();
+
+    private Context context;
+    private RecyclerView parent;
+    private IdeaAdapter<BenchItem> adapter;
+
+    @Before
+    public void setUp() {
+        context = RuntimeEnvironment.application;
+        parent = new RecyclerView(context);
+        parent.setLayoutManager(new LinearLayoutManager(context));
+        adapter = new IdeaAdapter<BenchItem>(context, R.layout.bench_item, null) {
+            @Override
+            void onBind(MyHolder viewHolder, int pos, List<BenchItem> data) {
+                BenchItem item = data.get(pos);
+                viewHolder.setText(R.id.bench_title, item.title);
+                viewHolder.setText(R.id.bench_subtitle, item.subtitle);
+                viewHolder.setText(R.id.bench_badge, item.version == 0 ? "" : "new");
+            }
+        };
+        adapter.setOnItemChildClickListener(R.id.bench_action, new IdeaAdapter.OnItemChildClickListener<BenchItem>() {
+            @Override
+            public void onItemChildClick(View view, int position, BenchItem item) {
+            }
+        });
+    }
+
+    @AfterClass
+    public static void summary() {
+        bench.printSummary("IdeaAdapter (recyclerview)");
+    }
+
+    @Test
+    public void holderLookups() {
+        adapter.setListData(BenchItem.list(1));
+        final IdeaAdapter<BenchItem>.MyHolder holder = adapter.createViewHolder(parent, adapter.getItemViewType(0));
+        final View itemView = holder.itemView;
+
+        bench.run("MyHolder.getView", new Bench.Op() {
+            @Override
+            protected long run(int i) {
+                View view = holder.getView(VIEW_IDS[i % VIEW_IDS.length]);
+                return view.getId();
+            }
+        });
+        bench.run("View.findViewById (baseline)", new Bench.Op() {
+            @Override
+            protected long run(int i) {
+                View view = itemView.findViewById(VIEW_IDS[i % VIEW_IDS.length]);
+                return view.getId();
+            }
+        });
+    }
+
+    @Test
+    public void holderListeners() {
+        adapter.setListData(BenchItem.list(1));
+        final IdeaAdapter<BenchItem>.MyHolder holder = adapter.createViewHolder(parent, adapter.getItemViewType(0));
+        final View.OnClickListener click = new View.OnClickListener() {
+            @Override
+            public void onClick(View v) {
+            }
+        };
+        final View.OnTouchListener touch = new View.OnTouchListener() {
+            @Override
+            public boolean onTouch(View v, MotionEvent event) {
+                return false;
+            }
+        };
+
+        bench.run("MyHolder.setListener click", new Bench.Op() {
+            @Override
+            protected long run(int i) {
+                return holder.setListener(R.id.bench_action, click) ? 1 : 0;
+            }
+        });
+        bench.run("MyHolder.setListener touch", new Bench.Op() {
+            @Override
+            protected long run(int i) {
+                return holder.setListener(R.id.bench_action, touch) ? 1 : 0;
+            }
+        });
+        bench.run("MyHolder.setOnClickListener", new Bench.Op() {
+            @Override
+            protected long run(int i) {
+                return holder.setOnClickListener(R.id.bench_action, click) ? 1 : 0;
+            }
+        });
+    }
+
+    @Test
+    public void bind() {
+        final int size = 1000;
+        adapter.setListData(BenchItem.list(size));
+        final IdeaAdapter<BenchItem>.MyHolder holder = adapter.createViewHolder(parent, adapter.getItemViewType(0));
+
+        bench.run("createViewHolder", new Bench.Op() {
+            @Override
+            protected long run(int i) {
+                return adapter.createViewHolder(parent, adapter.getItemViewType(0)).itemView.getId();
+            }
+        });
+        bench.run("onBindViewHolder", new Bench.Op() {
+            @Override
+            protected long run(int i) {
+                adapter.onBindViewHolder(holder, i % size);
+                return holder.itemView.getId();
+            }
+        });
+    }
+
+    @Test
+    public void setListData() {
+        for (final int size : Bench.sizes()) {
+            final ArrayList<BenchItem> source = BenchItem.list(size);
+            adapter.setListData(new ArrayList<>(source));
+
+            bench.run("setListData", String.valueOf(size), new Bench.Op(true) {
+                private ArrayList<BenchItem> next;
+
+                @Override
+                protected void setUp() {
+                    next = new ArrayList<>(source);
+                }
+
+                @Override
+                protected long run(int i) {
+                    adapter.setListData(next);
+                    return adapter.getItemCount();
+                }
+            });
+        }
+    }
+
+    @Test
+    public void diffAndNotify() {
+        for (final int size : Bench.sizes()) {
+            final ArrayList<BenchItem> source = BenchItem.list(size);
+            final int edits = Math.max(1, Math.min(size / 100, 60));
+
+            bench.run("calculateDiff+applyDiff", String.valueOf(size), new Bench.Op(true) {
+                private ArrayList<BenchItem> current;
+                private ArrayList<BenchItem> next;
+
+                @Override
+                protected void setUp() {
+                    current = new ArrayList<>(source);
+                    adapter.setListData(current);
+                    next = BenchItem.edited(source, edits, size);
+                }
+
+                @Override
+                protected long run(int i) {
+                    DiffUtil.DiffResult result = DiffUtil.calculateDiff(new ItemDiff(current, next), true);
+                    adapter.applyDiff(next, result);
+                    return adapter.getItemCount();
+                }
+            });
+        }
+    }
+
+    @Test
+    public void rangeEdits() {
+        for (final int size : Bench.sizes()) {
+            adapter.setListData(BenchItem.list(size));
+            final List<BenchItem> chunk = BenchItem.list(10);
+
+            bench.run("insertRange+removeRange+flushEdits", String.valueOf(size), new Bench.Op() {
+                @Override
+                protected long run(int i) {
+                    int position = (i * 31) % size;
+                    adapter.insertRange(position, chunk);
+                    adapter.removeRange(position, chunk.size());
+                    adapter.flushEdits();
+                    return adapter.getItemCount();
+                }
+            });
+            bench.run("replace+flushEdits", String.valueOf(size), new Bench.Op() {
+                @Override
+                protected long run(int i) {
+                    int position = (i * 31) % size;
+                    adapter.replace(position, chunk.get(i % chunk.size()));
+                    adapter.flushEdits();
+                    return adapter.getItemCount();
+                }
+            });
+        }
+    }
+
+    private static final class ItemDiff extends DiffUtil.Callback {
+        private final List<BenchItem> oldList;
+        private final List<BenchItem> newList;
+
+        ItemDiff(List<BenchItem> oldList, List<BenchItem> newList) {
+            this.oldList = oldList;
+            this.newList = newList;
+        }
+
+        @Override
+        public int getOldListSize() {
+            return oldList.size();
+        }
+
+        @Override
+        public int getNewListSize() {
+            return newList.size();
+        }
+
+        @Override
+        public boolean areItemsTheSame(int oldItemPosition, int newItemPosition) {
+            return oldList.get(oldItemPosition).id == newList.get(newItemPosition).id;
+        }
+
+        @Override
+        public boolean areContentsTheSame(int oldItemPosition, int newItemPosition) {
+            return oldList.get(oldItemPosition).version == newList.get(newItemPosition).version;
+        }
+    }
+}
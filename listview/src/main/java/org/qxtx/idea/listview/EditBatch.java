@@ -0,0 +1,170 @@
+package org.qxtx.idea.listview;
+
+import android.view.Choreographer;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * 等待下一帧的列表修改
+ * 修改不会马上作用到列表上，而是在下一帧到来时一起作用，这样一帧只需要通知一次刷新。
+ * 只能在主线程使用
+ */
+final class EditBatch<T> implements Choreographer.FrameCallback {
+    private static final int INSERT = 0;
+    private static final int REMOVE = 1;
+    private static final int MOVE = 2;
+    private static final int REPLACE = 3;
+
+    //插入到列表末端，不管那时列表有多长
+    private static final int END = -1;
+
+    interface Target {
+        //不算等待中的修改时，列表的长度
+        int committedSize();
+
+        //帧到来了，需要调用applyTo()作用修改并通知刷新
+        void onEditFrame();
+    }
+
+    private final Target target;
+    private final ArrayList<Edit<T>> edits = new ArrayList<>();
+    private int sizeDelta;
+    private boolean scheduled;
+
+    EditBatch(Target target) {
+        this.target = target;
+    }
+
+    boolean isEmpty() {
+        return edits.isEmpty();
+    }
+
+    //所有修改作用后列表的长度
+    int pendingSize() {
+        return target.committedSize() + sizeDelta;
+    }
+
+    void append(Collection<? extends T> items) {
+        if (items == null || items.isEmpty()) {
+            return;
+        }
+        add(INSERT, END, items.size(), 0, new ArrayList<T>(items));
+    }
+
+    void insert(int position, Collection<? extends T> items) {
+        checkRange(position, 0, pendingSize());
+        if (items == null || items.isEmpty()) {
+            return;
+        }
+        add(INSERT, position, items.size(), 0, new ArrayList<T>(items));
+    }
+
+    void remove(int position, int count) {
+        checkRange(position, count, pendingSize());
+        if (count == 0) {
+            return;
+        }
+        add(REMOVE, position, count, 0, null);
+    }
+
+    void move(int fromPosition, int toPosition) {
+        int size = pendingSize();
+        checkRange(fromPosition, 1, size);
+        checkRange(toPosition, 1, size);
+        if (fromPosition == toPosition) {
+            return;
+        }
+        add(MOVE, fromPosition, 1, toPosition, null);
+    }
+
+    void replace(int position, List<? extends T> items) {
+        if (items == null || items.isEmpty()) {
+            return;
+        }
+        checkRange(position, items.size(), pendingSize());
+        add(REPLACE, position, items.size(), 0, new ArrayList<T>(items));
+    }
+
+    /**
+     * 按顺序作用所有修改
+     * @return 列表是否有变化
+     */
+    boolean applyTo(List<T> data) {
+        unschedule();
+        boolean changed = !edits.isEmpty();
+
+        for (int i = 0; i < edits.size(); i++) {
+            Edit<T> edit = edits.get(i);
+            switch (edit.type) {
+                case INSERT:
+                    data.addAll(edit.position == END ? data.size() : edit.position, edit.items);
+                    break;
+                case REMOVE:
+                    data.subList(edit.position, edit.position + edit.count).clear();
+                    break;
+                case MOVE:
+                    data.add(edit.toPosition, data.remove(edit.position));
+                    break;
+                case REPLACE:
+                    for (int j = 0; j < edit.count; j++) {
+                        data.set(edit.position + j, edit.items.get(j));
+                    }
+                    break;
+            }
+        }
+
+        edits.clear();
+        sizeDelta = 0;
+        return changed;
+    }
+
+    @Override
+    public void doFrame(long frameTimeNanos) {
+        scheduled = false;
+        target.onEditFrame();
+    }
+
+    private void unschedule() {
+        if (scheduled) {
+            scheduled = false;
+            Choreographer.getInstance().removeFrameCallback(this);
+        }
+    }
+
+    private void add(int type, int position, int count, int toPosition, List<T> items) {
+        Edit<T> edit = new Edit<>();
+        edit.type = type;
+        edit.position = position;
+        edit.count = count;
+        edit.toPosition = toPosition;
+        edit.items = items;
+        edits.add(edit);
+
+        if (type == INSERT) {
+            sizeDelta += count;
+        } else if (type == REMOVE) {
+            sizeDelta -= count;
+        }
+
+        if (!scheduled) {
+            scheduled = true;
+            Choreographer.getInstance().postFrameCallback(this);
+        }
+    }
+
+    private static void checkRange(int position, int count, int size) {
+        if (position < 0 || count < 0 || position + count > size) {
+            throw new IndexOutOfBoundsException("position " + position + ", count " + count + ", size " + size);
+        }
+    }
+
+    private static final class Edit<T> {
+        int type;
+        int position;
+        int count;
+        int toPosition;
+        List<T> items;
+    }
+}
@@ -1,19 +1,28 @@
 package org.qxtx.idea.listview;
 
 import android.content.Context;
+import android.graphics.drawable.Drawable;
+import android.text.Layout;
 import android.text.TextUtils;
 import android.util.Log;
 import android.util.SparseArray;
+import android.util.SparseIntArray;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
 import android.widget.AdapterView;
 import android.widget.BaseAdapter;
+import android.widget.Filter;
+import android.widget.Filterable;
 import android.widget.ImageView;
 import android.widget.ListView;
 import android.widget.TextView;
 
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Executor;
 
 /**
  * Created by QXTX-OBOOK on 2017/9/10.
@@ -24,10 +33,57 @@ import java.util.ArrayList;
  * 3、布局id
  */
 
-public abstract class IdeaAdapter<T> extends BaseAdapter {
+public abstract class IdeaAdapter<T> extends BaseAdapter implements Filterable {
     private Context context;
     private ArrayList<T> list;
     private int layoutRes;//布局的id需要从外面传进来，bind中需要用它来获取convertView
+    private MultiLayout multiLayout;//不为空时，每个item的布局由它决定，layoutRes不再使用
+    private final SparseIntArray viewTypes = new SparseIntArray();//布局id到viewType的映射，viewType从0开始
+    private final SparseArray<ViewBindingTable> bindingTables = new SparseArray<>();//每个布局一张view id表
+    private ImageLoader imageLoader;//不为空时，图片在后台线程解码
+    private TextPrecomputer<T> textPrecomputer;//不为空时，文本在后台线程提前排版
+    private ItemFilter<T> itemFilter;//设置了过滤关键字后才有
+    private boolean applyingFilter;//正在显示过滤结果，这次刷新不是列表本身变了
+
+    //过滤器从这里拿到和替换显示的列表
+    private final ItemFilter.Target<T> filterTarget = new ItemFilter.Target<T>() {
+        @Override
+        public List<T> currentList() {
+            //等待中的修改要先作用到列表上，否则会作用到过滤结果上
+            flushEdits();
+            if (list == null) {
+                list = new ArrayList<>();
+            }
+            return list;
+        }
+
+        @Override
+        public void showFiltered(List<T> items, boolean changed) {
+            list = items instanceof ArrayList ? (ArrayList<T>) items : new ArrayList<>(items);
+            if (!changed) {
+                return;
+            }
+            applyingFilter = true;
+            try {
+                notifyDataSetChanged();
+            } finally {
+                applyingFilter = false;
+            }
+        }
+    };
+
+    //等待下一帧一起作用的列表修改
+    private final EditBatch<T> edits = new EditBatch<>(new EditBatch.Target() {
+        @Override
+        public int committedSize() {
+            return getCount();
+        }
+
+        @Override
+        public void onEditFrame() {
+            flushEdits();
+        }
+    });
 
     public IdeaAdapter(Context context, ArrayList<T> list, int layoutRes) {
         this.context = context;
@@ -35,6 +91,28 @@ public abstract class IdeaAdapter<T> extends BaseAdapter {
         this.layoutRes = layoutRes;
     }
 
+    /**多布局
+     * ListView在setAdapter()时就要知道有几种viewType，所以这里要一次给出所有会用到的布局id
+     * 每种布局有各自的convertView回收池，复用时不会拿到别的布局的convertView
+     *
+     * @param multiLayout 返回每个位置的布局id，必须是layoutIds中的一个
+     * @param layoutIds   所有会用到的布局id
+     */
+    public IdeaAdapter(Context context, ArrayList<T> list, MultiLayout multiLayout, int... layoutIds) {
+        if (layoutIds.length == 0) {
+            throw new IllegalArgumentException("多布局至少需要一个布局id");
+        }
+        this.context = context;
+        this.list = list;
+        this.multiLayout = multiLayout;
+        this.layoutRes = layoutIds[0];
+        for (int id : layoutIds) {
+            if (viewTypes.indexOfKey(id) < 0) {
+                viewTypes.put(id, viewTypes.size());
+            }
+        }
+    }
+
     @Override
     public int getCount() {
         return list == null? 0 : list.size();
@@ -48,6 +126,30 @@ public abstract class IdeaAdapter<T> extends BaseAdapter {
         return position;
     }
 
+    //ListView按viewType分别回收convertView
+    @Override
+    public int getViewTypeCount() {
+        return multiLayout == null ? 1 : viewTypes.size();
+    }
+
+    @Override
+    public int getItemViewType(int position) {
+        if (multiLayout == null) {
+            return 0;
+        }
+        int layout = multiLayout.getLayoutId(position);
+        int viewType = viewTypes.get(layout, -1);
+        if (viewType < 0) {
+            throw new IllegalStateException("位置" + position + "的布局id " + layout + " 没有在构造方法中给出");
+        }
+        return viewType;
+    }
+
+    //当前位置使用的布局id
+    private int layoutResOf(int position) {
+        return multiLayout == null ? layoutRes : multiLayout.getLayoutId(position);
+    }
+
     //ViewGroup:上层layout， 利用它可以对上层layout进行操作
     @Override
     public View getView(int position, View convertView, ViewGroup parent) {
@@ -55,7 +157,14 @@ public abstract class IdeaAdapter<T> extends BaseAdapter {
          * 完成了findbyId部分
          * 完成了实例化convertView
          */
-        Holder holder = Holder.bind(position, convertView, parent, layoutRes, context);
+        int layout = layoutResOf(position);
+        Holder holder = Holder.bind(position, convertView, parent, layout, context, bindingTableOf(layout));
+        holder.imageLoader = imageLoader;
+        holder.textPrecomputer = textPrecomputer;
+        holder.item = getItem(position);
+        if (textPrecomputer != null) {
+            textPrecomputer.onBound(holder, position, list);
+        }
 
         /*这里的实现交由外部完成，set数据部分
          * 因为由于布局不一样，里面的属性也不一定相同，所以要在外部自定义完成；
@@ -67,6 +176,88 @@ public abstract class IdeaAdapter<T> extends BaseAdapter {
     }
 
 
+    /**
+     * 设置图片加载器，比如ImageLoader.getDefault(context)
+     * 之后Holder.setImageResource()会在后台线程解码图片并缓存，复用的convertView不会显示上一个item的图片
+     * 传入null则回到在主线程直接设置图片
+     */
+    public void setImageLoader(ImageLoader imageLoader) {
+        this.imageLoader = imageLoader;
+    }
+
+    /**
+     * 设置文本预排版器，之后会在后台线程为即将显示的item提前排版文本
+     * Holder.setText()设置LayoutTextView时直接使用算好的Layout，传入null则在设置文本时排版
+     */
+    public void setTextPrecomputer(TextPrecomputer<T> textPrecomputer) {
+        this.textPrecomputer = textPrecomputer;
+    }
+
+    /**
+     * 设置过滤关键字，之后getFilter().filter(query)只保留关键字中有词以查询的每个词开头的item，不区分大小写
+     * 关键字在后台线程建立索引，每个列表只建一次。查询为空时恢复显示整个列表
+     * 有查询时不能增删item，要先清空查询。更换关键字会清空当前的查询
+     */
+    public void setFilterKeyExtractor(FilterKeyExtractor<T> extractor) {
+        if (itemFilter != null) {
+            itemFilter.submit(null);
+        }
+        itemFilter = extractor == null ? null : new ItemFilter<>(filterTarget, extractor);
+    }
+
+    //设置过滤执行的线程池，默认为库的后台线程，在setFilterKeyExtractor()之后调用
+    public void setFilterExecutor(Executor executor) {
+        if (itemFilter != null) {
+            itemFilter.setExecutor(executor);
+        }
+    }
+
+    @Override
+    public Filter getFilter() {
+        if (itemFilter == null) {
+            throw new IllegalStateException("请先调用setFilterKeyExtractor()");
+        }
+        return itemFilter;
+    }
+
+    //数据变了，提前排版要从下一次getView()重新安排
+    @Override
+    public void notifyDataSetChanged() {
+        if (textPrecomputer != null) {
+            textPrecomputer.onDataChanged();
+        }
+        if (itemFilter != null && !applyingFilter) {
+            itemFilter.onListChanged();
+        }
+        super.notifyDataSetChanged();
+    }
+
+    /**
+     * 预先声明bindView()中会用到的view id
+     * 这样连第一个Holder也能在创建时一次找齐所有view，没声明的id会在第一次使用时记下
+     */
+    public void bindViewIds(int... viewIds) {
+        bindViewIdsForLayout(layoutRes, viewIds);
+    }
+
+    //同上，多布局时为指定的布局声明
+    public void bindViewIdsForLayout(int layoutRes, int... viewIds) {
+        ViewBindingTable table = bindingTableOf(layoutRes);
+        for (int viewId : viewIds) {
+            table.obtainSlot(viewId);
+        }
+    }
+
+    private ViewBindingTable bindingTableOf(int layoutRes) {
+        ViewBindingTable table = bindingTables.get(layoutRes);
+        if (table == null) {
+            table = new ViewBindingTable();
+            bindingTables.put(layoutRes, table);
+        }
+        return table;
+    }
+
+
 /*/***********************静态内部类Holder*****************************/
     /**
      * 这里的Holder需要完成的工作
@@ -78,25 +269,48 @@ public abstract class IdeaAdapter<T> extends BaseAdapter {
         private int position;
         private View convertView;//保存主view
         private Context context;
+        private final int layoutRes;//convertView的布局，复用时用来确认布局相同
 
         /**初始化item的view列表
-         * SparseArray有更好的性能较之ArrayList
-         * 这是为了保存item中的各种id
-         * 因为不知道不同的item中有多少属性，所以用一个list来存储各种id
+         * 同一布局的Holder共用一张view id表，每个id对应一个槽位
+         * 这里按槽位保存item中的各种view，取view只需要一次数组下标访问
+         */
+        private final ViewBindingTable table;
+        private View[] views;
+
+        /**按槽位记录上一次设置的图片和背景资源，以及设置后view上的drawable
+         * view上还是那个drawable时，再设置同一个资源会被跳过，不会触发requestLayout()和invalidate()
          */
-        private SparseArray<View> itemView;
+        private int[] boundImageRes = new int[0];
+        private Drawable[] boundImages = new Drawable[0];
+        private int[] boundBackgroundRes = new int[0];
+        private Drawable[] boundBackgrounds = new Drawable[0];
+        private ImageLoader imageLoader;//由adapter设置，为空时在主线程设置图片
+        private TextPrecomputer<?> textPrecomputer;//由adapter设置，为空时在主线程排版文本
+        private Object item;//当前绑定的item，用来查找提前排好的文本
 
 
         /**构造方法
-         * SparseArray初始化
          * 在这里找到主view并设置Tag
          * 保存context和itemView
          */
         public Holder(Context context, ViewGroup parent, int layoutRes) {
-            itemView = new SparseArray<>();
+            this(context, parent, layoutRes, new ViewBindingTable());
+        }
+
+        /**构造方法
+         * 表中已知的view在这里一次性找好
+         */
+        Holder(Context context, ViewGroup parent, int layoutRes, ViewBindingTable table) {
+            this.table = table;
             this.context = context;
+            this.layoutRes = layoutRes;
             convertView = LayoutInflater.from(context).inflate(layoutRes, parent, false);
             convertView.setTag(this);
+
+            int[] ids = table.ids();
+            views = new View[ids.length];
+            ViewBindingTable.fill(convertView, ids, views, 0);
         }
 
 
@@ -106,13 +320,22 @@ public abstract class IdeaAdapter<T> extends BaseAdapter {
          */
         public static Holder bind(int position, View convertView,
                                   ViewGroup parent, int layoutRes, Context context) {
+            return bind(position, convertView, parent, layoutRes, context, new ViewBindingTable());
+        }
+
+        //同上，table是这个布局共用的view id表
+        static Holder bind(int position, View convertView, ViewGroup parent, int layoutRes,
+                           Context context, ViewBindingTable table) {
             Holder holder = null;
-            if (convertView == null) {
-                Log.e("消息", "convertView为空");
-                holder = new Holder(context, parent, layoutRes);//这里完成了holder的两项基本工作
-            } else {
+            if (convertView != null) {
                 //从convertView中获取到holder
                 holder = (Holder)convertView.getTag();
+            }
+            if (holder == null || holder.layoutRes != layoutRes) {
+                //没有可复用的convertView，或者它是别的布局的（viewType没有正确区分布局时）
+                Log.e("消息", "convertView为空");
+                holder = new Holder(context, parent, layoutRes, table);//这里完成了holder的两项基本工作
+            } else {
                 holder.convertView = convertView;
             }
             holder.position = position;//得到一个position
@@ -122,18 +345,47 @@ public abstract class IdeaAdapter<T> extends BaseAdapter {
 
 /*/*************实例化item的各种属性、获取item位置*******************/
         /**
-         * 这个方法的功能是获取各种id提供给之后的set方法使用
-         * 并将这些id添加到一个list中保存
+         * 这个方法的功能是获取各种view提供给之后的set方法使用
+         * 先在id表中找到槽位，再按槽位从数组中取view
          */
         public <T extends View>T getView(int id) {
-            T t = (T)itemView.get(id);//从列表中获得id
-            if (t == null) {
-                //如果列表中没有，则从主View中拿，然后放进列表中，变相的完成了findById()方法
-                t = (T)convertView.findViewById(id);
-                //将id保存起来。因为sparseArray还可以用一个key来索引数据，提供两种索引方式。
-                itemView.put(id, t);
+            return (T)views[slotOf(id)];
+        }
+
+        //id对应的槽位，保证views数组足够长
+        private int slotOf(int id) {
+            int slot = table.slotOf(id);
+            if (slot == ViewBindingTable.NO_SLOT) {
+                slot = table.obtainSlot(id);//新的id，记到表里，之后创建的Holder会直接找好它
+            }
+            if (slot >= views.length) {
+                //Holder创建之后表里新增了id，补上这些view
+                int[] ids = table.ids();
+                View[] grown = new View[ids.length];
+                System.arraycopy(views, 0, grown, 0, views.length);
+                ViewBindingTable.fill(convertView, ids, grown, views.length);
+                views = grown;
+            }
+            return slot;
+        }
+
+        //记录数组跟上views数组的长度
+        private void ensureBoundSlots() {
+            if (boundImageRes.length < views.length) {
+                int length = views.length;
+                int[] imageRes = new int[length];
+                Drawable[] images = new Drawable[length];
+                int[] backgroundRes = new int[length];
+                Drawable[] backgrounds = new Drawable[length];
+                System.arraycopy(boundImageRes, 0, imageRes, 0, boundImageRes.length);
+                System.arraycopy(boundImages, 0, images, 0, boundImages.length);
+                System.arraycopy(boundBackgroundRes, 0, backgroundRes, 0, boundBackgroundRes.length);
+                System.arraycopy(boundBackgrounds, 0, backgrounds, 0, boundBackgrounds.length);
+                boundImageRes = imageRes;
+                boundImages = images;
+                boundBackgroundRes = backgroundRes;
+                boundBackgrounds = backgrounds;
             }
-            return t;//返回的可以是一个id
         }
 
         //提供获取当前的item
@@ -144,6 +396,10 @@ public abstract class IdeaAdapter<T> extends BaseAdapter {
         public int getItemPosition() {
             return position;
         }
+        //提供获取当前条目的布局id
+        public int getLayoutRes() {
+            return layoutRes;
+        }
 
 
 /*/******************实例化item中的各种属性************************/
@@ -163,8 +419,19 @@ public abstract class IdeaAdapter<T> extends BaseAdapter {
         //设置文本
         public Holder setText(int id, CharSequence text) {
             View view = getView(id);
-            if (view instanceof TextView) {
-                ((TextView) view).setText(text.toString());//需要将view转换成相应的view
+            if (view instanceof LayoutTextView) {
+                //有提前排好的Layout就直接使用
+                Layout layout = textPrecomputer == null ? null : textPrecomputer.find(item, id, text);
+                if (layout != null) {
+                    ((LayoutTextView) view).setTextLayout(layout);
+                } else {
+                    ((LayoutTextView) view).setText(text);
+                }
+            } else if (view instanceof TextView) {
+                //view自己保存着上一次的文本，和它相同的String不再设置；其它CharSequence可能带有不同的span，总是设置
+                if (!(text instanceof String && text.equals(((TextView) view).getText()))) {
+                    ((TextView) view).setText(text);//需要将view转换成相应的view
+                }
             }
             return this;//为什么要返回一个Holder类型的值？？？？看起来用不到，能不能不返回？
         }
@@ -184,22 +451,53 @@ public abstract class IdeaAdapter<T> extends BaseAdapter {
 
         //设置背景，包括Button， ImageButton，但不包括ImageView
         public Holder setBackgroundResource(int id, int drawableRes) {
-            View view = getView(id);
+            int slot = slotOf(id);
+            View view = views[slot];
+            ensureBoundSlots();
+            Drawable shown = view.getBackground();
+            if (drawableRes != 0 && boundBackgroundRes[slot] == drawableRes && shown != null && shown == boundBackgrounds[slot]) {
+                return this;
+            }
             view.setBackgroundResource(drawableRes);
+            boundBackgroundRes[slot] = drawableRes;
+            boundBackgrounds[slot] = view.getBackground();
             return this;
         }
 
-        //设置背景，ImageView独占
+        //设置背景，ImageView独占。设置了ImageLoader时在后台线程解码
         public Holder setImageResource(int id, int drawableRes) {
+            int slot = slotOf(id);
+            ImageView view = (ImageView)views[slot];
+            ensureBoundSlots();
+            Drawable shown = view.getDrawable();
+            if (drawableRes != 0 && boundImageRes[slot] == drawableRes && shown != null && shown == boundImages[slot]) {
+                return this;
+            }
+            if (imageLoader != null) {
+                imageLoader.loadResource(view, drawableRes);
+            } else {
+                view.setImageResource(drawableRes);
+            }
+            //后台解码时这里还是null，下一次绑定会再交给imageLoader
+            boundImageRes[slot] = drawableRes;
+            boundImages[slot] = view.getDrawable();
+            return this;
+        }
+
+        //设置本地图片文件，总是在后台线程解码，没有设置ImageLoader时使用默认的
+        public Holder setImageFile(int id, String path) {
             View view = getView(id);
-            ((ImageView)view).setImageResource(drawableRes);
+            ImageLoader loader = imageLoader != null ? imageLoader : ImageLoader.getDefault(context);
+            loader.loadFile((ImageView)view, path);
             return this;
         }
 
         //设置可见/隐藏
         public Holder setVisibility(int id, int visible) {
             View view = getView(id);
-            view.setVisibility(visible);
+            if (view.getVisibility() != visible) {
+                view.setVisibility(visible);
+            }
             return this;
         }
 
@@ -222,10 +520,18 @@ public abstract class IdeaAdapter<T> extends BaseAdapter {
     /**
      * 1、添加一个item（默认在队列末端）
      * 2、在制定位置添加 一个tiem
+     * 3、添加、插入、删除、移动、替换一段item
+     *
+     * 1和2马上作用并刷新，和以前一样，调用返回后getCount()、getItem()就能看到新的item
+     * 3的修改不会马上作用到列表上，而是等到下一帧和其它修改一起作用，一帧只通知一次刷新，
+     * 所以连续大量添加item也不会每次都刷新。位置参数已经算上了还在等待的修改。只能在主线程调用
      */
 
-    //添加 一个item（默认位置为列表末端）
+    //添加 一个item（默认位置为列表末端），马上刷新
     public void add(T obj) {
+        checkEditable();
+        //等待中的修改在前，先作用它们
+        flushEdits();
         if (list == null) {
             list = new ArrayList<>();
         }
@@ -233,8 +539,10 @@ public abstract class IdeaAdapter<T> extends BaseAdapter {
         notifyDataSetChanged();
     }
 
-    //在制定位置添加 一个item
+    //在制定位置添加 一个item，马上刷新
     public void add(int position, T obj) {
+        checkEditable();
+        flushEdits();
         if (list == null) {
             list = new ArrayList<>();
         }
@@ -242,5 +550,75 @@ public abstract class IdeaAdapter<T> extends BaseAdapter {
         notifyDataSetChanged();
     }
 
+    //添加一段item到列表末端
+    public void addAll(Collection<? extends T> items) {
+        checkEditable();
+        edits.append(items);
+    }
+
+    //在指定位置插入一段item
+    public void insertRange(int position, Collection<? extends T> items) {
+        checkEditable();
+        edits.insert(position, items);
+    }
+
+    //从指定位置开始删除count个item
+    public void removeRange(int position, int count) {
+        checkEditable();
+        edits.remove(position, count);
+    }
+
+    //移动一个item
+    public void move(int fromPosition, int toPosition) {
+        checkEditable();
+        edits.move(fromPosition, toPosition);
+    }
+
+    //从指定位置开始替换一段item
+    public void replace(int position, List<? extends T> items) {
+        checkEditable();
+        edits.replace(position, items);
+    }
+
+    //替换一个item
+    public void replace(int position, T obj) {
+        checkEditable();
+        edits.replace(position, Collections.singletonList(obj));
+    }
+
+    //不等下一帧，马上作用所有等待中的修改
+    public void flushEdits() {
+        if (edits.isEmpty()) {
+            return;
+        }
+        if (list == null) {
+            list = new ArrayList<>();
+        }
+        if (edits.applyTo(list)) {
+            notifyDataSetChanged();
+        }
+    }
+
+    //显示的是过滤结果时，修改会作用到过滤结果而不是列表上
+    private void checkEditable() {
+        if (itemFilter != null && itemFilter.isActive()) {
+            throw new IllegalStateException("有查询时不能修改列表，请先清空查询");
+        }
+    }
+
     public abstract void bindView(Holder holder, T obj);//抽象方法，用来设置各种属性
+
+    /**
+     * 多布局时返回每个位置的布局id，bindView()中可以通过holder.getLayoutRes()区分布局
+     */
+    public interface MultiLayout {
+        int getLayoutId(int pos);
+    }
+
+    /**
+     * 返回item用于过滤的文本，在后台线程调用
+     */
+    public interface FilterKeyExtractor<T> {
+        CharSequence getFilterKey(T item);
+    }
 }
@@ -0,0 +1,64 @@
+package org.qxtx.idea.listview;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.os.Process;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 适配器共用的线程
+ * 不应该在主线程做的工作交给background()，结果通过main()回到主线程
+ * 和recyclerview模块的IdeaExecutors相同，两个模块互不依赖，所以各有一份
+ */
+final class IdeaExecutors {
+    private static final int THREAD_COUNT = Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors() - 1));
+
+    private static Handler mainHandler;
+    private static Executor backgroundExecutor;
+
+    private IdeaExecutors() {}
+
+    //主线程的Handler
+    static synchronized Handler main() {
+        if (mainHandler == null) {
+            mainHandler = new Handler(Looper.getMainLooper());
+        }
+        return mainHandler;
+    }
+
+    static boolean isMainThread() {
+        return Looper.myLooper() == Looper.getMainLooper();
+    }
+
+    //几个后台优先级的守护线程，空闲一段时间后退出
+    static synchronized Executor background() {
+        if (backgroundExecutor == null) {
+            ThreadPoolExecutor executor = new ThreadPoolExecutor(THREAD_COUNT, THREAD_COUNT,
+                    30, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+                private final AtomicInteger count = new AtomicInteger();
+
+                @Override
+                public Thread newThread(final Runnable r) {
+                    Thread thread = new Thread(new Runnable() {
+                        @Override
+                        public void run() {
+                            Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+                            r.run();
+                        }
+                    }, "IdeaListAdapter-" + count.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+            executor.allowCoreThreadTimeOut(true);
+            backgroundExecutor = executor;
+        }
+        return backgroundExecutor;
+    }
+}
@@ -0,0 +1,327 @@
+package org.qxtx.idea.listview;
+
+import android.content.Context;
+import android.content.res.Resources;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.util.DisplayMetrics;
+import android.util.Log;
+import android.util.LruCache;
+import android.view.ViewGroup;
+import android.widget.ImageView;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.Executor;
+
+/**
+ * 在后台线程为item中的ImageView解码图片，IdeaAdapter.setImageLoader()之后由Holder.setImageResource()使用
+ * 1、图片按view的大小降采样，放进按字节数限制大小的内存缓存
+ * 2、从缓存中淘汰并且没有view在显示的Bitmap，会通过inBitmap复用来解码新图片，只复用自己解码出来的Bitmap
+ * 3、view只显示最后一次请求的结果，view请求了别的图片后，之前的请求就作废了
+ * 只能在主线程使用
+ *
+ * 和recyclerview模块的ImageLoader做法相同。两个模块各自单独发布、互不依赖，所以各有一份，
+ * 这里只保留Holder用到的部分
+ */
+public class ImageLoader {
+    private static final String TAG = "ImageLoader";
+
+    private static ImageLoader defaultLoader;
+
+    private final Resources resources;
+    private final DisplayMetrics displayMetrics;
+    private final LruCache<String, Bitmap> cache;
+    private final BitmapPool pool;
+    private Executor executor;
+
+    private final WeakHashMap<ImageView, Request> requests = new WeakHashMap<>();//每个view的请求
+    private final WeakHashMap<ImageView, Bitmap> shown = new WeakHashMap<>();//每个view显示的Bitmap
+    private final Set<Bitmap> cached = Collections.newSetFromMap(new IdentityHashMap<Bitmap, Boolean>());
+    //自己解码出来的Bitmap，只有它们可以被复用
+    private final Set<Bitmap> owned = Collections.newSetFromMap(new WeakHashMap<Bitmap, Boolean>());
+
+    /**
+     * @param maxCacheBytes 内存缓存的字节数，另外再留四分之一用于复用
+     */
+    public ImageLoader(Context context, int maxCacheBytes) {
+        resources = context.getApplicationContext().getResources();
+        displayMetrics = resources.getDisplayMetrics();
+        pool = new BitmapPool(Math.max(1, maxCacheBytes / 4));
+        cache = new LruCache<String, Bitmap>(Math.max(1, maxCacheBytes)) {
+            @Override
+            protected int sizeOf(String key, Bitmap value) {
+                return value.getAllocationByteCount();
+            }
+
+            @Override
+            protected void entryRemoved(boolean evicted, String key, Bitmap oldValue, Bitmap newValue) {
+                if (oldValue != newValue) {
+                    cached.remove(oldValue);
+                    recycleIfUnused(oldValue);
+                }
+            }
+        };
+    }
+
+    //所有适配器共用的加载器，缓存为应用最大内存的1/8
+    public static synchronized ImageLoader getDefault(Context context) {
+        if (defaultLoader == null) {
+            long maxMemory = Runtime.getRuntime().maxMemory();
+            defaultLoader = new ImageLoader(context, (int) Math.min(Integer.MAX_VALUE, maxMemory / 8));
+        }
+        return defaultLoader;
+    }
+
+    //设置解码用的线程池，null则使用库共用的后台线程
+    public ImageLoader setExecutor(Executor executor) {
+        this.executor = executor;
+        return this;
+    }
+
+    public void loadResource(ImageView view, int imgRes) {
+        load(view, new Request(imgRes, null));
+    }
+
+    public void loadFile(ImageView view, String path) {
+        load(view, new Request(0, path));
+    }
+
+    //view正在进行的请求作废，结果不会再显示
+    public void cancel(ImageView view) {
+        Request request = requests.remove(view);
+        if (request != null) {
+            request.cancelled = true;
+        }
+    }
+
+    //清空缓存，比如内存不足的时候
+    public void evictAll() {
+        cache.evictAll();
+        pool.clear();
+    }
+
+    private void load(ImageView view, Request request) {
+        request.width = targetSize(view.getWidth(), view.getLayoutParams() == null ? 0 : view.getLayoutParams().width,
+                displayMetrics.widthPixels);
+        request.height = targetSize(view.getHeight(), view.getLayoutParams() == null ? 0 : view.getLayoutParams().height,
+                displayMetrics.heightPixels);
+        request.key = request.path != null
+                ? request.path + '@' + request.width + 'x' + request.height
+                : "res:" + request.imgRes + '@' + request.width + 'x' + request.height;
+
+        Request running = requests.get(view);
+        if (running != null && !running.cancelled && running.key.equals(request.key)) {
+            return;
+        }
+        cancel(view);
+
+        Bitmap hit = cache.get(request.key);
+        if (hit != null) {
+            setShown(view, hit);
+            view.setImageBitmap(hit);
+            return;
+        }
+
+        //解码期间不要让复用的view显示上一个item的图片
+        view.setImageDrawable(null);
+        setShown(view, null);
+        requests.put(view, request);
+        request.view = view;
+        (executor == null ? IdeaExecutors.background() : executor).execute(request);
+    }
+
+    private void onDecoded(Request request, Bitmap bitmap) {
+        ImageView view = request.view;
+        if (bitmap == null) {
+            if (view != null && requests.get(view) == request) {
+                requests.remove(view);
+                if (!request.cancelled && request.imgRes != 0) {
+                    //不是位图，比如矢量图或者shape，交给view自己加载
+                    view.setImageResource(request.imgRes);
+                }
+            }
+            return;
+        }
+
+        owned.add(bitmap);
+        cached.add(bitmap);
+        cache.put(request.key, bitmap);
+        if (request.cancelled || view == null || requests.get(view) != request) {
+            return;
+        }
+        requests.remove(view);
+        setShown(view, bitmap);
+        view.setImageBitmap(bitmap);
+    }
+
+    private void setShown(ImageView view, Bitmap bitmap) {
+        Bitmap old = bitmap == null ? shown.remove(view) : shown.put(view, bitmap);
+        if (old != null && old != bitmap) {
+            recycleIfUnused(old);
+        }
+    }
+
+    //Bitmap是自己解码的、不在缓存中、也没有view在显示时，放进复用池
+    private void recycleIfUnused(Bitmap bitmap) {
+        if (!bitmap.isMutable() || !owned.contains(bitmap) || cached.contains(bitmap)
+                || shown.containsValue(bitmap)) {
+            return;
+        }
+        pool.put(bitmap);
+    }
+
+    private Bitmap decode(Request request) {
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inJustDecodeBounds = true;
+        decode(request, options);
+        if (options.outWidth <= 0 || options.outHeight <= 0) {
+            return null;
+        }
+
+        options.inJustDecodeBounds = false;
+        options.inSampleSize = sampleSize(options.outWidth, options.outHeight, request.width, request.height);
+        options.inMutable = true;
+        options.inBitmap = pool.take(options.outWidth / options.inSampleSize,
+                options.outHeight / options.inSampleSize, options.inPreferredConfig);
+        try {
+            return decode(request, options);
+        } catch (IllegalArgumentException e) {
+            //复用的Bitmap放不下
+            options.inBitmap = null;
+            return decode(request, options);
+        }
+    }
+
+    private Bitmap decode(Request request, BitmapFactory.Options options) {
+        return request.path != null
+                ? BitmapFactory.decodeFile(request.path, options)
+                : BitmapFactory.decodeResource(resources, request.imgRes, options);
+    }
+
+    private static int targetSize(int measured, int layoutParam, int screen) {
+        if (measured > 0) {
+            return measured;
+        }
+        if (layoutParam > 0) {
+            return layoutParam;
+        }
+        return layoutParam == ViewGroup.LayoutParams.WRAP_CONTENT ? 0 : screen;
+    }
+
+    //解码后不小于目标大小的最大的2的幂，目标为0表示不限制
+    private static int sampleSize(int width, int height, int targetWidth, int targetHeight) {
+        int sampleSize = 1;
+        if (targetWidth <= 0 || targetHeight <= 0) {
+            return sampleSize;
+        }
+        while (width / (sampleSize * 2) >= targetWidth && height / (sampleSize * 2) >= targetHeight) {
+            sampleSize *= 2;
+        }
+        return sampleSize;
+    }
+
+    private final class Request implements Runnable {
+        final int imgRes;
+        final String path;
+        int width;
+        int height;
+        String key;
+        ImageView view;
+        volatile boolean cancelled;
+
+        Request(int imgRes, String path) {
+            this.imgRes = imgRes;
+            this.path = path;
+        }
+
+        @Override
+        public void run() {
+            if (cancelled) {
+                IdeaExecutors.main().post(new Runnable() {
+                    @Override
+                    public void run() {
+                        onDecoded(Request.this, null);
+                    }
+                });
+                return;
+            }
+
+            Bitmap bitmap = null;
+            try {
+                bitmap = decode(this);
+            } catch (RuntimeException | OutOfMemoryError e) {
+                Log.e(TAG, "Decode " + key + " fail", e);
+            }
+
+            final Bitmap result = bitmap;
+            IdeaExecutors.main().post(new Runnable() {
+                @Override
+                public void run() {
+                    onDecoded(Request.this, result);
+                }
+            });
+        }
+    }
+
+    /**
+     * 可以通过inBitmap复用的Bitmap，按字节数限制大小，在后台线程取用
+     */
+    private static final class BitmapPool {
+        private final int maxBytes;
+        private final List<Bitmap> bitmaps = new ArrayList<>();
+        private int bytes;
+
+        BitmapPool(int maxBytes) {
+            this.maxBytes = maxBytes;
+        }
+
+        synchronized void put(Bitmap bitmap) {
+            if (bitmap.isRecycled() || bitmaps.contains(bitmap)) {
+                return;
+            }
+            int size = bitmap.getAllocationByteCount();
+            if (size > maxBytes) {
+                return;
+            }
+            while (bytes + size > maxBytes && !bitmaps.isEmpty()) {
+                bytes -= bitmaps.remove(0).getAllocationByteCount();
+            }
+            bitmaps.add(bitmap);
+            bytes += size;
+        }
+
+        //返回能放下这个大小的最小的Bitmap，没有则返回null
+        synchronized Bitmap take(int width, int height, Bitmap.Config config) {
+            int needed = width * height * bytesPerPixel(config);
+            Bitmap best = null;
+            for (Bitmap bitmap : bitmaps) {
+                int size = bitmap.getAllocationByteCount();
+                if (size >= needed && (best == null || size < best.getAllocationByteCount())) {
+                    best = bitmap;
+                }
+            }
+            if (best != null) {
+                bitmaps.remove(best);
+                bytes -= best.getAllocationByteCount();
+            }
+            return best;
+        }
+
+        synchronized void clear() {
+            bitmaps.clear();
+            bytes = 0;
+        }
+
+        private static int bytesPerPixel(Bitmap.Config config) {
+            if (config == Bitmap.Config.RGB_565 || config == Bitmap.Config.ARGB_4444) {
+                return 2;
+            }
+            return config == Bitmap.Config.ALPHA_8 ? 1 : 4;
+        }
+    }
+}
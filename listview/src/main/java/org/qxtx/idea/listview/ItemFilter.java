@@ -0,0 +1,362 @@
+package org.qxtx.idea.listview;
+
+import android.widget.Filter;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.Executor;
+
+/**
+ * IdeaAdapter的过滤器
+ * 查询的每个词都是item过滤关键字中某个词的开头时，item被保留，不区分大小写
+ *
+ * 每个列表只在后台线程建一次索引，把所有关键字的词排好序，查询时只需二分找到以查询词开头的那一段
+ * 查询是上一次显示的查询加长时，只检查上一次的结果
+ * 结果是item在列表中的位置，和上一次的结果相同时不刷新
+ *
+ * Filter在自己的线程上逐个执行请求，停不下正在执行的那个，所以这里只借它把查询交回主线程，
+ * 真正的过滤在库的后台线程上执行，新的查询到来时正在执行的查询会停下并丢弃结果
+ */
+final class ItemFilter<T> extends Filter {
+    private static final String[] NO_WORDS = new String[0];
+    //每处理这么多个item检查一次是否已被取消
+    private static final int CHECK_MASK = 1023;
+
+    interface Target<T> {
+        //没有查询时显示的列表
+        List<T> currentList();
+
+        /**
+         * 显示过滤后的item
+         *
+         * @param changed 显示的item是否和之前不同
+         */
+        void showFiltered(List<T> items, boolean changed);
+    }
+
+    private final Target<T> target;
+    private final IdeaAdapter.FilterKeyExtractor<T> extractor;
+    private Executor executor;
+
+    private List<T> source;//有查询时被过滤的列表，没有查询时为空
+    private int sourceVersion;//source变化时加一，旧版本的索引需要重建
+    private String query = "";
+    private String shownQuery = "";
+    private int[] shown;//正在显示的、在shownIndex中的位置，为空表示显示整个列表
+    private Index<T> shownIndex;
+    private volatile Index<T> index;
+
+    private volatile int generation;//每次查询加一，不是最新的查询会停下
+
+    ItemFilter(Target<T> target, IdeaAdapter.FilterKeyExtractor<T> extractor) {
+        this.target = target;
+        this.extractor = extractor;
+    }
+
+    void setExecutor(Executor executor) {
+        this.executor = executor;
+    }
+
+    //是否有查询正在显示或执行
+    boolean isActive() {
+        return source != null;
+    }
+
+    //没有查询时显示的列表变了，索引过期
+    void onListChanged() {
+        if (source == null) {
+            sourceVersion++;
+        }
+    }
+
+    @Override
+    protected FilterResults performFiltering(CharSequence constraint) {
+        FilterResults results = new FilterResults();
+        results.values = constraint == null ? "" : constraint.toString();
+        return results;
+    }
+
+    @Override
+    protected void publishResults(CharSequence constraint, FilterResults results) {
+        submit((String) results.values);
+    }
+
+    //只能在主线程调用
+    void submit(CharSequence rawQuery) {
+        String newQuery = rawQuery == null ? "" : rawQuery.toString().trim().toLowerCase(Locale.ROOT);
+        if (newQuery.equals(query)) {
+            return;
+        }
+        query = newQuery;
+        if (source == null && !newQuery.isEmpty()) {
+            source = target.currentList();
+        }
+        start(newQuery);
+    }
+
+    private void start(final String runQuery) {
+        final int runGeneration = ++generation;
+        if (runQuery.isEmpty()) {
+            showAll();
+            return;
+        }
+
+        final String[] words = splitWords(runQuery);
+        final int version = sourceVersion;
+        Index<T> current = index;
+        final Index<T> reuse = current != null && current.version == version && current.source == source ? current : null;
+        //列表之后可能在主线程被修改，索引从它的拷贝建立
+        final List<T> snapshot = reuse == null ? new ArrayList<>(source) : null;
+        final List<T> runSource = source;
+        final boolean narrow = shown != null && reuse != null && shownIndex == reuse
+                && !shownQuery.isEmpty() && runQuery.startsWith(shownQuery);
+        final int[] narrowFrom = narrow ? shown : null;
+
+        (executor == null ? IdeaExecutors.background() : executor).execute(new Runnable() {
+            @Override
+            public void run() {
+                if (runGeneration != generation) {
+                    return;
+                }
+                Index<T> runIndex = reuse;
+                if (runIndex == null) {
+                    runIndex = Index.build(runSource, snapshot, version, extractor, ItemFilter.this, runGeneration);
+                    if (runIndex == null) {
+                        return;
+                    }
+                    index = runIndex;
+                }
+                final int[] result = runIndex.query(words, narrowFrom, ItemFilter.this, runGeneration);
+                if (result == null) {
+                    return;
+                }
+
+                final Index<T> resultIndex = runIndex;
+                IdeaExecutors.main().post(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (runGeneration != generation) {
+                            return;
+                        }
+                        if (resultIndex.version != sourceVersion || resultIndex.source != source) {
+                            //过滤期间列表变了
+                            start(query);
+                            return;
+                        }
+                        show(runQuery, resultIndex, result);
+                    }
+                });
+            }
+        });
+    }
+
+    private void show(String resultQuery, Index<T> resultIndex, int[] result) {
+        List<T> items = new ArrayList<>(result.length);
+        for (int position : result) {
+            items.add(resultIndex.items.get(position));
+        }
+
+        //两次结果取自同一份内容时，位置相同就是显示的item相同
+        boolean same = shown == null
+                ? target.currentList() == resultIndex.source && result.length == resultIndex.items.size()
+                : shownIndex == resultIndex && Arrays.equals(shown, result);
+        shown = result;
+        shownIndex = resultIndex;
+        shownQuery = resultQuery;
+        target.showFiltered(items, !same);
+    }
+
+    private void showAll() {
+        if (source == null) {
+            return;
+        }
+        List<T> all = source;
+        boolean same = shown == null
+                ? target.currentList() == all
+                : shownIndex.source == all && shownIndex.version == sourceVersion && shown.length == all.size();
+        source = null;
+        shown = null;
+        shownIndex = null;
+        shownQuery = "";
+        target.showFiltered(all, !same);
+    }
+
+    private boolean isCancelled(int runGeneration) {
+        return runGeneration != generation;
+    }
+
+    //文本按空白分成的小写词
+    static String[] splitWords(CharSequence text) {
+        if (text == null || text.length() == 0) {
+            return NO_WORDS;
+        }
+        String lower = text.toString().toLowerCase(Locale.ROOT);
+        List<String> words = null;
+        int start = -1;
+        for (int i = 0, length = lower.length(); i <= length; i++) {
+            boolean space = i == length || Character.isWhitespace(lower.charAt(i));
+            if (!space && start < 0) {
+                start = i;
+            } else if (space && start >= 0) {
+                if (words == null) {
+                    words = new ArrayList<>(4);
+                }
+                words.add(lower.substring(start, i));
+                start = -1;
+            }
+        }
+        return words == null ? NO_WORDS : words.toArray(new String[words.size()]);
+    }
+
+    /**
+     * 一个列表所有过滤关键字的词，排好序
+     */
+    private static final class Index<T> {
+        final List<T> source;//建立索引的列表和它的版本
+        final int version;
+        final List<T> items;//建立索引时列表的拷贝
+        final String[][] itemWords;//每个item的词
+        final String[] words;//排好序的所有词，以及它们所属item的位置
+        final int[] positions;
+
+        private Index(List<T> source, int version, List<T> items, String[][] itemWords, String[] words,
+                      int[] positions) {
+            this.source = source;
+            this.version = version;
+            this.items = items;
+            this.itemWords = itemWords;
+            this.words = words;
+            this.positions = positions;
+        }
+
+        //被取消时返回null
+        static <T> Index<T> build(List<T> source, List<T> items, int version, IdeaAdapter.FilterKeyExtractor<T> extractor,
+                                  ItemFilter<T> filter, int runGeneration) {
+            int size = items.size();
+            String[][] itemWords = new String[size][];
+            int total = 0;
+            for (int i = 0; i < size; i++) {
+                if ((i & CHECK_MASK) == 0 && filter.isCancelled(runGeneration)) {
+                    return null;
+                }
+                T item = items.get(i);
+                itemWords[i] = item == null ? NO_WORDS : splitWords(extractor.getFilterKey(item));
+                total += itemWords[i].length;
+            }
+
+            Entry[] entries = new Entry[total];
+            int count = 0;
+            for (int i = 0; i < size; i++) {
+                for (String word : itemWords[i]) {
+                    entries[count++] = new Entry(word, i);
+                }
+            }
+            if (filter.isCancelled(runGeneration)) {
+                return null;
+            }
+            Arrays.sort(entries);
+
+            String[] words = new String[total];
+            int[] positions = new int[total];
+            for (int i = 0; i < total; i++) {
+                words[i] = entries[i].word;
+                positions[i] = entries[i].position;
+            }
+            return new Index<>(source, version, items, itemWords, words, positions);
+        }
+
+        /**
+         * @param narrowFrom 已知包含全部结果的位置（有序），可以为空
+         * @return 匹配所有词的item的位置（有序），被取消时返回null
+         */
+        int[] query(String[] queryWords, int[] narrowFrom, ItemFilter<T> filter, int runGeneration) {
+            //查找以它开头的词最少的那个查询词
+            int bestStart = 0;
+            int bestEnd = words.length;
+            for (String queryWord : queryWords) {
+                int start = lowerBound(queryWord);
+                int end = lowerBound(queryWord + '\uffff');
+                if (end - start < bestEnd - bestStart) {
+                    bestStart = start;
+                    bestEnd = end;
+                }
+            }
+
+            int[] candidates;
+            int candidateCount;
+            if (narrowFrom != null && narrowFrom.length <= bestEnd - bestStart) {
+                candidates = narrowFrom;
+                candidateCount = narrowFrom.length;
+            } else {
+                candidates = Arrays.copyOfRange(positions, bestStart, bestEnd);
+                Arrays.sort(candidates);
+                candidateCount = 0;
+                for (int i = 0; i < candidates.length; i++) {
+                    if (candidateCount == 0 || candidates[i] != candidates[candidateCount - 1]) {
+                        candidates[candidateCount++] = candidates[i];
+                    }
+                }
+            }
+
+            int[] result = new int[candidateCount];
+            int count = 0;
+            for (int i = 0; i < candidateCount; i++) {
+                if ((i & CHECK_MASK) == 0 && filter.isCancelled(runGeneration)) {
+                    return null;
+                }
+                if (matches(itemWords[candidates[i]], queryWords)) {
+                    result[count++] = candidates[i];
+                }
+            }
+            return count == result.length ? result : Arrays.copyOf(result, count);
+        }
+
+        private int lowerBound(String key) {
+            int low = 0;
+            int high = words.length;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (words[mid].compareTo(key) < 0) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            return low;
+        }
+
+        private static boolean matches(String[] itemWords, String[] queryWords) {
+            for (String queryWord : queryWords) {
+                boolean found = false;
+                for (String itemWord : itemWords) {
+                    if (itemWord.startsWith(queryWord)) {
+                        found = true;
+                        break;
+                    }
+                }
+                if (!found) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    private static final class Entry implements Comparable<Entry> {
+        final String word;
+        final int position;
+
+        Entry(String word, int position) {
+            this.word = word;
+            this.position = position;
+        }
+
+        @Override
+        public int compareTo(Entry other) {
+            int result = word.compareTo(other.word);
+            return result != 0 ? result : position - other.position;
+        }
+    }
+}
@@ -0,0 +1,177 @@
+package org.qxtx.idea.listview;
+
+import android.content.Context;
+import android.content.res.TypedArray;
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.text.Layout;
+import android.text.StaticLayout;
+import android.text.TextPaint;
+import android.text.TextUtils;
+import android.util.AttributeSet;
+import android.view.View;
+
+/**
+ * 直接用Layout显示文本的轻量view，Layout可以由TextPrecomputer在后台线程提前算好
+ * Holder.setText()有提前算好的Layout时直接交给它，主线程上就不用再测量文本
+ * 1、从布局中读取android:textSize、android:textColor、android:lineSpacingExtra、android:lineSpacingMultiplier
+ * 2、没有提前算好的Layout时，像TextView一样自己排版
+ * 3、宽度请用固定值或match_parent，wrap_content仍然要在主线程测量文本
+ */
+public class LayoutTextView extends View {
+    private static final int[] ATTRS = {
+            android.R.attr.textSize,
+            android.R.attr.textColor,
+            android.R.attr.lineSpacingExtra,
+            android.R.attr.lineSpacingMultiplier
+    };
+
+    private final TextPaint paint = new TextPaint(Paint.ANTI_ALIAS_FLAG);
+    private float spacingAdd;
+    private float spacingMult = 1f;
+    private Layout.Alignment alignment = Layout.Alignment.ALIGN_NORMAL;
+
+    private CharSequence text = "";
+    private Layout layout;
+
+    public LayoutTextView(Context context) {
+        this(context, null);
+    }
+
+    public LayoutTextView(Context context, AttributeSet attrs) {
+        super(context, attrs);
+
+        paint.density = getResources().getDisplayMetrics().density;
+        TypedArray a = context.obtainStyledAttributes(attrs, ATTRS);
+        try {
+            paint.setTextSize(a.getDimension(0, 14 * getResources().getDisplayMetrics().scaledDensity));
+            paint.setColor(a.getColor(1, 0xff000000));
+            spacingAdd = a.getDimension(2, 0f);
+            spacingMult = a.getFloat(3, 1f);
+        } finally {
+            a.recycle();
+        }
+    }
+
+    public CharSequence getText() {
+        return text;
+    }
+
+    public void setText(CharSequence text) {
+        if (text == null) {
+            text = "";
+        }
+        if (TextUtils.equals(this.text, text)) {
+            return;
+        }
+        this.text = text;
+        layout = null;
+        requestLayout();
+        invalidate();
+    }
+
+    /**
+     * 直接用Layout显示它的文本，Layout的宽度和这个view不符时会重新排版
+     */
+    public void setTextLayout(Layout layout) {
+        if (layout == this.layout) {
+            return;
+        }
+        int oldHeight = this.layout == null ? -1 : this.layout.getHeight();
+        this.text = layout.getText();
+        this.layout = layout;
+        if (layout.getHeight() != oldHeight || layout.getWidth() != getContentWidth()) {
+            requestLayout();
+        }
+        invalidate();
+    }
+
+    //文本的画笔，修改之后需要调用requestLayout()
+    public TextPaint getPaint() {
+        return paint;
+    }
+
+    public LayoutTextView setTextSize(float px) {
+        paint.setTextSize(px);
+        layout = null;
+        requestLayout();
+        return this;
+    }
+
+    public LayoutTextView setTextColor(int color) {
+        paint.setColor(color);
+        invalidate();
+        return this;
+    }
+
+    public LayoutTextView setLineSpacing(float add, float mult) {
+        spacingAdd = add;
+        spacingMult = mult;
+        layout = null;
+        requestLayout();
+        return this;
+    }
+
+    public LayoutTextView setAlignment(Layout.Alignment alignment) {
+        this.alignment = alignment;
+        layout = null;
+        requestLayout();
+        return this;
+    }
+
+    public float getLineSpacingExtra() {
+        return spacingAdd;
+    }
+
+    public float getLineSpacingMultiplier() {
+        return spacingMult;
+    }
+
+    public Layout.Alignment getAlignment() {
+        return alignment;
+    }
+
+    //文本排版的宽度，view还没布局时为0
+    int getContentWidth() {
+        return Math.max(0, getWidth() - getPaddingLeft() - getPaddingRight());
+    }
+
+    @Override
+    protected void onMeasure(int widthMeasureSpec, int heightMeasureSpec) {
+        int widthMode = MeasureSpec.getMode(widthMeasureSpec);
+        int widthSize = MeasureSpec.getSize(widthMeasureSpec);
+        int padding = getPaddingLeft() + getPaddingRight();
+
+        int width;
+        if (widthMode == MeasureSpec.EXACTLY) {
+            width = widthSize;
+        } else {
+            int desired = (int) Math.ceil(Layout.getDesiredWidth(text, paint)) + padding;
+            width = widthMode == MeasureSpec.AT_MOST ? Math.min(desired, widthSize) : desired;
+        }
+
+        int contentWidth = Math.max(0, width - padding);
+        if (layout == null || layout.getWidth() != contentWidth) {
+            layout = new StaticLayout(text, paint, contentWidth, alignment, spacingMult, spacingAdd, true);
+        }
+
+        int height = layout.getHeight() + getPaddingTop() + getPaddingBottom();
+        setMeasuredDimension(width, resolveSize(height, heightMeasureSpec));
+    }
+
+    @Override
+    protected void onDraw(Canvas canvas) {
+        if (layout == null) {
+            return;
+        }
+        //提前算好的Layout用它自己的画笔绘制
+        TextPaint layoutPaint = layout.getPaint();
+        if (layoutPaint != paint && layoutPaint.getColor() != paint.getColor()) {
+            layoutPaint.setColor(paint.getColor());
+        }
+        canvas.save();
+        canvas.translate(getPaddingLeft(), getPaddingTop());
+        layout.draw(canvas);
+        canvas.restore();
+    }
+}
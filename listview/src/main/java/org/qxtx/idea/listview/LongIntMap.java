@@ -0,0 +1,86 @@
+package org.qxtx.idea.listview;
+
+import java.util.Arrays;
+
+/**
+ * long到int的哈希表，不装箱，开放寻址、线性探测
+ *
+ * 和recyclerview模块的LongIntMap相同，两个模块各自单独发布、互不依赖，所以各有一份，
+ * 这里只保留ViewBindingTable用到的部分
+ */
+final class LongIntMap {
+    private static final int MIN_CAPACITY = 16;
+
+    private long[] keys;
+    private int[] values;
+    private boolean[] used;
+    private int size;
+    private int mask;
+
+    LongIntMap() {
+        allocate(MIN_CAPACITY);
+    }
+
+    //key的值，没有这个key时返回missing
+    int get(long key, int missing) {
+        int i = indexOf(key);
+        while (used[i]) {
+            if (keys[i] == key) {
+                return values[i];
+            }
+            i = (i + 1) & mask;
+        }
+        return missing;
+    }
+
+    void put(long key, int value) {
+        int i = indexOf(key);
+        while (used[i]) {
+            if (keys[i] == key) {
+                values[i] = value;
+                return;
+            }
+            i = (i + 1) & mask;
+        }
+
+        used[i] = true;
+        keys[i] = key;
+        values[i] = value;
+        if (++size > (mask + 1) >> 1) {
+            rehash((mask + 1) << 1);
+        }
+    }
+
+    void clear() {
+        if (size > 0) {
+            Arrays.fill(used, false);
+            size = 0;
+        }
+    }
+
+    private int indexOf(long key) {
+        int h = (int) (key ^ (key >>> 32)) * 0x9E3779B9;
+        return (h ^ (h >>> 16)) & mask;
+    }
+
+    private void rehash(int capacity) {
+        long[] oldKeys = keys;
+        int[] oldValues = values;
+        boolean[] oldUsed = used;
+
+        allocate(capacity);
+        for (int i = 0; i < oldUsed.length; i++) {
+            if (oldUsed[i]) {
+                put(oldKeys[i], oldValues[i]);
+            }
+        }
+    }
+
+    private void allocate(int capacity) {
+        keys = new long[capacity];
+        values = new int[capacity];
+        used = new boolean[capacity];
+        mask = capacity - 1;
+        size = 0;
+    }
+}
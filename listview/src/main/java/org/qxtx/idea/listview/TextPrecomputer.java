@@ -0,0 +1,289 @@
+package org.qxtx.idea.listview;
+
+import android.text.Layout;
+import android.text.StaticLayout;
+import android.text.TextPaint;
+import android.text.TextUtils;
+import android.util.LruCache;
+import android.util.SparseArray;
+import android.view.View;
+import android.widget.TextView;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+/**
+ * 在后台线程提前为即将显示的item排版文本，通过IdeaAdapter.setTextPrecomputer()设置，addText()告诉它每个view id的文本
+ * 1、文本的样式（画笔、宽度、行距）取自已经布局过的item中对应id的view
+ * 2、之后每次getView()都会沿滑动方向为后面几个item排版，Layout按item缓存，每个view id的缓存数量有上限
+ * 3、Holder.setText()设置LayoutTextView时只需要查缓存
+ * 4、API 28之前TextView不能直接使用Layout，但提前排版仍然会填充它测量时用到的字形缓存，所以它的Layout排完就丢掉
+ * 只能在主线程使用
+ */
+public class TextPrecomputer<T> {
+    public static final int DEFAULT_PREFETCH_COUNT = 10;
+
+    //item在某个view id上显示的文本，在主线程调用
+    public interface TextExtractor<T> {
+        CharSequence getText(T item);
+    }
+
+    private final int maxLayouts;
+    private final SparseArray<Entry<T>> entries = new SparseArray<>();
+    private int prefetchCount = DEFAULT_PREFETCH_COUNT;
+    private Executor executor;
+
+    private int lastPosition = -1;
+    private int lastDirection;
+    //沿lastDirection方向已经安排排版的最后一个位置
+    private int scheduledEnd = -1;
+    private int scheduledVersion;
+    //样式改变时增加
+    private int styleVersion;
+
+    //maxLayouts：每个view id最多缓存的Layout数量
+    public TextPrecomputer(int maxLayouts) {
+        this.maxLayouts = Math.max(1, maxLayouts);
+    }
+
+    public TextPrecomputer<T> addText(int viewId, TextExtractor<T> extractor) {
+        entries.put(viewId, new Entry<>(viewId, extractor, maxLayouts));
+        return this;
+    }
+
+    //沿滑动方向，为当前item之后多少个item提前排版
+    public TextPrecomputer<T> setPrefetchCount(int prefetchCount) {
+        this.prefetchCount = Math.max(0, prefetchCount);
+        return this;
+    }
+
+    //排版使用的线程池，传入null则使用库中共用的后台线程
+    public TextPrecomputer<T> setExecutor(Executor executor) {
+        this.executor = executor;
+        return this;
+    }
+
+    //清空所有Layout，比如view的字号改变之后
+    public void evictAll() {
+        for (int i = 0; i < entries.size(); i++) {
+            entries.valueAt(i).cache.evictAll();
+        }
+        scheduledVersion = -1;
+    }
+
+    //item的位置变了，下次getView()时重新安排提前排版
+    void onDataChanged() {
+        scheduledVersion = -1;
+    }
+
+    //返回item在这个view id上提前算好的Layout，没有则返回null
+    Layout find(Object item, int viewId, CharSequence text) {
+        Entry<T> entry = entries.get(viewId);
+        if (entry == null || item == null || text == null) {
+            return null;
+        }
+        Layout layout = entry.cache.get(item);
+        return layout != null && TextUtils.equals(layout.getText(), text) ? layout : null;
+    }
+
+    //holder绑定到了position，从它身上取样式，然后提前排版后面的文本
+    void onBound(IdeaAdapter.Holder holder, int position, List<T> data) {
+        for (int i = 0; i < entries.size(); i++) {
+            Entry<T> entry = entries.valueAt(i);
+            TextStyle style = TextStyle.update(entry.style, holder.<View>getView(entry.viewId));
+            if (style != entry.style) {
+                entry.style = style;
+                entry.cache.evictAll();
+                entry.version++;
+                styleVersion++;
+            }
+        }
+
+        int direction = position >= lastPosition ? 1 : -1;
+        lastPosition = position;
+        int size = data == null ? 0 : data.size();
+        if (prefetchCount == 0 || size == 0) {
+            return;
+        }
+
+        int from = position + direction;
+        int to = Math.max(0, Math.min(size - 1, position + direction * prefetchCount));
+        if (direction == lastDirection && scheduledVersion == styleVersion) {
+            //之前已经安排过的位置不再重复安排
+            from = direction > 0 ? Math.max(from, scheduledEnd + 1) : Math.min(from, scheduledEnd - 1);
+        }
+        if (direction > 0 ? from > to : from < to) {
+            return;
+        }
+        lastDirection = direction;
+        scheduledEnd = to;
+        scheduledVersion = styleVersion;
+
+        List<Job<T>> jobs = null;
+        for (int p = from; direction > 0 ? p <= to : p >= to; p += direction) {
+            T item = data.get(p);
+            if (item == null) {
+                continue;
+            }
+            for (int i = 0; i < entries.size(); i++) {
+                Entry<T> entry = entries.valueAt(i);
+                if (entry.style == null || entry.cache.get(item) != null) {
+                    continue;
+                }
+                CharSequence text = entry.extractor.getText(item);
+                if (text == null) {
+                    continue;
+                }
+                if (jobs == null) {
+                    jobs = new ArrayList<>();
+                }
+                jobs.add(new Job<>(entry, item, text));
+            }
+        }
+        if (jobs != null) {
+            (executor == null ? IdeaExecutors.background() : executor).execute(new LayoutTask<>(jobs));
+        }
+    }
+
+    private static final class Entry<T> {
+        final int viewId;
+        final TextExtractor<T> extractor;
+        final LruCache<Object, Layout> cache;
+        TextStyle style;
+        //style的版本，旧样式排出来的Layout不再缓存
+        volatile int version;
+
+        Entry(int viewId, TextExtractor<T> extractor, int maxLayouts) {
+            this.viewId = viewId;
+            this.extractor = extractor;
+            this.cache = new LruCache<>(maxLayouts);
+        }
+    }
+
+    private static final class Job<T> {
+        final Entry<T> entry;
+        final T item;
+        final CharSequence text;
+        final TextStyle style;
+        final int version;
+
+        Job(Entry<T> entry, T item, CharSequence text) {
+            this.entry = entry;
+            this.item = item;
+            this.text = text;
+            this.style = entry.style;
+            this.version = entry.version;
+        }
+    }
+
+    private static final class LayoutTask<T> implements Runnable {
+        private final List<Job<T>> jobs;
+
+        LayoutTask(List<Job<T>> jobs) {
+            this.jobs = jobs;
+        }
+
+        @Override
+        public void run() {
+            for (Job<T> job : jobs) {
+                if (job.version != job.entry.version) {
+                    continue;
+                }
+                //画笔不是线程安全的，而且Layout绘制时还要用它，所以每个Layout用自己的副本
+                Layout layout = job.style.layout(job.text, new TextPaint(job.style.paint));
+                if (job.style.keep && job.version == job.entry.version) {
+                    job.entry.cache.put(job.item, layout);
+                }
+            }
+        }
+    }
+
+    //决定文本排版结果的参数，在主线程从view上获取
+    static final class TextStyle {
+        final TextPaint paint;
+        final int width;
+        final Layout.Alignment alignment;
+        final float spacingMult;
+        final float spacingAdd;
+        final boolean includePad;
+        //view能否直接使用Layout，不能的话排版只是为了填充字形缓存
+        final boolean keep;
+
+        private TextStyle(TextPaint paint, int width, Layout.Alignment alignment, float spacingMult,
+                          float spacingAdd, boolean includePad, boolean keep) {
+            this.paint = new TextPaint(paint);
+            this.width = width;
+            this.alignment = alignment;
+            this.spacingMult = spacingMult;
+            this.spacingAdd = spacingAdd;
+            this.includePad = includePad;
+            this.keep = keep;
+        }
+
+        /**返回view的样式
+         * view的样式没变或者还没布局时返回current，否则返回新的样式
+         * 样式不变时不创建任何对象
+         */
+        static TextStyle update(TextStyle current, View view) {
+            TextPaint paint;
+            int width;
+            Layout.Alignment alignment;
+            float spacingMult;
+            float spacingAdd;
+            boolean includePad;
+            boolean keep;
+            if (view instanceof LayoutTextView) {
+                LayoutTextView textView = (LayoutTextView) view;
+                paint = textView.getPaint();
+                width = textView.getContentWidth();
+                alignment = textView.getAlignment();
+                spacingMult = textView.getLineSpacingMultiplier();
+                spacingAdd = textView.getLineSpacingExtra();
+                includePad = true;
+                keep = true;
+            } else if (view instanceof TextView) {
+                TextView textView = (TextView) view;
+                paint = textView.getPaint();
+                width = textView.getWidth() - textView.getCompoundPaddingLeft() - textView.getCompoundPaddingRight();
+                alignment = Layout.Alignment.ALIGN_NORMAL;
+                spacingMult = textView.getLineSpacingMultiplier();
+                spacingAdd = textView.getLineSpacingExtra();
+                includePad = textView.getIncludeFontPadding();
+                keep = false;
+            } else {
+                return current;
+            }
+
+            if (width <= 0) {
+                return current;
+            }
+            if (current != null
+                    && width == current.width
+                    && keep == current.keep
+                    && includePad == current.includePad
+                    && spacingMult == current.spacingMult
+                    && spacingAdd == current.spacingAdd
+                    && alignment == current.alignment
+                    && samePaint(paint, current.paint)) {
+                return current;
+            }
+            return new TextStyle(paint, width, alignment, spacingMult, spacingAdd, includePad, keep);
+        }
+
+        //两个画笔的排版结果是否相同，颜色不影响排版
+        private static boolean samePaint(TextPaint a, TextPaint b) {
+            return a.getTextSize() == b.getTextSize()
+                    && a.getTextScaleX() == b.getTextScaleX()
+                    && a.getTextSkewX() == b.getTextSkewX()
+                    && a.getLetterSpacing() == b.getLetterSpacing()
+                    && a.getFlags() == b.getFlags()
+                    && a.getTypeface() == b.getTypeface()
+                    && a.getTextLocale().equals(b.getTextLocale());
+        }
+
+        Layout layout(CharSequence text, TextPaint paint) {
+            return new StaticLayout(text, paint, width, alignment, spacingMult, spacingAdd, includePad);
+        }
+    }
+}
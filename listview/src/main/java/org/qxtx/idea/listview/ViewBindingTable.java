@@ -0,0 +1,51 @@
+package org.qxtx.idea.listview;
+
+import android.view.View;
+
+/**
+ * 一个布局用到的view id表
+ * 每个id对应一个连续的槽位，Holder创建时按槽位把view一次性找好存进数组，之后set时直接按槽位取，
+ * 不再每次去SparseArray里二分查找，也不用在复用的convertView上重新findViewById
+ * 只能在主线程使用
+ *
+ * 和recyclerview模块的ViewBindingTable做法相同。两个模块各自单独发布、互不依赖，所以各有一份
+ */
+final class ViewBindingTable {
+    static final int NO_SLOT = -1;
+
+    private final LongIntMap slots = new LongIntMap();
+    private int[] ids = new int[0];
+
+    int slotOf(int viewId) {
+        return slots.get(viewId, NO_SLOT);
+    }
+
+    //取得id的槽位，新的id会被加到表的末尾
+    int obtainSlot(int viewId) {
+        int slot = slots.get(viewId, NO_SLOT);
+        if (slot != NO_SLOT) {
+            return slot;
+        }
+
+        int[] oldIds = ids;
+        int[] newIds = new int[oldIds.length + 1];
+        System.arraycopy(oldIds, 0, newIds, 0, oldIds.length);
+        slot = oldIds.length;
+        newIds[slot] = viewId;
+        slots.put(viewId, slot);
+        ids = newIds;
+        return slot;
+    }
+
+    //按槽位排列的id，不要修改它
+    int[] ids() {
+        return ids;
+    }
+
+    //从start槽位开始，在item中找到表里其余的view
+    static void fill(View itemView, int[] ids, View[] views, int start) {
+        for (int i = start; i < ids.length; i++) {
+            views[i] = itemView.findViewById(ids[i]);
+        }
+    }
+}
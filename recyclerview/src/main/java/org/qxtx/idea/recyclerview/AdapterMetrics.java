@@ -0,0 +1,314 @@
+package org.qxtx.idea.recyclerview;
+
+import android.os.Trace;
+import android.util.SparseArray;
+import android.view.Choreographer;
+
+/**
+ * Timing of the work of an {@link IdeaAdapter}, set it by {@link IdeaAdapter#setMetrics(AdapterMetrics)}.
+ * Without it the adapter measures nothing.
+ * <p>
+ * Per viewType it records the time of creating holders, of inflating their layouts and of binding them in
+ * histograms, and counts creates against binds. The adapter work of every frame is summed up, a frame whose
+ * work went over the budget is counted and told to the {@link Listener}. Creates and binds are also traced as
+ * "IdeaAdapter.create #viewType" and "IdeaAdapter.bind #viewType" sections for systrace.
+ * <p>
+ * Only the work on the main thread is measured, holders created by warm up are not. Use it on the main thread.
+ */
+public class AdapterMetrics implements Choreographer.FrameCallback {
+    private static final long NANOS_PER_MILLI = 1000000L;
+
+    public interface Listener {
+        /**
+         * Called at the next frame after the adapter worked longer than the budget in a frame.
+         */
+        void onFrameOverBudget(long adapterWorkNanos, long budgetNanos);
+    }
+
+    private final SparseArray<TypeMetrics> types = new SparseArray<>();
+    private long budgetNanos;
+    private Listener listener;
+
+    private long frameWorkNanos;
+    private boolean frameScheduled;
+    private int frames;
+    private int overBudgetFrames;
+    private long maxFrameWorkNanos;
+
+    /**
+     * @param frameBudgetMillis Adapter work allowed in a frame, like 8 for half of a 60 fps frame.
+     */
+    public AdapterMetrics(float frameBudgetMillis) {
+        setFrameBudget(frameBudgetMillis);
+    }
+
+    public AdapterMetrics setFrameBudget(float frameBudgetMillis) {
+        budgetNanos = (long) (frameBudgetMillis * NANOS_PER_MILLI);
+        return this;
+    }
+
+    public AdapterMetrics setListener(Listener listener) {
+        this.listener = listener;
+        return this;
+    }
+
+    /**
+     * Copy of the numbers recorded so far.
+     */
+    public Snapshot snapshot() {
+        TypeSnapshot[] typeSnapshots = new TypeSnapshot[types.size()];
+        for (int i = 0; i < types.size(); i++) {
+            TypeMetrics type = types.valueAt(i);
+            typeSnapshots[i] = new TypeSnapshot(type.viewType, type.create.copy(), type.inflate.copy(), type.bind.copy());
+        }
+        return new Snapshot(typeSnapshots, frames, overBudgetFrames, maxFrameWorkNanos, budgetNanos);
+    }
+
+    public void reset() {
+        types.clear();
+        frames = 0;
+        overBudgetFrames = 0;
+        maxFrameWorkNanos = 0;
+    }
+
+    long beginCreate(int viewType) {
+        Trace.beginSection(typeOf(viewType).createSection);
+        return System.nanoTime();
+    }
+
+    void recordInflate(int viewType, long nanos) {
+        typeOf(viewType).inflate.record(nanos);
+    }
+
+    void endCreate(int viewType, long startNanos) {
+        long nanos = System.nanoTime() - startNanos;
+        Trace.endSection();
+        typeOf(viewType).create.record(nanos);
+        addWork(nanos);
+    }
+
+    long beginBind(int viewType) {
+        Trace.beginSection(typeOf(viewType).bindSection);
+        return System.nanoTime();
+    }
+
+    void endBind(int viewType, long startNanos) {
+        long nanos = System.nanoTime() - startNanos;
+        Trace.endSection();
+        typeOf(viewType).bind.record(nanos);
+        addWork(nanos);
+    }
+
+    private void addWork(long nanos) {
+        frameWorkNanos += nanos;
+        if (!frameScheduled) {
+            frameScheduled = true;
+            Choreographer.getInstance().postFrameCallback(this);
+        }
+    }
+
+    /**
+     * The work recorded since the callback was posted belongs to the frame before.
+     */
+    @Override
+    public void doFrame(long frameTimeNanos) {
+        frameScheduled = false;
+        long work = frameWorkNanos;
+        frameWorkNanos = 0;
+
+        frames++;
+        if (work > maxFrameWorkNanos) {
+            maxFrameWorkNanos = work;
+        }
+        if (work > budgetNanos) {
+            overBudgetFrames++;
+            if (listener != null) {
+                listener.onFrameOverBudget(work, budgetNanos);
+            }
+        }
+    }
+
+    private TypeMetrics typeOf(int viewType) {
+        TypeMetrics type = types.get(viewType);
+        if (type == null) {
+            type = new TypeMetrics(viewType);
+            types.put(viewType, type);
+        }
+        return type;
+    }
+
+    private static final class TypeMetrics {
+        final int viewType;
+        final String createSection;
+        final String bindSection;
+        final Histogram create = new Histogram();
+        final Histogram inflate = new Histogram();
+        final Histogram bind = new Histogram();
+
+        TypeMetrics(int viewType) {
+            this.viewType = viewType;
+            createSection = "IdeaAdapter.create #" + Integer.toHexString(viewType);
+            bindSection = "IdeaAdapter.bind #" + Integer.toHexString(viewType);
+        }
+    }
+
+    /**
+     * Histogram of durations in buckets of powers of 2 microseconds, bucket i holds durations below 2^i us.
+     */
+    public static final class Histogram {
+        private static final int BUCKETS = 32;
+
+        private final long[] counts = new long[BUCKETS];
+        private long count;
+        private long totalNanos;
+        private long maxNanos;
+
+        void record(long nanos) {
+            long micros = Math.max(0, nanos / 1000);
+            int bucket = Math.min(BUCKETS - 1, 64 - Long.numberOfLeadingZeros(micros));
+            counts[bucket]++;
+            count++;
+            totalNanos += nanos;
+            if (nanos > maxNanos) {
+                maxNanos = nanos;
+            }
+        }
+
+        Histogram copy() {
+            Histogram copy = new Histogram();
+            System.arraycopy(counts, 0, copy.counts, 0, BUCKETS);
+            copy.count = count;
+            copy.totalNanos = totalNanos;
+            copy.maxNanos = maxNanos;
+            return copy;
+        }
+
+        public long getCount() {
+            return count;
+        }
+
+        public long getMeanNanos() {
+            return count == 0 ? 0 : totalNanos / count;
+        }
+
+        public long getMaxNanos() {
+            return maxNanos;
+        }
+
+        /**
+         * @param percentile    Like 0.5 or 0.99.
+         * @return  Upper bound of the bucket that the percentile falls in, not above the max.
+         */
+        public long getPercentileNanos(float percentile) {
+            if (count == 0) {
+                return 0;
+            }
+            long rank = (long) Math.ceil(percentile * count);
+            long seen = 0;
+            for (int i = 0; i < BUCKETS; i++) {
+                seen += counts[i];
+                if (seen >= rank) {
+                    return Math.min(maxNanos, (1L << i) * 1000);
+                }
+            }
+            return maxNanos;
+        }
+    }
+
+    public static final class TypeSnapshot {
+        private final int viewType;
+        private final Histogram create;
+        private final Histogram inflate;
+        private final Histogram bind;
+
+        TypeSnapshot(int viewType, Histogram create, Histogram inflate, Histogram bind) {
+            this.viewType = viewType;
+            this.create = create;
+            this.inflate = inflate;
+            this.bind = bind;
+        }
+
+        public int getViewType() {
+            return viewType;
+        }
+
+        public Histogram getCreate() {
+            return create;
+        }
+
+        public Histogram getInflate() {
+            return inflate;
+        }
+
+        public Histogram getBind() {
+            return bind;
+        }
+
+        /**
+         * Holders created per bind, near 0 means the holders are reused well.
+         */
+        public float getCreatePerBind() {
+            return bind.getCount() == 0 ? 0f : (float) create.getCount() / bind.getCount();
+        }
+
+        @Override
+        public String toString() {
+            return "viewType " + Integer.toHexString(viewType)
+                    + ": create " + create.getCount() + " p50 " + create.getPercentileNanos(0.5f) / 1000
+                    + "us p99 " + create.getPercentileNanos(0.99f) / 1000
+                    + "us, inflate p99 " + inflate.getPercentileNanos(0.99f) / 1000
+                    + "us, bind " + bind.getCount() + " p50 " + bind.getPercentileNanos(0.5f) / 1000
+                    + "us p99 " + bind.getPercentileNanos(0.99f) / 1000 + "us";
+        }
+    }
+
+    public static final class Snapshot {
+        private final TypeSnapshot[] types;
+        private final int frames;
+        private final int overBudgetFrames;
+        private final long maxFrameWorkNanos;
+        private final long budgetNanos;
+
+        Snapshot(TypeSnapshot[] types, int frames, int overBudgetFrames, long maxFrameWorkNanos, long budgetNanos) {
+            this.types = types;
+            this.frames = frames;
+            this.overBudgetFrames = overBudgetFrames;
+            this.maxFrameWorkNanos = maxFrameWorkNanos;
+            this.budgetNanos = budgetNanos;
+        }
+
+        public TypeSnapshot[] getTypes() {
+            return types.clone();
+        }
+
+        /**
+         * Frames in which the adapter did any work.
+         */
+        public int getFrames() {
+            return frames;
+        }
+
+        public int getOverBudgetFrames() {
+            return overBudgetFrames;
+        }
+
+        public long getMaxFrameWorkNanos() {
+            return maxFrameWorkNanos;
+        }
+
+        public long getBudgetNanos() {
+            return budgetNanos;
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder sb = new StringBuilder("AdapterMetrics{frames ").append(frames)
+                    .append(", over budget ").append(overBudgetFrames)
+                    .append(", max work ").append(maxFrameWorkNanos / 1000).append("us");
+            for (TypeSnapshot type : types) {
+                sb.append("\n  ").append(type);
+            }
+            return sb.append('}').toString();
+        }
+    }
+}
@@ -0,0 +1,223 @@
+package org.qxtx.idea.recyclerview;
+
+import android.support.v7.util.ListUpdateCallback;
+import android.view.Choreographer;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Range edits of the data of {@link IdeaAdapter} waiting for the next frame. The data list is not touched
+ * until the frame comes, then all edits are applied together and their notifications are reported to a
+ * {@link ListUpdateCallback}, which is expected to merge neighbouring ones. It must be used on the main thread.
+ * @param <T>   A type convert to adapter.
+ */
+class EditBatch<T> implements Choreographer.FrameCallback {
+    private static final int INSERT = 0;
+    private static final int REMOVE = 1;
+    private static final int MOVE = 2;
+    private static final int REPLACE = 3;
+    private static final int CHANGE = 4;
+
+    /** Position of an insert that goes to the end of the list whatever its size is. */
+    private static final int END = -1;
+
+    interface Target {
+        /**
+         * Size of the list that the edits will be applied to, without the waiting edits.
+         */
+        int committedSize();
+
+        /**
+         * Frame comes, apply the edits by {@link #applyTo(List, ListUpdateCallback)}.
+         */
+        void onEditFrame();
+    }
+
+    private final Target target;
+    private final ArrayList<Edit<T>> edits = new ArrayList<>();
+    private int sizeDelta;
+    private boolean scheduled;
+
+    EditBatch(Target target) {
+        this.target = target;
+    }
+
+    boolean isEmpty() {
+        return edits.isEmpty();
+    }
+
+    /**
+     * Size of the list after all waiting edits are applied.
+     */
+    int pendingSize() {
+        return target.committedSize() + sizeDelta;
+    }
+
+    void append(Collection<? extends T> items) {
+        if (items == null || items.isEmpty()) {
+            return;
+        }
+        add(INSERT, END, items.size(), 0, new ArrayList<T>(items));
+    }
+
+    void insert(int position, Collection<? extends T> items) {
+        checkRange(position, 0, pendingSize());
+        if (items == null || items.isEmpty()) {
+            return;
+        }
+        add(INSERT, position, items.size(), 0, new ArrayList<T>(items));
+    }
+
+    void remove(int position, int count) {
+        checkRange(position, count, pendingSize());
+        if (count == 0) {
+            return;
+        }
+        add(REMOVE, position, count, 0, null);
+    }
+
+    void move(int fromPosition, int toPosition) {
+        int size = pendingSize();
+        checkRange(fromPosition, 1, size);
+        checkRange(toPosition, 1, size);
+        if (fromPosition == toPosition) {
+            return;
+        }
+        add(MOVE, fromPosition, 1, toPosition, null);
+    }
+
+    void replace(int position, List<? extends T> items, Object payload) {
+        if (items == null || items.isEmpty()) {
+            return;
+        }
+        checkRange(position, items.size(), pendingSize());
+        add(REPLACE, position, items.size(), 0, new ArrayList<T>(items)).payload = payload;
+    }
+
+    /**
+     * Items are not changed, only notified as changed with the payload.
+     */
+    void change(int position, int count, Object payload) {
+        checkRange(position, count, pendingSize());
+        if (count == 0) {
+            return;
+        }
+        add(CHANGE, position, count, 0, null).payload = payload;
+    }
+
+    /**
+     * Drop the waiting edits, used when the whole list is replaced.
+     */
+    void clear() {
+        edits.clear();
+        sizeDelta = 0;
+        unschedule();
+    }
+
+    /**
+     * Apply the waiting edits in order and report every one of them.
+     */
+    void applyTo(List<T> data, ListUpdateCallback callback) {
+        unschedule();
+
+        for (int i = 0; i < edits.size(); i++) {
+            Edit<T> edit = edits.get(i);
+            switch (edit.type) {
+                case INSERT:
+                    int position = edit.position == END ? data.size() : edit.position;
+                    data.addAll(position, edit.items);
+                    callback.onInserted(position, edit.count);
+                    break;
+                case REMOVE:
+                    data.subList(edit.position, edit.position + edit.count).clear();
+                    callback.onRemoved(edit.position, edit.count);
+                    break;
+                case MOVE:
+                    data.add(edit.toPosition, data.remove(edit.position));
+                    callback.onMoved(edit.position, edit.toPosition);
+                    break;
+                case REPLACE:
+                    for (int j = 0; j < edit.count; j++) {
+                        data.set(edit.position + j, edit.items.get(j));
+                    }
+                    callback.onChanged(edit.position, edit.count, edit.payload);
+                    break;
+                case CHANGE:
+                    callback.onChanged(edit.position, edit.count, edit.payload);
+                    break;
+            }
+        }
+
+        edits.clear();
+        sizeDelta = 0;
+    }
+
+    @Override
+    public void doFrame(long frameTimeNanos) {
+        scheduled = false;
+        target.onEditFrame();
+    }
+
+    /**
+     * Ask for a frame again, for the edits that could not be applied at the last one.
+     */
+    void schedule() {
+        if (!scheduled && !edits.isEmpty()) {
+            scheduled = true;
+            postFrame();
+        }
+    }
+
+    private void unschedule() {
+        if (scheduled) {
+            scheduled = false;
+            removeFrame();
+        }
+    }
+
+    /**
+     * Wait for the next frame, tests without a Choreographer override it.
+     */
+    void postFrame() {
+        Choreographer.getInstance().postFrameCallback(this);
+    }
+
+    void removeFrame() {
+        Choreographer.getInstance().removeFrameCallback(this);
+    }
+
+    private Edit<T> add(int type, int position, int count, int toPosition, List<T> items) {
+        Edit<T> edit = new Edit<>();
+        edit.type = type;
+        edit.position = position;
+        edit.count = count;
+        edit.toPosition = toPosition;
+        edit.items = items;
+        edits.add(edit);
+
+        if (type == INSERT) {
+            sizeDelta += count;
+        } else if (type == REMOVE) {
+            sizeDelta -= count;
+        }
+        schedule();
+        return edit;
+    }
+
+    private static void checkRange(int position, int count, int size) {
+        if (position < 0 || count < 0 || position + count > size) {
+            throw new IndexOutOfBoundsException("position " + position + ", count " + count + ", size " + size);
+        }
+    }
+
+    private static final class Edit<T> {
+        int type;
+        int position;
+        int count;
+        int toPosition;
+        List<T> items;
+        Object payload;
+    }
+}
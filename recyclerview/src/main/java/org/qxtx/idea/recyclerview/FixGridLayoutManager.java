@@ -8,10 +8,13 @@ package org.qxtx.idea.recyclerview;
 
 import android.content.Context;
 import android.graphics.PointF;
+import android.os.SystemClock;
 import android.support.v7.widget.LinearSmoothScroller;
 import android.support.v7.widget.RecyclerView;
 import android.util.AttributeSet;
+import android.util.DisplayMetrics;
 import android.util.Log;
+import android.util.SparseIntArray;
 import android.view.View;
 
 /**
@@ -32,6 +35,57 @@ public class FixGridLayoutManager extends android.support.v7.widget.GridLayoutMa
     private boolean canScrollV = true;
     private boolean canScrollH = true;
 
+    /**按住方向键时的预取
+     * 根据焦点移动的方向和按键重复的间隔，预测接下来会经过的行
+     * 通过额外布局空间和RecyclerView的预取机制，提前绑定并布局这些行，焦点移动时下一行总是已经存在
+     */
+    public static final int DEFAULT_FOCUS_PREFETCH_ROWS = 4;
+    private static final long KEY_RUN_TIMEOUT_MS = 300;//超过这个间隔没有焦点搜索，视为松开了按键
+    private static final long PREFETCH_WINDOW_MS = 250;//提前准备好这段时间内会经过的行
+    private int maxFocusPrefetchRows = DEFAULT_FOCUS_PREFETCH_ROWS;
+    private int focusDirection;//最近一次焦点搜索的方向
+    private long lastFocusSearchTime;
+    private float keyIntervalMs;//同方向连续焦点搜索的平均间隔，0表示没有在连续移动
+    private int rowSize;//焦点所在行在滚动方向上的尺寸
+    private int repeatCount;//同方向连续焦点搜索的次数
+
+    /**加速滚动模式
+     * 按住方向键一段时间后，每次按键重复跨越的行数逐渐翻倍，直接定位到目标行，中间的行不会被绑定
+     * 目标行布局完成后才把焦点交给它，焦点不会跳走
+     */
+    public static final int DEFAULT_MAX_ACCELERATED_ROWS = 32;
+    private static final int ACCELERATE_AFTER_REPEATS = 8;//连续移动这么多次后开始加速
+    private static final int DOUBLE_EVERY_REPEATS = 6;//之后每隔这么多次，跨越的行数翻倍
+    private boolean acceleratedScroll = false;
+    private int maxAcceleratedRows = DEFAULT_MAX_ACCELERATED_ROWS;
+    private int pendingFocusPosition = RecyclerView.NO_POSITION;//等待布局完成后获取焦点的位置
+
+    /**定位滚动
+     * 目标距离超过一屏时，先直接跳到离目标一屏的位置，再平滑滚动最后一屏，只绑定大约一屏的item
+     */
+    public static final float DEFAULT_SMOOTH_SCROLL_MS_PER_INCH = 25f;
+    private float smoothScrollMsPerInch = DEFAULT_SMOOTH_SCROLL_MS_PER_INCH;
+    private int smoothScrollGeneration;//每次定位滚动加一，丢弃过时的平滑滚动
+
+    private int pageRows;//翻页模式下每页的行数
+
+    /**按viewType决定span大小
+     * 例如标题占满一行，普通item占一格，见{@link #setViewTypeSpanSize(int, int)}
+     */
+    public static final int FULL_SPAN = -1;
+    private final SparseIntArray viewTypeSpanSizes = new SparseIntArray();
+    private ViewTypeSpanSizeLookup viewTypeSpanSizeLookup;
+    private RecyclerView.Adapter<?> adapter;
+
+    /**焦点记忆
+     * 数据变化时记住焦点item的key，在同一次布局里把它放回原来的屏幕位置并重新获取焦点
+     * 需要设置了ItemKeyProvider的IdeaAdapter
+     */
+    private boolean focusMemory = true;
+    private long restoreFocusKey = RecyclerView.NO_ID;//数据变化前焦点item的key
+    private int restoreFocusOffset;//数据变化前焦点item距离布局起始边缘的偏移
+    private int restoreFocusPosition = RecyclerView.NO_POSITION;//布局完成后需要获取焦点的位置
+
     public FixGridLayoutManager(Context context, int spanCount, int orientation, boolean reverseLayout) {
         super(context, spanCount, orientation, reverseLayout);
     }
@@ -58,6 +112,7 @@ public class FixGridLayoutManager extends android.support.v7.widget.GridLayoutMa
      * 作者：laiyx
      * 日期：2018/1/8
      * 描述：为了彻底消除长按下方向由于没找到view导致焦点跳走的问题，将会逐行item滚动，已经无法快速滚动
+     * 备注：需要快速滚动时可以打开加速滚动模式，见{@link #setAcceleratedScrollEnabled(boolean)}
      *
      * @param focused   处于焦点的view
      * @param direction 焦点的逻辑运动
@@ -91,10 +146,22 @@ public class FixGridLayoutManager extends android.support.v7.widget.GridLayoutMa
 //                }
 //            }
 //        }
-        //禁止快速地向下飞滚
-         if (direction == View.FOCUS_DOWN) {
-            if (currentItemPos > findLastCompletelyVisibleItemPosition()) {
-                //Log.e(TAG, "超过可显示的item");
+        trackFocusSearch(focused, direction);
+
+        if (acceleratedScroll) {
+            View accelerated = acceleratedFocusSearch(focused, currentItemPos, direction);
+            if (accelerated != null) {
+                return accelerated;
+            }
+        }
+
+        //禁止快速地向下飞滚：滚动还没跟上焦点，而焦点要去的item还没布局出来时留在原地，等它被预取布局出来
+        //下一行已经提前布局好时，焦点可以一直往下走，不必逐行等待滚动。其它方向保持原来的行为
+        if (direction == View.FOCUS_DOWN) {
+            int nextPos = nextFocusPosition(currentItemPos, direction);
+            if (nextPos >= 0 && nextPos < getItemCount() && findViewByPosition(nextPos) == null
+                    && !isCompletelyVisible(currentItemPos)) {
+                //Log.e(TAG, "下一个item还没有布局");
                 return focused;
             }
         }
@@ -102,6 +169,560 @@ public class FixGridLayoutManager extends android.support.v7.widget.GridLayoutMa
         return super.onInterceptFocusSearch(focused, direction);
     }
 
+    /**
+     * 设置按住方向键时最多提前准备多少行，0表示关闭
+     */
+    public void setFocusPrefetchRows(int maxRows) {
+        this.maxFocusPrefetchRows = Math.max(0, maxRows);
+    }
+
+    public int getFocusPrefetchRows() {
+        return maxFocusPrefetchRows;
+    }
+
+    /**
+     * 设置加速滚动模式，默认关闭
+     * 打开后长按方向键会越滚越快，直接跳到前方的行，焦点在目标行布局完成后才移过去
+     */
+    public void setAcceleratedScrollEnabled(boolean enabled) {
+        this.acceleratedScroll = enabled;
+        if (!enabled) {
+            pendingFocusPosition = RecyclerView.NO_POSITION;
+        }
+    }
+
+    public boolean isAcceleratedScrollEnabled() {
+        return acceleratedScroll;
+    }
+
+    /**
+     * 设置加速滚动时每次按键最多跨越的行数
+     */
+    public void setMaxAcceleratedRows(int maxRows) {
+        this.maxAcceleratedRows = Math.max(1, maxRows);
+    }
+
+    public int getMaxAcceleratedRows() {
+        return maxAcceleratedRows;
+    }
+
+    /**
+     * 加速滚动的焦点移动
+     * 只布局目标行附近的区域，中间跨过的行不会被绑定
+     *
+     * @return 不需要加速时返回null，交给默认的焦点移动逻辑
+     */
+    private View acceleratedFocusSearch(View focused, int currentItemPos, int direction) {
+        int rows = acceleratedRows();
+        if (rows <= 1) {
+            pendingFocusPosition = RecyclerView.NO_POSITION;
+            return null;
+        }
+
+        //上一次跳转还没布局完成时，从它的目标位置继续往前跳
+        boolean pending = pendingFocusPosition != RecyclerView.NO_POSITION;
+        int fromPos = pending ? pendingFocusPosition : currentItemPos;
+        int rowsAway = focusStep(direction) > 0 ? rows : -rows;
+        int targetPos = positionRowsAway(fromPos, rowsAway);
+        if (targetPos < 0) {
+            //跳过了列表的一端，停在这一端
+            targetPos = rowsAway > 0 ? getItemCount() - 1 : 0;
+        }
+        if (targetPos == fromPos) {
+            return pending ? focused : null;
+        }
+
+        View targetView = findViewByPosition(targetPos);
+        if (targetView != null && !pending) {
+            return targetView;
+        }
+        //目标行保持在焦点行当前的位置上
+        pendingFocusPosition = targetPos;
+        scrollToPositionWithOffset(targetPos, focusOffset(focused));
+        return focused;
+    }
+
+    //按住方向键的时长决定每次跨越的行数
+    private int acceleratedRows() {
+        if (keyIntervalMs <= 0 || !isAlongScroll(focusDirection) || repeatCount < ACCELERATE_AFTER_REPEATS) {
+            return 1;
+        }
+        int doublings = (repeatCount - ACCELERATE_AFTER_REPEATS) / DOUBLE_EVERY_REPEATS + 1;
+        return Math.min(maxAcceleratedRows, 1 << Math.min(doublings, 30));
+    }
+
+    //焦点view距离布局起始边缘的偏移，和scrollToPositionWithOffset()的偏移含义一致
+    private int focusOffset(View focused) {
+        if (getOrientation() == VERTICAL) {
+            return getReverseLayout()
+                    ? getHeight() - getPaddingBottom() - getDecoratedBottom(focused)
+                    : getDecoratedTop(focused) - getPaddingTop();
+        }
+        return getReverseLayout()
+                ? getWidth() - getPaddingRight() - getDecoratedRight(focused)
+                : getDecoratedLeft(focused) - getPaddingLeft();
+    }
+
+    /**
+     * 跳转的目标行或数据变化前的焦点item布局完成后，把焦点交给它
+     */
+    @Override
+    public void onLayoutCompleted(RecyclerView.State state) {
+        super.onLayoutCompleted(state);
+        if (restoreFocusPosition != RecyclerView.NO_POSITION) {
+            View restored = findViewByPosition(restoreFocusPosition);
+            restoreFocusPosition = RecyclerView.NO_POSITION;
+            if (restored != null && !restored.hasFocus()) {
+                restored.requestFocus();
+            }
+        }
+        if (pendingFocusPosition == RecyclerView.NO_POSITION) {
+            return;
+        }
+        if (pendingFocusPosition >= state.getItemCount()) {
+            pendingFocusPosition = RecyclerView.NO_POSITION;
+            return;
+        }
+        View target = findViewByPosition(pendingFocusPosition);
+        if (target != null) {
+            pendingFocusPosition = RecyclerView.NO_POSITION;
+            target.requestFocus();
+        }
+    }
+
+    //记录焦点移动的方向和按键重复的间隔
+    private void trackFocusSearch(View focused, int direction) {
+        long now = SystemClock.uptimeMillis();
+        long interval = now - lastFocusSearchTime;
+        if (direction == focusDirection && interval < KEY_RUN_TIMEOUT_MS) {
+            keyIntervalMs = keyIntervalMs == 0 ? interval : keyIntervalMs * 0.7f + interval * 0.3f;
+            repeatCount++;
+        } else {
+            keyIntervalMs = 0;
+            repeatCount = 0;
+        }
+        focusDirection = direction;
+        lastFocusSearchTime = now;
+        rowSize = getOrientation() == VERTICAL ? focused.getHeight() : focused.getWidth();
+    }
+
+    /**
+     * 预测接下来会经过的行数
+     * 按键重复越快，在一行绑定布局完成的这段时间里经过的行越多
+     *
+     * @return 没有沿滚动方向连续移动焦点时返回0
+     */
+    private int predictedRows() {
+        if (maxFocusPrefetchRows == 0 || keyIntervalMs <= 0
+                || SystemClock.uptimeMillis() - lastFocusSearchTime > KEY_RUN_TIMEOUT_MS
+                || !isAlongScroll(focusDirection)
+                || acceleratedScroll && acceleratedRows() > 1) {
+            //加速滚动时会直接跳过前方的行，不需要预取
+            return 0;
+        }
+        int rows = (int) Math.ceil(PREFETCH_WINDOW_MS / Math.max(1f, keyIntervalMs));
+        return Math.max(1, Math.min(maxFocusPrefetchRows, rows));
+    }
+
+    /**
+     * 焦点沿某个方向移动一次，位置的变化量
+     * 滚动方向上是一行（按每行spanCount个位置估算，只用它的正负号时不受span大小影响），另一个方向上是一个位置
+     */
+    private int focusStep(int direction) {
+        boolean vertical = getOrientation() == VERTICAL;
+        int step;
+        switch (direction) {
+            case View.FOCUS_DOWN:
+                step = vertical ? getSpanCount() : 1;
+                break;
+            case View.FOCUS_UP:
+                step = vertical ? -getSpanCount() : -1;
+                break;
+            case View.FOCUS_RIGHT:
+                step = vertical ? 1 : getSpanCount();
+                break;
+            case View.FOCUS_LEFT:
+                step = vertical ? -1 : -getSpanCount();
+                break;
+            default:
+                return 0;
+        }
+        return getReverseLayout() ? -step : step;
+    }
+
+    private boolean isCompletelyVisible(int pos) {
+        return pos >= findFirstCompletelyVisibleItemPosition() && pos <= findLastCompletelyVisibleItemPosition();
+    }
+
+    //方向是否沿着滚动方向
+    private boolean isAlongScroll(int direction) {
+        if (getOrientation() == VERTICAL) {
+            return direction == View.FOCUS_DOWN || direction == View.FOCUS_UP;
+        }
+        return direction == View.FOCUS_LEFT || direction == View.FOCUS_RIGHT;
+    }
+
+    //焦点移动后大致会到达的位置
+    private int nextFocusPosition(int currentPos, int direction) {
+        int step = focusStep(direction);
+        if (step == 0) {
+            return -1;
+        }
+        if (!isAlongScroll(direction)) {
+            return currentPos + step;
+        }
+        return positionRowsAway(currentPos, step > 0 ? 1 : -1);
+    }
+
+    //按viewType决定span大小时的SpanSizeLookup，没有打开这个模式时返回null
+    private ViewTypeSpanSizeLookup activeViewTypeLookup() {
+        return viewTypeSpanSizeLookup != null && getSpanSizeLookup() == viewTypeSpanSizeLookup
+                ? viewTypeSpanSizeLookup : null;
+    }
+
+    /**
+     * 位置所在的行
+     * 按viewType决定span大小时取缓存的spanGroup，占满一行的item也能算对，其它情况按每行spanCount个位置计算
+     */
+    private int rowOf(int position) {
+        ViewTypeSpanSizeLookup lookup = activeViewTypeLookup();
+        return lookup != null ? lookup.getSpanGroupIndex(position, getSpanCount()) : position / getSpanCount();
+    }
+
+    /**
+     * 从位置所在的行移动rows行（负数往回）后，同一列上的位置，那一行比较短时取它的最后一个位置
+     *
+     * @return 超出列表时返回-1
+     */
+    private int positionRowsAway(int position, int rows) {
+        int itemCount = getItemCount();
+        int spanCount = getSpanCount();
+        ViewTypeSpanSizeLookup lookup = activeViewTypeLookup();
+        if (lookup == null) {
+            int target = position + rows * spanCount;
+            return target >= 0 && target < itemCount ? target : -1;
+        }
+
+        int row = lookup.getSpanGroupIndex(position, spanCount) + rows;
+        if (row < 0) {
+            return -1;
+        }
+        int first = lookup.firstPositionOfGroup(row, spanCount, itemCount);
+        if (first >= itemCount) {
+            return -1;
+        }
+        int column = lookup.getSpanIndex(position, spanCount);
+        int target = first;
+        for (int p = first + 1; p < itemCount && lookup.getSpanGroupIndex(p, spanCount) == row
+                && lookup.getSpanIndex(p, spanCount) <= column; p++) {
+            target = p;
+        }
+        return target;
+    }
+
+    /**
+     * 连续移动焦点时，在滚动方向上多布局几行，这些行会被提前绑定
+     */
+    @Override
+    protected int getExtraLayoutSpace(RecyclerView.State state) {
+        int extra = super.getExtraLayoutSpace(state);
+        int rows = predictedRows();
+        if (rows > 0 && rowSize > 0) {
+            extra = Math.max(extra, rows * rowSize);
+        }
+        //翻页模式下总是多布局一页，下一页在滚动到之前就已经绑定好
+        if (pageRows > 0 && getChildCount() > 0) {
+            View child = getChildAt(0);
+            int childRowSize = getOrientation() == VERTICAL
+                    ? getDecoratedMeasuredHeight(child) : getDecoratedMeasuredWidth(child);
+            extra = Math.max(extra, pageRows * childRowSize);
+        }
+        return extra;
+    }
+
+    /**
+     * 由GridPageSnapHelper设置每页的行数，0表示不是翻页模式
+     */
+    void setPageRows(int pageRows) {
+        if (this.pageRows != pageRows) {
+            this.pageRows = pageRows;
+            requestLayout();
+        }
+    }
+
+    /**
+     * 滚动时RecyclerView会在空闲的帧里预取这里给出的位置
+     * 连续移动焦点时，除了默认的下一行，再加上预测会经过的行
+     */
+    @Override
+    public void collectAdjacentPrefetchPositions(int dx, int dy, RecyclerView.State state,
+                                                 LayoutPrefetchRegistry layoutPrefetchRegistry) {
+        super.collectAdjacentPrefetchPositions(dx, dy, state, layoutPrefetchRegistry);
+
+        int rows = predictedRows();
+        if (rows <= 1 || getChildCount() == 0) {
+            return;
+        }
+        boolean forward = focusStep(focusDirection) > 0;
+        int edgePos = forward ? findLastVisibleItemPosition() : findFirstVisibleItemPosition();
+        if (edgePos == RecyclerView.NO_POSITION) {
+            return;
+        }
+        //下一行已经由默认的预取处理了，从第二行开始。行按rowOf()计算，占满一行的item也算一行
+        int step = forward ? 1 : -1;
+        int edgeRow = rowOf(edgePos);
+        for (int pos = edgePos + step; pos >= 0 && pos < state.getItemCount(); pos += step) {
+            int distance = Math.abs(rowOf(pos) - edgeRow);
+            if (distance > rows) {
+                return;
+            }
+            if (distance >= 2) {
+                layoutPrefetchRegistry.addPosition(pos, (distance - 1) * rowSize);
+            }
+        }
+    }
+
+    /**
+     * 设置某个viewType的item占多少个span，{@link #FULL_SPAN}表示占满一行，没有设置的viewType占一个span
+     * 第一次调用时会替换掉当前的SpanSizeLookup，之后再调用setSpanSizeLookup()会关闭这个模式
+     * spanIndex和spanGroup按位置缓存，数据变化时只重新计算变化位置之后的部分，深处的位置布局和焦点查找也不会变慢
+     */
+    public void setViewTypeSpanSize(int viewType, int spanSize) {
+        if (spanSize <= 0 && spanSize != FULL_SPAN) {
+            throw new IllegalArgumentException("spanSize must be positive or FULL_SPAN, but " + spanSize);
+        }
+        viewTypeSpanSizes.put(viewType, spanSize);
+        if (viewTypeSpanSizeLookup == null) {
+            viewTypeSpanSizeLookup = new ViewTypeSpanSizeLookup();
+        }
+        viewTypeSpanSizeLookup.invalidateFrom(0);
+        if (getSpanSizeLookup() != viewTypeSpanSizeLookup) {
+            setSpanSizeLookup(viewTypeSpanSizeLookup);
+        }
+        requestLayout();
+    }
+
+    /**
+     * 清除所有viewType的span大小，所有item都占一个span
+     */
+    public void clearViewTypeSpanSizes() {
+        viewTypeSpanSizes.clear();
+        if (viewTypeSpanSizeLookup != null) {
+            viewTypeSpanSizeLookup.invalidateFrom(0);
+            requestLayout();
+        }
+    }
+
+    //以下几个回调让span缓存从变化的位置开始失效，并在位置变化前记住焦点item
+    private void invalidateSpansFrom(int position) {
+        if (viewTypeSpanSizeLookup != null) {
+            viewTypeSpanSizeLookup.invalidateFrom(position);
+        }
+    }
+
+    @Override
+    public void onAttachedToWindow(RecyclerView view) {
+        super.onAttachedToWindow(view);
+        adapter = view.getAdapter();
+        invalidateSpansFrom(0);
+    }
+
+    @Override
+    public void onAdapterChanged(RecyclerView.Adapter oldAdapter, RecyclerView.Adapter newAdapter) {
+        super.onAdapterChanged(oldAdapter, newAdapter);
+        adapter = newAdapter;
+        invalidateSpansFrom(0);
+    }
+
+    @Override
+    public void onItemsChanged(RecyclerView recyclerView) {
+        rememberFocus();
+        super.onItemsChanged(recyclerView);
+        invalidateSpansFrom(0);
+    }
+
+    @Override
+    public void onItemsAdded(RecyclerView recyclerView, int positionStart, int itemCount) {
+        rememberFocus();
+        super.onItemsAdded(recyclerView, positionStart, itemCount);
+        invalidateSpansFrom(positionStart);
+    }
+
+    @Override
+    public void onItemsRemoved(RecyclerView recyclerView, int positionStart, int itemCount) {
+        rememberFocus();
+        super.onItemsRemoved(recyclerView, positionStart, itemCount);
+        invalidateSpansFrom(positionStart);
+    }
+
+    @Override
+    public void onItemsUpdated(RecyclerView recyclerView, int positionStart, int itemCount) {
+        super.onItemsUpdated(recyclerView, positionStart, itemCount);
+        invalidateSpansFrom(positionStart);
+    }
+
+    @Override
+    public void onItemsMoved(RecyclerView recyclerView, int from, int to, int itemCount) {
+        rememberFocus();
+        super.onItemsMoved(recyclerView, from, to, itemCount);
+        invalidateSpansFrom(Math.min(from, to));
+    }
+
+    /**
+     * 设置是否在数据变化后恢复焦点，默认打开
+     * 打开时，setListData()或notifyDataSetChanged()等变化之后，焦点item会在同一次布局里回到原来的屏幕位置并重新获取焦点，
+     * 不需要再手动滚动和申请焦点。需要设置了ItemKeyProvider的IdeaAdapter，否则不起作用
+     */
+    public void setFocusMemoryEnabled(boolean enabled) {
+        this.focusMemory = enabled;
+        if (!enabled) {
+            restoreFocusKey = RecyclerView.NO_ID;
+            restoreFocusPosition = RecyclerView.NO_POSITION;
+        }
+    }
+
+    public boolean isFocusMemoryEnabled() {
+        return focusMemory;
+    }
+
+    //记住焦点item的key和屏幕位置，holder里的id还是变化前绑定的那个item的
+    private void rememberFocus() {
+        if (!focusMemory || restoreFocusKey != RecyclerView.NO_ID
+                || !(adapter instanceof IdeaAdapter) || !adapter.hasStableIds()) {
+            return;
+        }
+        View focused = getFocusedChild();
+        if (focused == null || !(focused.getParent() instanceof RecyclerView)) {
+            return;
+        }
+        long key = ((RecyclerView) focused.getParent()).getChildItemId(focused);
+        if (key != RecyclerView.NO_ID) {
+            restoreFocusKey = key;
+            restoreFocusOffset = focusOffset(focused);
+        }
+    }
+
+    /**
+     * 数据变化后，以焦点item的新位置为锚点布局，焦点item保持在原来的屏幕位置
+     */
+    @Override
+    public void onLayoutChildren(RecyclerView.Recycler recycler, RecyclerView.State state) {
+        if (restoreFocusKey != RecyclerView.NO_ID && !state.isPreLayout()) {
+            int position = adapter instanceof IdeaAdapter
+                    ? ((IdeaAdapter<?>) adapter).findPositionByKey(restoreFocusKey) : RecyclerView.NO_POSITION;
+            restoreFocusKey = RecyclerView.NO_ID;
+            if (position != RecyclerView.NO_POSITION) {
+                restoreFocusPosition = position;
+                //不经过本类的重写，以免取消还没开始的平滑滚动
+                super.scrollToPositionWithOffset(position, restoreFocusOffset);
+            }
+        }
+        super.onLayoutChildren(recycler, state);
+    }
+
+    /**
+     * 按viewType决定span大小的SpanSizeLookup
+     * 每个位置的spanIndex和spanGroup保存在数组里，[0, validCount)之间的位置有效
+     * 查询有效范围之外的位置时，从有效范围的末尾顺序推算到这个位置，之后同样的查询都是O(1)
+     */
+    final class ViewTypeSpanSizeLookup extends SpanSizeLookup {
+        private int[] spans = new int[0];//高16位是spanIndex，低16位是spanSize
+        private int[] groups = new int[0];
+        private int validCount;
+        private int cachedSpanCount;
+
+        @Override
+        public int getSpanSize(int position) {
+            return spanSize(position, getSpanCount());
+        }
+
+        @Override
+        public int getSpanIndex(int position, int spanCount) {
+            ensure(position, spanCount);
+            return spans[position] >>> 16;
+        }
+
+        @Override
+        public int getSpanGroupIndex(int adapterPosition, int spanCount) {
+            ensure(adapterPosition, spanCount);
+            return groups[adapterPosition];
+        }
+
+        void invalidateFrom(int position) {
+            validCount = Math.max(0, Math.min(validCount, position));
+        }
+
+        /**
+         * spanGroup不小于group的第一个位置，所有位置都小于它时返回itemCount
+         * 缓存还没推算到这一行时按倍数往后推算，之后的查找只是在缓存里二分
+         */
+        int firstPositionOfGroup(int group, int spanCount, int itemCount) {
+            if (itemCount == 0) {
+                return 0;
+            }
+            ensure(0, spanCount);
+            while (validCount < itemCount && groups[validCount - 1] < group) {
+                ensure(Math.min(itemCount - 1, validCount * 2), spanCount);
+            }
+            int low = 0;
+            int high = validCount;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (groups[mid] < group) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            return low < validCount ? low : itemCount;
+        }
+
+        private int spanSize(int position, int spanCount) {
+            if (adapter == null || position < 0 || position >= adapter.getItemCount()) {
+                return 1;
+            }
+            int size = viewTypeSpanSizes.get(adapter.getItemViewType(position), 1);
+            return size == FULL_SPAN ? spanCount : Math.max(1, Math.min(spanCount, size));
+        }
+
+        private void ensure(int position, int spanCount) {
+            if (spanCount != cachedSpanCount) {
+                cachedSpanCount = spanCount;
+                validCount = 0;
+            }
+            if (position < validCount) {
+                return;
+            }
+            if (position >= spans.length) {
+                int capacity = Math.max(position + 1, spans.length + (spans.length >> 1) + 16);
+                int[] grownSpans = new int[capacity];
+                int[] grownGroups = new int[capacity];
+                System.arraycopy(spans, 0, grownSpans, 0, validCount);
+                System.arraycopy(groups, 0, grownGroups, 0, validCount);
+                spans = grownSpans;
+                groups = grownGroups;
+            }
+
+            for (int p = validCount; p <= position; p++) {
+                int size = spanSize(p, spanCount);
+                int index = 0;
+                int group = 0;
+                if (p > 0) {
+                    //接在前一个item后面，放不下时换到下一行
+                    index = (spans[p - 1] >>> 16) + (spans[p - 1] & 0xffff);
+                    group = groups[p - 1];
+                    if (index + size > spanCount) {
+                        index = 0;
+                        group++;
+                    }
+                }
+                spans[p] = index << 16 | size;
+                groups[p] = group;
+            }
+            validCount = position + 1;
+        }
+    }
+
     /**
      * 2、希望整理滚动列表的逻辑 (这破方法只为scrollToPosition()方法服务)
      * <p>
@@ -110,13 +731,50 @@ public class FixGridLayoutManager extends android.support.v7.widget.GridLayoutMa
      * 描述：里面的代码其实都是内置的，只是因为【重写了LinearSmoothScroller抽象类】，才要把其它代码也写一遍
      * 备注1：位于LinearLayoutManager中的方法，RecyclerView中的滚动逻辑也是【最终会来到这个方法】
      * 备注2：里面实现了LinearSmoothScroller抽象类，如果需要重写滚动逻辑则需要重写此方法里的抽象类
+     * 备注3：距离超过一屏时先跳到目标前一屏的位置再平滑滚动，避免沿途绑定成千上万个item
      *
      * @param recyclerView  RecyclerView自身
      * @param state         状态值（暂不明确）
      * @param posWithScroll 滚动的item的位置
      */
     @Override
-    public void smoothScrollToPosition(RecyclerView recyclerView, RecyclerView.State state, int posWithScroll) {
+    public void smoothScrollToPosition(final RecyclerView recyclerView, RecyclerView.State state, final int posWithScroll) {
+        int jumpPos = jumpPosition(posWithScroll, state.getItemCount());
+        if (jumpPos == RecyclerView.NO_POSITION) {
+            smoothScrollGeneration++;
+            startFixNotFocusScroll(recyclerView, posWithScroll);
+            return;
+        }
+
+        //先跳到离目标一屏的位置，等这次布局完成后再平滑滚动剩下的一屏
+        scrollToPosition(jumpPos);
+        final int generation = ++smoothScrollGeneration;
+        recyclerView.post(new Runnable() {
+            @Override
+            public void run() {
+                if (generation == smoothScrollGeneration && recyclerView.getLayoutManager() == FixGridLayoutManager.this) {
+                    startFixNotFocusScroll(recyclerView, posWithScroll);
+                }
+            }
+        });
+    }
+
+    //直接定位会取消还没开始的平滑滚动，以及数据变化后的焦点恢复
+    @Override
+    public void scrollToPosition(int position) {
+        smoothScrollGeneration++;
+        restoreFocusKey = RecyclerView.NO_ID;
+        super.scrollToPosition(position);
+    }
+
+    @Override
+    public void scrollToPositionWithOffset(int position, int offset) {
+        smoothScrollGeneration++;
+        restoreFocusKey = RecyclerView.NO_ID;
+        super.scrollToPositionWithOffset(position, offset);
+    }
+
+    private void startFixNotFocusScroll(RecyclerView recyclerView, int posWithScroll) {
         FixNotFocusScroller fixNotFocusScroller = new FixNotFocusScroller(recyclerView.getContext()) {
             @Override
             public PointF computeScrollVectorForPosition(int targePos) {
@@ -127,6 +785,42 @@ public class FixGridLayoutManager extends android.support.v7.widget.GridLayoutMa
         startSmoothScroll(fixNotFocusScroller); //这是开始滚动的
     }
 
+    /**
+     * 定位滚动前需要直接跳到的位置
+     *
+     * @return 目标在一屏之内时返回RecyclerView.NO_POSITION，直接平滑滚动
+     */
+    private int jumpPosition(int targetPos, int itemCount) {
+        int first = findFirstVisibleItemPosition();
+        int last = findLastVisibleItemPosition();
+        if (first == RecyclerView.NO_POSITION || targetPos < 0 || targetPos >= itemCount) {
+            return RecyclerView.NO_POSITION;
+        }
+        //一屏的item数，平滑滚动的距离
+        int screen = Math.max(getSpanCount(), last - first + 1);
+        if (targetPos > last + screen) {
+            return targetPos - screen;
+        }
+        if (targetPos < first - screen) {
+            return targetPos + screen;
+        }
+        return RecyclerView.NO_POSITION;
+    }
+
+    /**
+     * 设置定位滚动的速度，滚动一英寸所用的毫秒数，越小越快
+     */
+    public void setSmoothScrollSpeed(float msPerInch) {
+        if (msPerInch <= 0) {
+            throw new IllegalArgumentException("msPerInch must be positive, but " + msPerInch);
+        }
+        this.smoothScrollMsPerInch = msPerInch;
+    }
+
+    public float getSmoothScrollSpeed() {
+        return smoothScrollMsPerInch;
+    }
+
     //重写滚动许可检查
     @Override
     public boolean canScrollVertically() {
@@ -168,6 +862,12 @@ public class FixGridLayoutManager extends android.support.v7.widget.GridLayoutMa
             super(context);
         }
 
+        //滚动速度由setSmoothScrollSpeed()决定
+        @Override
+        protected float calculateSpeedPerPixel(DisplayMetrics displayMetrics) {
+            return smoothScrollMsPerInch / displayMetrics.densityDpi;
+        }
+
         @Override
         public void onStart() {
             //Log.e(TAG, "滑动要开始了，回调进入了SmoothScroller抽象类的onStart()方法");
@@ -0,0 +1,252 @@
+package org.qxtx.idea.recyclerview;
+
+import android.support.v7.widget.GridLayoutManager;
+import android.support.v7.widget.RecyclerView;
+import android.support.v7.widget.SnapHelper;
+import android.view.View;
+
+/**
+ * Snap a grid to whole pages, like PagerSnapHelper does for single items. A page is {@code rowsPerPage} span
+ * groups of the {@link GridLayoutManager}, so an item that takes the whole row, like a header, is one row of its
+ * page. A fling moves one page forward or backward, and a scroll that stops between pages settles on the nearest
+ * one.
+ * <p>
+ * The rows are those of the SpanSizeLookup of the layout. The default one and the one of
+ * {@link FixGridLayoutManager#setViewTypeSpanSize(int, int)} find the first item of a row at once, any other one
+ * is searched for it, which asks its span group of a few items on each snap.
+ * <p>
+ * With {@link FixGridLayoutManager} one more page is always laid out in the direction of the scroll, so the
+ * next page is bound before the fling reaches it. When the list settles on a page, the cell of
+ * {@link #setFocusCell(int)} takes the focus, unless the focus is already on that page or the window is in
+ * touch mode.
+ */
+public class GridPageSnapHelper extends SnapHelper {
+    private final int rowsPerPage;
+    private int focusCell;
+    private RecyclerView recyclerView;
+
+    private final RecyclerView.OnScrollListener focusListener = new RecyclerView.OnScrollListener() {
+        @Override
+        public void onScrollStateChanged(RecyclerView recyclerView, int newState) {
+            //The snap of the SnapHelper may have started settling again in the same dispatch.
+            if (recyclerView.getScrollState() == RecyclerView.SCROLL_STATE_IDLE) {
+                focusPage(recyclerView);
+            }
+        }
+    };
+
+    public GridPageSnapHelper(int rowsPerPage) {
+        if (rowsPerPage <= 0) {
+            throw new IllegalArgumentException("rowsPerPage must be positive, but " + rowsPerPage);
+        }
+        this.rowsPerPage = rowsPerPage;
+    }
+
+    /**
+     * Cell of a page that takes the focus when the list settles on the page, counted from the first item of the
+     * page. On a page that has fewer items it is clamped to the last item of the page. Default 0.
+     */
+    public GridPageSnapHelper setFocusCell(int focusCell) {
+        if (focusCell < 0) {
+            throw new IllegalArgumentException("focusCell must not be negative, but " + focusCell);
+        }
+        this.focusCell = focusCell;
+        return this;
+    }
+
+    public int getRowsPerPage() {
+        return rowsPerPage;
+    }
+
+    @Override
+    public void attachToRecyclerView(RecyclerView recyclerView) throws IllegalStateException {
+        if (this.recyclerView == recyclerView) {
+            return;
+        }
+        if (this.recyclerView != null) {
+            this.recyclerView.removeOnScrollListener(focusListener);
+            if (this.recyclerView.getLayoutManager() instanceof FixGridLayoutManager) {
+                ((FixGridLayoutManager) this.recyclerView.getLayoutManager()).setPageRows(0);
+            }
+        }
+        super.attachToRecyclerView(recyclerView);
+        this.recyclerView = recyclerView;
+        if (recyclerView != null) {
+            recyclerView.addOnScrollListener(focusListener);
+            if (recyclerView.getLayoutManager() instanceof FixGridLayoutManager) {
+                ((FixGridLayoutManager) recyclerView.getLayoutManager()).setPageRows(rowsPerPage);
+            }
+        }
+    }
+
+    @Override
+    public int[] calculateDistanceToFinalSnap(RecyclerView.LayoutManager layoutManager, View targetView) {
+        //A reverse layout starts at the bottom or right edge, scrolling by a positive delta moves away from it.
+        int distance = distanceToStart(layoutManager, targetView);
+        if (layoutManager instanceof GridLayoutManager && ((GridLayoutManager) layoutManager).getReverseLayout()) {
+            distance = -distance;
+        }
+        int[] out = new int[2];
+        if (layoutManager.canScrollHorizontally()) {
+            out[0] = distance;
+        }
+        if (layoutManager.canScrollVertically()) {
+            out[1] = distance;
+        }
+        return out;
+    }
+
+    /**
+     * @return  The first item of the page whose start is the nearest to the start of the list.
+     */
+    @Override
+    public View findSnapView(RecyclerView.LayoutManager layoutManager) {
+        if (!(layoutManager instanceof GridLayoutManager)) {
+            return null;
+        }
+        GridLayoutManager grid = (GridLayoutManager) layoutManager;
+        View closest = null;
+        int closestDistance = Integer.MAX_VALUE;
+        for (int i = 0; i < layoutManager.getChildCount(); i++) {
+            View child = layoutManager.getChildAt(i);
+            if (!isPageStart(grid, layoutManager.getPosition(child))) {
+                continue;
+            }
+            int distance = Math.abs(distanceToStart(layoutManager, child));
+            if (distance < closestDistance) {
+                closestDistance = distance;
+                closest = child;
+            }
+        }
+        return closest;
+    }
+
+    /**
+     * @return  The first item of the next page in the direction of the fling.
+     */
+    @Override
+    public int findTargetSnapPosition(RecyclerView.LayoutManager layoutManager, int velocityX, int velocityY) {
+        int itemCount = layoutManager.getItemCount();
+        if (!(layoutManager instanceof GridLayoutManager) || itemCount == 0) {
+            return RecyclerView.NO_POSITION;
+        }
+        GridLayoutManager grid = (GridLayoutManager) layoutManager;
+        int first = grid.findFirstVisibleItemPosition();
+        if (first == RecyclerView.NO_POSITION) {
+            return RecyclerView.NO_POSITION;
+        }
+
+        int velocity = grid.canScrollHorizontally() ? velocityX : velocityY;
+        boolean forward = (velocity > 0) != grid.getReverseLayout();
+        int page = pageOf(grid, first);
+        if (forward) {
+            page++;
+        } else if (isPageStart(grid, first)) {
+            //The page is already at the start, go to the one before it.
+            View firstView = grid.findViewByPosition(first);
+            if (firstView != null && distanceToStart(grid, firstView) >= 0) {
+                page--;
+            }
+        }
+        int lastPage = pageOf(grid, itemCount - 1);
+        return pageStart(grid, Math.max(0, Math.min(lastPage, page)));
+    }
+
+    private int pageOf(GridLayoutManager grid, int position) {
+        return rowOf(grid, position) / rowsPerPage;
+    }
+
+    /**
+     * @return  Whether the item is the first one of the first row of a page.
+     */
+    private boolean isPageStart(GridLayoutManager grid, int position) {
+        int row = rowOf(grid, position);
+        return row % rowsPerPage == 0 && (position == 0 || rowOf(grid, position - 1) != row);
+    }
+
+    /**
+     * @return  The first item of the page, or the item count when the list ends before it.
+     */
+    private int pageStart(GridLayoutManager grid, int page) {
+        return firstPositionOfRow(grid, page * rowsPerPage);
+    }
+
+    private static int rowOf(GridLayoutManager grid, int position) {
+        GridLayoutManager.SpanSizeLookup lookup = grid.getSpanSizeLookup();
+        if (lookup instanceof GridLayoutManager.DefaultSpanSizeLookup) {
+            return position / grid.getSpanCount();
+        }
+        return lookup.getSpanGroupIndex(position, grid.getSpanCount());
+    }
+
+    /**
+     * @return  The first item whose row is not before the row, or the item count when there is none.
+     */
+    private static int firstPositionOfRow(GridLayoutManager grid, int row) {
+        int itemCount = grid.getItemCount();
+        int spanCount = grid.getSpanCount();
+        GridLayoutManager.SpanSizeLookup lookup = grid.getSpanSizeLookup();
+        if (lookup instanceof GridLayoutManager.DefaultSpanSizeLookup) {
+            return (int) Math.min((long) row * spanCount, itemCount);
+        }
+        if (lookup instanceof FixGridLayoutManager.ViewTypeSpanSizeLookup) {
+            return ((FixGridLayoutManager.ViewTypeSpanSizeLookup) lookup)
+                    .firstPositionOfGroup(row, spanCount, itemCount);
+        }
+        //The span groups only grow along the list.
+        int low = 0;
+        int high = itemCount;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (lookup.getSpanGroupIndex(mid, spanCount) < row) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * @return  Distance from the start of the list to the start of the view, along the scroll.
+     */
+    private static int distanceToStart(RecyclerView.LayoutManager layoutManager, View view) {
+        boolean reverse = layoutManager instanceof GridLayoutManager
+                && ((GridLayoutManager) layoutManager).getReverseLayout();
+        if (layoutManager.canScrollHorizontally()) {
+            return reverse
+                    ? layoutManager.getWidth() - layoutManager.getPaddingRight() - layoutManager.getDecoratedRight(view)
+                    : layoutManager.getDecoratedLeft(view) - layoutManager.getPaddingLeft();
+        }
+        return reverse
+                ? layoutManager.getHeight() - layoutManager.getPaddingBottom() - layoutManager.getDecoratedBottom(view)
+                : layoutManager.getDecoratedTop(view) - layoutManager.getPaddingTop();
+    }
+
+    /**
+     * Give the focus to the focus cell of the page the list settled on.
+     */
+    private void focusPage(RecyclerView recyclerView) {
+        RecyclerView.LayoutManager layoutManager = recyclerView.getLayoutManager();
+        if (!(layoutManager instanceof GridLayoutManager) || recyclerView.isInTouchMode()) {
+            return;
+        }
+        GridLayoutManager grid = (GridLayoutManager) layoutManager;
+        View pageView = findSnapView(grid);
+        if (pageView == null) {
+            return;
+        }
+        int pageStart = grid.getPosition(pageView);
+        int page = pageOf(grid, pageStart);
+
+        View focusedChild = recyclerView.getFocusedChild();
+        if (focusedChild != null && pageOf(grid, grid.getPosition(focusedChild)) == page) {
+            return;
+        }
+        int position = Math.min(pageStart + focusCell, pageStart(grid, page + 1) - 1);
+        View cell = grid.findViewByPosition(position);
+        if (cell != null) {
+            cell.requestFocus();
+        }
+    }
+}
@@ -0,0 +1,80 @@
+package org.qxtx.idea.recyclerview;
+
+import android.util.SparseIntArray;
+
+/**
+ * Counts of how holders of every viewType were got by {@link IdeaAdapter}, used to tune the counts given to
+ * {@link IdeaAdapter#warmUp(android.support.v7.widget.RecyclerView, SparseIntArray)}.
+ * <p>
+ * A hit is a bind of a holder that came out of the RecycledViewPool, a miss is a holder created because the
+ * pool had none. Read it on the main thread.
+ */
+public class HolderPoolStats {
+    private final SparseIntArray hits = new SparseIntArray();
+    private final SparseIntArray misses = new SparseIntArray();
+    private final SparseIntArray warmed = new SparseIntArray();
+
+    HolderPoolStats() {}
+
+    public int getHits(int viewType) {
+        return hits.get(viewType);
+    }
+
+    public int getMisses(int viewType) {
+        return misses.get(viewType);
+    }
+
+    /**
+     * Holders of the viewType created ahead of time by warm up.
+     */
+    public int getWarmed(int viewType) {
+        return warmed.get(viewType);
+    }
+
+    /**
+     * @return  Hits of the viewType divided by all the holders it asked for, 0 when it asked for none.
+     */
+    public float getHitRate(int viewType) {
+        int hit = hits.get(viewType);
+        int all = hit + misses.get(viewType);
+        return all == 0 ? 0f : (float) hit / all;
+    }
+
+    public void reset() {
+        hits.clear();
+        misses.clear();
+        warmed.clear();
+    }
+
+    void onHit(int viewType) {
+        hits.put(viewType, hits.get(viewType) + 1);
+    }
+
+    void onMiss(int viewType) {
+        misses.put(viewType, misses.get(viewType) + 1);
+    }
+
+    void onWarmed(int viewType, int count) {
+        warmed.put(viewType, warmed.get(viewType) + count);
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder("HolderPoolStats{");
+        SparseIntArray types = new SparseIntArray();
+        for (int i = 0; i < hits.size(); i++) {
+            types.put(hits.keyAt(i), 0);
+        }
+        for (int i = 0; i < misses.size(); i++) {
+            types.put(misses.keyAt(i), 0);
+        }
+        for (int i = 0; i < types.size(); i++) {
+            int type = types.keyAt(i);
+            if (i > 0) {
+                sb.append(", ");
+            }
+            sb.append(type).append(": hit ").append(getHits(type)).append(", miss ").append(getMisses(type));
+        }
+        return sb.append('}').toString();
+    }
+}
@@ -0,0 +1,94 @@
+package org.qxtx.idea.recyclerview;
+
+import android.content.Context;
+import android.support.v7.widget.RecyclerView;
+import android.util.Log;
+import android.util.SparseIntArray;
+import android.view.LayoutInflater;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Create holders of {@link IdeaAdapter} on background threads before the list needs them, and put them into the
+ * RecycledViewPool of the RecyclerView on the main thread.
+ * <p>
+ * LayoutInflater is not thread safe, every background task inflates with its own clone, which is given to
+ * {@link IdeaAdapter#onCreateViewHolder} through {@link #currentInflater()}.
+ */
+final class HolderWarmer {
+    private static final String TAG = "HolderWarmer";
+
+    private static final ThreadLocal<LayoutInflater> INFLATER = new ThreadLocal<>();
+
+    private HolderWarmer() {}
+
+    /**
+     * @return  Inflater of the warm up running on this thread, or null if it is not a warm up thread.
+     */
+    static LayoutInflater currentInflater() {
+        return INFLATER.get();
+    }
+
+    static <T> void warmUp(final IdeaAdapter<T> adapter, final RecyclerView recyclerView,
+                           SparseIntArray countPerType, final Runnable onDone) {
+        final RecyclerView.RecycledViewPool pool = recyclerView.getRecycledViewPool();
+        final Context context = recyclerView.getContext();
+        Executor executor = IdeaExecutors.background();
+
+        final AtomicInteger remaining = new AtomicInteger(countPerType.size());
+        if (countPerType.size() == 0) {
+            finish(onDone);
+            return;
+        }
+
+        for (int i = 0; i < countPerType.size(); i++) {
+            final int viewType = countPerType.keyAt(i);
+            final int cap = countPerType.valueAt(i);
+            final int count = cap - pool.getRecycledViewCount(viewType);
+
+            executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    final List<IdeaAdapter<T>.MyHolder> holders = new ArrayList<>(Math.max(0, count));
+                    INFLATER.set(LayoutInflater.from(context).cloneInContext(context));
+                    try {
+                        for (int j = 0; j < count; j++) {
+                            holders.add(adapter.createViewHolder(recyclerView, viewType));
+                        }
+                    } catch (RuntimeException e) {
+                        Log.e(TAG, "Warm up viewType " + viewType + " fail", e);
+                    } finally {
+                        INFLATER.remove();
+                    }
+
+                    IdeaExecutors.main().post(new Runnable() {
+                        @Override
+                        public void run() {
+                            if (cap > 0) {
+                                pool.setMaxRecycledViews(viewType, cap);
+                            }
+                            for (IdeaAdapter<T>.MyHolder holder : holders) {
+                                holder.markPooled();
+                                pool.putRecycledView(holder);
+                            }
+                            adapter.onHoldersWarmed(viewType, holders.size());
+
+                            if (remaining.decrementAndGet() == 0) {
+                                finish(onDone);
+                            }
+                        }
+                    });
+                }
+            });
+        }
+    }
+
+    private static void finish(Runnable onDone) {
+        if (onDone != null) {
+            onDone.run();
+        }
+    }
+}
@@ -16,18 +16,31 @@ import android.content.Context;
 import android.graphics.Bitmap;
 import android.graphics.Rect;
 import android.graphics.drawable.Drawable;
+import android.support.v7.util.BatchingListUpdateCallback;
+import android.support.v7.util.DiffUtil;
+import android.support.v7.util.ListUpdateCallback;
+import android.support.v7.widget.LinearLayoutManager;
 import android.support.v7.widget.RecyclerView;
+import android.text.Layout;
 import android.util.Log;
 import android.util.SparseArray;
+import android.util.SparseBooleanArray;
+import android.util.SparseIntArray;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
+import android.widget.Filter;
+import android.widget.Filterable;
 import android.widget.ImageView;
 import android.widget.TextView;
 
 import java.lang.ref.WeakReference;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.List;
+import java.util.concurrent.Executor;
 
 /**
  * Adapter for recyclerView. It can put a view list with item of multi style, and the {@link MyHolder} can
@@ -36,16 +49,245 @@ import java.util.List;
  * idea to do that.
  * @param <T>   A type convert to adapter.
  */
-public abstract class IdeaAdapter<T> extends RecyclerView.Adapter<IdeaAdapter<T>.MyHolder> {
+public abstract class IdeaAdapter<T> extends RecyclerView.Adapter<IdeaAdapter<T>.MyHolder> implements Filterable {
     private static final String TAG = "IdeaAdapter";
+    /** Id of the placeholder at position 0 of a {@link PagedList} with stable ids. */
+    private static final long PLACEHOLDER_ID = Long.MIN_VALUE;
 
     private final WeakReference<Context> context;
     private List<T> data;
     private int layoutId;
     private MultiLayout multiLayout;
+    private ListDiffer<T> differ;
+    private KeyIndex<T> keyIndex;
+    private ViewTypeCache viewTypeCache;
+    private HolderPoolStats poolStats;
+    private AdapterMetrics metrics;
+    private SharedViewPool sharedPool;
+    private PagedList<T> pagedList;
+    private ImageLoader imageLoader;
+    private TextPrecomputer<T> textPrecomputer;
+    private ItemFilter<T> itemFilter;
+    private Comparator<? super T> comparator;
+    /** Whether the notifications come from showing a result of {@link #itemFilter}. */
+    private boolean applyingFilter;
+    private final SparseArray<ViewBindingTable> bindingTables = new SparseArray<>();
+    /** Layout res or {@link ViewFactory} of the registered viewTypes, read by warm up threads too. */
+    private final SparseIntArray registeredLayouts = new SparseIntArray();
+    private final SparseArray<ViewFactory> registeredFactories = new SparseArray<>();
+
+    private final SparseArray<OnItemChildClickListener<T>> childClickListeners = new SparseArray<>();
+    private final SparseArray<OnItemChildLongClickListener<T>> childLongClickListeners = new SparseArray<>();
+    private final SparseArray<OnItemChildFocusChangeListener<T>> childFocusChangeListeners = new SparseArray<>();
+    /** Increased when the listeners above change, holders compare it to know whether to install them again. */
+    private int listenerVersion = 1;
+
+    /**
+     * Watch the notifications of the adapter itself, so the states built from {@link #data} know which
+     * part of them is out of date whoever changed the list.
+     */
+    private final RecyclerView.AdapterDataObserver selfObserver = new RecyclerView.AdapterDataObserver() {
+        @Override
+        public void onChanged() {
+            onListChanged();
+            if (keyIndex != null) {
+                keyIndex.invalidateAll();
+            }
+            if (textPrecomputer != null) {
+                textPrecomputer.onDataChanged();
+            }
+            if (viewTypeCache != null) {
+                viewTypeCache.reset(getItemCount());
+            }
+        }
+
+        @Override
+        public void onItemRangeChanged(int positionStart, int itemCount) {
+            onListChanged();
+            if (keyIndex != null) {
+                keyIndex.onChanged(positionStart, itemCount);
+            }
+            if (viewTypeCache != null) {
+                viewTypeCache.onChanged(positionStart, itemCount);
+            }
+        }
+
+        @Override
+        public void onItemRangeChanged(int positionStart, int itemCount, Object payload) {
+            onItemRangeChanged(positionStart, itemCount);
+        }
+
+        @Override
+        public void onItemRangeInserted(int positionStart, int itemCount) {
+            onListChanged();
+            if (keyIndex != null) {
+                keyIndex.onInserted(positionStart, itemCount);
+            }
+            if (viewTypeCache != null) {
+                viewTypeCache.onInserted(positionStart, itemCount);
+            }
+        }
+
+        @Override
+        public void onItemRangeRemoved(int positionStart, int itemCount) {
+            onListChanged();
+            if (keyIndex != null) {
+                keyIndex.onRemoved(positionStart, itemCount);
+            }
+            if (viewTypeCache != null) {
+                viewTypeCache.onRemoved(positionStart, itemCount);
+            }
+        }
+
+        @Override
+        public void onItemRangeMoved(int fromPosition, int toPosition, int itemCount) {
+            onListChanged();
+            if (keyIndex != null) {
+                keyIndex.onMoved(fromPosition, toPosition);
+            }
+            if (viewTypeCache != null) {
+                viewTypeCache.onMoved(fromPosition, toPosition);
+            }
+        }
+    };
+
+    /**
+     * The filter index is built from the list shown without a query, changes of it made outside the filter
+     * make the index out of date.
+     */
+    private void onListChanged() {
+        if (itemFilter != null && !applyingFilter) {
+            itemFilter.onListChanged();
+        }
+    }
+
+    private final ItemFilter.Target<T> filterTarget = new ItemFilter.Target<T>() {
+        @Override
+        public List<T> currentList() {
+            if (pagedList != null) {
+                throw new UnsupportedOperationException("A PagedList can not be filtered");
+            }
+            //The query filters what will be shown, so the edits waiting for a frame and the list being diffed count.
+            flushEdits();
+            List<T> pendingList = differ == null ? null : differ.getPendingList();
+            if (pendingList != null) {
+                return pendingList;
+            }
+            if (data == null) {
+                data = new ArrayList<>();
+            }
+            return data;
+        }
+
+        @Override
+        public void showFiltered(List<T> items, int[] oldPositions, int[] newPositions, boolean incremental) {
+            applyingFilter = true;
+            try {
+                if (incremental && (differ == null || differ.getPendingList() == null)) {
+                    //Both results are parts of one list in order, merging them gives the least notifications.
+                    int oldSize = getItemCount();
+                    data = items;
+                    BatchingListUpdateCallback callback = new BatchingListUpdateCallback(updateCallback);
+                    ItemFilter.dispatchMerge(oldPositions, oldSize, newPositions, items.size(), callback);
+                    callback.dispatchLastEvent();
+                } else if (differ != null) {
+                    submitListData(items);
+                } else {
+                    data = items;
+                    notifyDataSetChanged();
+                }
+            } finally {
+                applyingFilter = false;
+            }
+        }
+    };
+
+    private final ListUpdateCallback updateCallback = new ListUpdateCallback() {
+        @Override
+        public void onInserted(int position, int count) {
+            notifyItemRangeInserted(position, count);
+        }
+
+        @Override
+        public void onRemoved(int position, int count) {
+            notifyItemRangeRemoved(position, count);
+        }
+
+        @Override
+        public void onMoved(int fromPosition, int toPosition) {
+            notifyItemMoved(fromPosition, toPosition);
+        }
+
+        @Override
+        public void onChanged(int position, int count, Object payload) {
+            notifyItemRangeChanged(position, count, payload);
+        }
+    };
+
+    private final PagedList.Callback pagedCallback = new PagedList.Callback() {
+        @Override
+        public void onInserted(int position, int count) {
+            notifyItemRangeInserted(position, count);
+        }
+
+        @Override
+        public void onChanged(int position, int count) {
+            notifyItemRangeChanged(position, count);
+        }
+    };
+
+    /**
+     * Load the pages of {@link #pagedList} ahead of the scroll, before the items are bound.
+     */
+    private final RecyclerView.OnScrollListener pagingScrollListener = new RecyclerView.OnScrollListener() {
+        @Override
+        public void onScrolled(RecyclerView recyclerView, int dx, int dy) {
+            if (pagedList == null || !(recyclerView.getLayoutManager() instanceof LinearLayoutManager)) {
+                return;
+            }
+
+            LinearLayoutManager layoutManager = (LinearLayoutManager) recyclerView.getLayoutManager();
+            int pos = dx > 0 || dy > 0
+                    ? layoutManager.findLastVisibleItemPosition() : layoutManager.findFirstVisibleItemPosition();
+            if (pos != RecyclerView.NO_POSITION) {
+                pagedList.loadAround(pos);
+            }
+        }
+    };
+
+    private final EditBatch<T> edits = new EditBatch<>(new EditBatch.Target() {
+        @Override
+        public int committedSize() {
+            List<T> pendingList = differ == null ? null : differ.getPendingList();
+            return pendingList != null ? pendingList.size() : getItemCount();
+        }
+
+        @Override
+        public void onEditFrame() {
+            flushEdits();
+        }
+    });
+
+    private final SortedBatch<T> sortedEdits = new SortedBatch<>(new SortedBatch.Target() {
+        @Override
+        public void onEditFrame() {
+            flushEdits();
+        }
+    });
 
     abstract void onBind(MyHolder viewHolder, int pos, List<T> data);
 
+    /**
+     * Bind only the part of the item that the payloads tell, instead of the whole item. Payloads come from
+     * {@link #notifyPayload(int, Object)}, {@link #replace(int, Object, Object)} and
+     * {@link DiffCallback#getChangePayload(Object, Object)}.
+     * @param payloads  Not empty, all the payloads posted to the item since it was bound last.
+     * @return  false to bind the whole item by {@link #onBind(MyHolder, int, List)}, which is what it does by default.
+     */
+    protected boolean onBindPayloads(MyHolder viewHolder, int pos, List<T> data, List<Object> payloads) {
+        return false;
+    }
+
     public IdeaAdapter(Context context) {
         this(context, -1, null);
     }
@@ -53,6 +295,7 @@ public abstract class IdeaAdapter<T> extends RecyclerView.Adapter<IdeaAdapter<T>
     public IdeaAdapter(Context context, int layoutId, List<T> data) {
         this.context = new WeakReference<>(context);
         this.layoutId = layoutId;
+        registerAdapterDataObserver(selfObserver);
 
         if (data == null) {
             this.data = new ArrayList<>();
@@ -64,134 +307,985 @@ public abstract class IdeaAdapter<T> extends RecyclerView.Adapter<IdeaAdapter<T>
     public IdeaAdapter(Context context, MultiLayout multiLayout, List<T> data) {
         this.context = new WeakReference<>(context);
         this.multiLayout = multiLayout;
+        registerAdapterDataObserver(selfObserver);
+
+        if (data == null) {
+            this.data = new ArrayList<>();
+        } else {
+            this.data = data;
+        }
+    }
+
+    /**
+     * Return a item id from the position on the item list while {@link #multiLayout} is not null,
+     * and return {@link #layoutId} when it was reValue or return 0 with others.
+     * @param position position for a item
+     * @return item id for the item
+     */
+    @Override
+    public int getItemViewType(int position) {
+        if (multiLayout != null) {
+            return viewTypeCache != null ? viewTypeCache.get(position, multiLayout) : multiLayout.getLayoutId(position);
+        } else if (layoutId != -1) {
+            return layoutId;
+        }
+
+        return super.getItemViewType(position);
+    }
+
+    /**
+     * It will call {@link #getItemViewType(int)} to get a viewType. The item view is built by the
+     * {@link ViewFactory} or inflated from the layout registered for the viewType, otherwise the viewType of a
+     * {@link MultiLayout} or the single layout id is inflated as a layout.
+     * @param viewType  It was result from {@link #getItemViewType(int)}
+     * @throws IllegalStateException    If the item view can not be created.
+     */
+    @Override
+    public MyHolder onCreateViewHolder(ViewGroup parent, int viewType) {
+        //It may run on a warm up thread, so keep the fields of the adapter untouched.
+        Context context = this.context.get();
+        if (context == null) {
+            throw new IllegalStateException("Context of the adapter was released");
+        }
+
+        ViewFactory factory;
+        int layoutRes;
+        synchronized (registeredFactories) {
+            factory = registeredFactories.get(viewType);
+            layoutRes = registeredLayouts.get(viewType, multiLayout != null ? viewType : layoutId);
+        }
+
+        //Holders created by warm up are not measured.
+        AdapterMetrics metrics = null;
+        LayoutInflater inflater = HolderWarmer.currentInflater();
+        if (inflater == null) {
+            inflater = LayoutInflater.from(context);
+            if (poolStats != null) {
+                poolStats.onMiss(viewType);
+            }
+            metrics = this.metrics;
+        }
+        long start = metrics != null ? metrics.beginCreate(viewType) : 0;
+
+        //The Trace section must end even if the view can not be created.
+        try {
+            long inflateStart = metrics != null ? System.nanoTime() : 0;
+            View itemView;
+            if (factory != null) {
+                itemView = factory.createView(inflater.getContext(), parent);
+                if (itemView == null) {
+                    throw new IllegalStateException("ViewFactory of viewType " + viewType + " returned null");
+                }
+            } else {
+                try {
+                    itemView = inflater.inflate(layoutRes, parent, false);
+                } catch (RuntimeException e) {
+                    throw new IllegalStateException("Inflate layout 0x" + Integer.toHexString(layoutRes)
+                            + " of viewType " + viewType + " fail", e);
+                }
+            }
+            if (metrics != null) {
+                metrics.recordInflate(viewType, System.nanoTime() - inflateStart);
+            }
+            return new MyHolder(itemView, bindingTableOf(viewType));
+        } finally {
+            if (metrics != null) {
+                metrics.endCreate(viewType, start);
+            }
+        }
+    }
+
+    /**
+     * Inflate the layout for the holders of the viewType, so the viewType returned by {@link MultiLayout} does
+     * not have to be a layout id. Register the viewTypes before the adapter is set to a RecyclerView.
+     */
+    public IdeaAdapter<T> registerViewType(int viewType, int layoutRes) {
+        synchronized (registeredFactories) {
+            registeredFactories.remove(viewType);
+            registeredLayouts.put(viewType, layoutRes);
+        }
+        return this;
+    }
+
+    /**
+     * Build the item views of the viewType in code by the factory, no XML is parsed, which suits simple rows
+     * that are created very often. Register the viewTypes before the adapter is set to a RecyclerView.
+     */
+    public IdeaAdapter<T> registerViewType(int viewType, ViewFactory factory) {
+        if (factory == null) {
+            throw new IllegalArgumentException("factory == null");
+        }
+        synchronized (registeredFactories) {
+            registeredLayouts.delete(viewType);
+            registeredFactories.put(viewType, factory);
+        }
+        return this;
+    }
+
+    /**
+     * Listen to clicks of the view with the id in every item. Unlike setting a listener in
+     * {@link #onBind(MyHolder, int, List)}, nothing is created while binding: every holder sets its own dispatcher
+     * to the view once, and the dispatcher finds out the position of the item when the view is clicked.
+     * @param listener  null to remove the listener of the view id.
+     */
+    public IdeaAdapter<T> setOnItemChildClickListener(int viewId, OnItemChildClickListener<T> listener) {
+        if (listener == null) {
+            childClickListeners.remove(viewId);
+        } else {
+            childClickListeners.put(viewId, listener);
+        }
+        listenerVersion++;
+        return this;
+    }
+
+    /**
+     * Same as {@link #setOnItemChildClickListener(int, OnItemChildClickListener)}, for long clicks.
+     */
+    public IdeaAdapter<T> setOnItemChildLongClickListener(int viewId, OnItemChildLongClickListener<T> listener) {
+        if (listener == null) {
+            childLongClickListeners.remove(viewId);
+        } else {
+            childLongClickListeners.put(viewId, listener);
+        }
+        listenerVersion++;
+        return this;
+    }
+
+    /**
+     * Same as {@link #setOnItemChildClickListener(int, OnItemChildClickListener)}, for focus changes.
+     */
+    public IdeaAdapter<T> setOnItemChildFocusChangeListener(int viewId, OnItemChildFocusChangeListener<T> listener) {
+        if (listener == null) {
+            childFocusChangeListeners.remove(viewId);
+        } else {
+            childFocusChangeListeners.put(viewId, listener);
+        }
+        listenerVersion++;
+        return this;
+    }
+
+    /**
+     * Declare the view ids that {@link #onBind(MyHolder, int, List)} sets for the viewType, so even the first
+     * holders find all their views when they are created. Ids that are not declared are learnt at the first bind.
+     * Call it on the main thread.
+     */
+    public IdeaAdapter<T> bindViewIds(int viewType, int... viewIds) {
+        ViewBindingTable table = bindingTableOf(viewType);
+        for (int viewId : viewIds) {
+            table.obtainSlot(viewId);
+        }
+        return this;
+    }
+
+    private ViewBindingTable bindingTableOf(int viewType) {
+        synchronized (bindingTables) {
+            ViewBindingTable table = bindingTables.get(viewType);
+            if (table == null) {
+                table = new ViewBindingTable();
+                bindingTables.put(viewType, table);
+            }
+            return table;
+        }
+    }
+
+    @Override
+    public void onBindViewHolder(MyHolder viewHolder, int position) {
+        if (viewHolder.pooled) {
+            viewHolder.pooled = false;
+            if (poolStats != null) {
+                poolStats.onHit(viewHolder.getItemViewType());
+            }
+        }
+        AdapterMetrics metrics = this.metrics;
+        long start = metrics != null ? metrics.beginBind(viewHolder.getItemViewType()) : 0;
+
+        try {
+            viewHolder.installListeners(this);
+            viewHolder.boundPosition = position;
+            if (pagedList != null) {
+                pagedList.loadAround(position);
+            }
+            if (textPrecomputer != null) {
+                textPrecomputer.onBound(viewHolder, position, data);
+            }
+            onBind(viewHolder, position, data);
+        } finally {
+            if (metrics != null) {
+                metrics.endBind(viewHolder.getItemViewType(), start);
+            }
+        }
+    }
+
+    @Override
+    public void onAttachedToRecyclerView(RecyclerView recyclerView) {
+        recyclerView.addOnScrollListener(pagingScrollListener);
+    }
+
+    @Override
+    public void onDetachedFromRecyclerView(RecyclerView recyclerView) {
+        recyclerView.removeOnScrollListener(pagingScrollListener);
+    }
+
+    @Override
+    public void onBindViewHolder(MyHolder viewHolder, int position, List<Object> payloads) {
+        //A holder with payloads is always bound already, it never comes from the pool.
+        if (payloads.isEmpty() || viewHolder.pooled) {
+            onBindViewHolder(viewHolder, position);
+            return;
+        }
+
+        AdapterMetrics metrics = this.metrics;
+        long start = metrics != null ? metrics.beginBind(viewHolder.getItemViewType()) : 0;
+
+        try {
+            viewHolder.installListeners(this);
+            viewHolder.boundPosition = position;
+            if (pagedList != null) {
+                pagedList.loadAround(position);
+            }
+            if (!onBindPayloads(viewHolder, position, data, payloads)) {
+                onBind(viewHolder, position, data);
+            }
+        } finally {
+            if (metrics != null) {
+                metrics.endBind(viewHolder.getItemViewType(), start);
+            }
+        }
+    }
+
+    @Override
+    public void onViewRecycled(MyHolder holder) {
+        //Only holders going into the RecycledViewPool come here.
+        holder.pooled = true;
+        holder.cancelImages();
+    }
+
+    /**
+     * Let {@link MyHolder#setImageResource(int, int)} and {@link MyHolder#setImageFile(int, String)} decode
+     * off the main thread through the loader, for example {@link ImageLoader#getDefault(Context)}.
+     * @param imageLoader   null to set image resources on the main thread.
+     */
+    public IdeaAdapter<T> setImageLoader(ImageLoader imageLoader) {
+        this.imageLoader = imageLoader;
+        return this;
+    }
+
+    /**
+     * Lay out the texts of the items ahead of the binds on a background executor, so
+     * {@link MyHolder#setText(int, CharSequence)} of a {@link LayoutTextView} only looks the layout up.
+     * @param textPrecomputer   null to lay out texts when they are set.
+     */
+    public IdeaAdapter<T> setTextPrecomputer(TextPrecomputer<T> textPrecomputer) {
+        this.textPrecomputer = textPrecomputer;
+        return this;
+    }
+
+    @Override
+    public void onViewDetachedFromWindow(MyHolder holder) {
+        if (sharedPool != null) {
+            sharedPool.onRowDetached();
+        }
+    }
+
+    /**
+     * Pool shared by the child RecyclerViews nested in the rows of this adapter, like horizontal shelves in a
+     * vertical list. It is created at the first call and belongs to this adapter.
+     */
+    public SharedViewPool getSharedPool() {
+        if (sharedPool == null) {
+            sharedPool = new SharedViewPool();
+        }
+        return sharedPool;
+    }
+
+    /**
+     * Let a child RecyclerView of a row reuse holders through {@link #getSharedPool()}, call it when the row is
+     * created or bound. Set the LayoutManager of the child before.
+     */
+    public void shareHolderPool(RecyclerView child) {
+        getSharedPool().attach(child);
+    }
+
+    /**
+     * Create holders on background threads and put them into the RecycledViewPool of the RecyclerView, so the
+     * first scroll does not inflate on the main thread. Call it before the list is shown, the pool of every
+     * viewType is capped to its count.
+     * @param recyclerView  The RecyclerView that this adapter is set to, or will be set to.
+     * @param countPerType  Count of holders of every viewType.
+     */
+    public void warmUp(RecyclerView recyclerView, SparseIntArray countPerType) {
+        warmUp(recyclerView, countPerType, null);
+    }
+
+    /**
+     * Same as {@link #warmUp(RecyclerView, SparseIntArray)}.
+     * @param onDone    Run on the main thread after all the holders are in the pool.
+     */
+    public void warmUp(RecyclerView recyclerView, SparseIntArray countPerType, Runnable onDone) {
+        HolderWarmer.warmUp(this, recyclerView, countPerType, onDone);
+    }
+
+    /**
+     * Count pool hits and misses of the holders of every viewType, read them by {@link #getPoolStats()}.
+     */
+    public IdeaAdapter<T> setPoolStatsEnabled(boolean enabled) {
+        if (!enabled) {
+            poolStats = null;
+        } else if (poolStats == null) {
+            poolStats = new HolderPoolStats();
+        }
+        return this;
+    }
+
+    /**
+     * @return  Pool hits and misses, or null if it was not enabled.
+     */
+    public HolderPoolStats getPoolStats() {
+        return poolStats;
+    }
+
+    /**
+     * Measure the creates and binds of every viewType, read the results by {@link AdapterMetrics#snapshot()}
+     * or its listener. Nothing is measured without it.
+     * @param metrics   null to stop measuring.
+     */
+    public IdeaAdapter<T> setMetrics(AdapterMetrics metrics) {
+        this.metrics = metrics;
+        return this;
+    }
+
+    public AdapterMetrics getMetrics() {
+        return metrics;
+    }
+
+    void onHoldersWarmed(int viewType, int count) {
+        if (poolStats != null) {
+            poolStats.onWarmed(viewType, count);
+        }
+    }
+
+    @Override
+    public int getItemCount() {
+        return data == null ? 0 : data.size();
+    }
+
+    /**
+     * Return the key of the item while a {@link ItemKeyProvider} was set, otherwise the layout id of the item.
+     * Items of a {@link PagedList} that are not loaded yet have ids counted up from {@link Long#MIN_VALUE} by
+     * their position, so the holders of two placeholders never share an id. Keys must not use that range.
+     */
+    @Override
+    public long getItemId(int position) {
+        if (keyIndex != null) {
+            T item = data.get(position);
+            return item == null ? PLACEHOLDER_ID + position : keyIndex.keyOf(item);
+        }
+        return multiLayout == null ? layoutId : getItemViewType(position);
+    }
+
+    /**
+     * Keep the viewType of every position once {@link MultiLayout#getLayoutId(int)} returned it, until the item
+     * at the position is notified as changed, removed or moved, so layout passes and prefetch don't ask for it
+     * again and again. The list must be changed only through the adapter or with a notification, which
+     * RecyclerView needs anyway. {@link MultiLayout} must not return {@link Integer#MIN_VALUE} with it.
+     */
+    public IdeaAdapter<T> setViewTypeCacheEnabled(boolean enabled) {
+        if (!enabled) {
+            viewTypeCache = null;
+        } else if (viewTypeCache == null) {
+            viewTypeCache = new ViewTypeCache();
+            viewTypeCache.reset(getItemCount());
+        }
+        return this;
+    }
+
+    /**
+     * Count of the items of the viewType, for example to size the pool of the viewType. With the viewType cache
+     * it takes O(1), except the first call after the list changed, which asks for the unknown viewTypes once.
+     * Without it every position is asked.
+     */
+    public int getItemCountForType(int viewType) {
+        if (multiLayout == null) {
+            return getItemViewType(0) == viewType ? getItemCount() : 0;
+        }
+        if (viewTypeCache != null) {
+            return viewTypeCache.count(viewType, multiLayout);
+        }
+
+        int count = 0;
+        for (int i = 0, size = getItemCount(); i < size; i++) {
+            if (multiLayout.getLayoutId(i) == viewType) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Give every item a stable id, so {@link #setHasStableIds(boolean)} is turned on and RecyclerView can keep
+     * the holders of unchanged items when the data is reloaded. Keys must be unique in the list.
+     * {@link FixGridLayoutManager} finds the focused item by its key after a data change and keeps it focused.
+     * Like {@link #setHasStableIds(boolean)}, it must be called before the adapter is set to a RecyclerView.
+     * @param provider  Key of the items, null turns stable ids off.
+     */
+    public IdeaAdapter<T> setItemKeyProvider(ItemKeyProvider<T> provider) {
+        keyIndex = provider == null ? null : new KeyIndex<>(provider);
+
+        boolean stableIds = provider != null;
+        if (hasStableIds() != stableIds) {
+            //Only the observer of the adapter itself is allowed here, RecyclerView's observer is not.
+            unregisterAdapterDataObserver(selfObserver);
+            try {
+                setHasStableIds(stableIds);
+            } finally {
+                registerAdapterDataObserver(selfObserver);
+            }
+        }
+        return this;
+    }
+
+    /**
+     * Find the position of the item with the key. It takes O(1), inserts, removes and moves shift the indexed
+     * positions. Only items that are not indexed yet, like inserted or changed ones, are indexed once by the
+     * first look up that does not find its key, or the whole list after a full change or a diff.
+     * @return  Position of the item, or {@link RecyclerView#NO_POSITION} if it is not in the list or
+     *          no {@link ItemKeyProvider} was set.
+     */
+    public int findPositionByKey(long key) {
+        if (keyIndex == null) {
+            return RecyclerView.NO_POSITION;
+        }
+        return keyIndex.find(data, key);
+    }
+
+    /**
+     * @return  Item with the key, or null.
+     */
+    public T findItemByKey(long key) {
+        int position = findPositionByKey(key);
+        return position == RecyclerView.NO_POSITION ? null : data.get(position);
+    }
+
+    /**
+     * If {@link #multiLayout} is not null, it will be useless.
+     * @param layoutId item id
+     */
+    public IdeaAdapter<T> setSingleLayoutId(int layoutId) {
+        this.layoutId = layoutId;
+        return this;
+    }
+
+    /**
+     * It will invalidate {@link #layoutId}.
+     */
+    public IdeaAdapter<T> setMultiLayout(MultiLayout multiLayout) {
+        this.multiLayout = multiLayout;
+        if (viewTypeCache != null) {
+            viewTypeCache.reset(getItemCount());
+        }
+        return this;
+    }
+
+    /**
+     * Turn on async diffing for {@link #setListData(List)}. The new list is compared with the shown list
+     * on a background executor and only the changed ranges are notified. Moves are detected.
+     * @param callback  Decide whether two items are the same, null turns async diffing off.
+     */
+    public IdeaAdapter<T> setDiffCallback(DiffCallback<T> callback) {
+        return setDiffCallback(callback, true);
+    }
+
+    /**
+     * Same as {@link #setDiffCallback(DiffCallback)}. Detecting moves costs much more time on a big list
+     * which items are often replaced, turn it off if moves are not important for the item animations.
+     * @param callback      Decide whether two items are the same, null turns async diffing off.
+     * @param detectMoves   Whether moved items are notified as moves.
+     */
+    public IdeaAdapter<T> setDiffCallback(DiffCallback<T> callback, boolean detectMoves) {
+        Executor executor = null;
+        if (differ != null) {
+            differ.cancel();
+            executor = differ.getExecutor();
+        }
+
+        if (callback == null) {
+            differ = null;
+        } else {
+            differ = new ListDiffer<>(this, callback, detectMoves);
+            differ.setExecutor(executor);
+        }
+        return this;
+    }
+
+    /**
+     * Executor that the async diffing runs on, null to use the shared background threads of the library.
+     * It is useless before {@link #setDiffCallback(DiffCallback)}.
+     */
+    public IdeaAdapter<T> setDiffExecutor(Executor executor) {
+        if (differ != null) {
+            differ.setExecutor(executor);
+        }
+        return this;
+    }
+
+    /**
+     * Make {@link #getFilter()} filter the items by the words of their keys: an item is shown if every word of
+     * the query starts a word of its key, ignoring case. The keys are indexed once per list on a background
+     * thread, a longer query only checks the items of the shorter one, and a new query cancels the one still
+     * running. Results are shown with the range notifications of the items that left or came back. Range
+     * edits are not allowed while a query is active, and a {@link PagedList} can not be filtered.
+     * @param extractor Key of the items, null turns filtering off and shows the whole list again.
+     */
+    public IdeaAdapter<T> setFilterKeyExtractor(FilterKeyExtractor<T> extractor) {
+        if (itemFilter != null) {
+            itemFilter.submit(null);
+        }
+        itemFilter = extractor == null ? null : new ItemFilter<>(filterTarget, extractor);
+        return this;
+    }
+
+    /**
+     * Executor that filtering runs on, null to use the shared background threads of the library.
+     * It is useless before {@link #setFilterKeyExtractor(FilterKeyExtractor)}.
+     */
+    public IdeaAdapter<T> setFilterExecutor(Executor executor) {
+        if (itemFilter != null) {
+            itemFilter.setExecutor(executor);
+        }
+        return this;
+    }
+
+    /**
+     * Filter the list by a query, for example from the TextWatcher of a search box. An empty query shows the
+     * whole list again.
+     * @throws IllegalStateException    If {@link #setFilterKeyExtractor(FilterKeyExtractor)} was not called.
+     */
+    @Override
+    public Filter getFilter() {
+        if (itemFilter == null) {
+            throw new IllegalStateException("Set a FilterKeyExtractor before filtering");
+        }
+        return itemFilter;
+    }
+
+    /**
+     * It will invalidate {@link #data} also refresh the view list. If a {@link DiffCallback} was set,
+     * the list is diffed in background and the new list is shown when the diff is done, a newer list
+     * drops the result of an older one. The list must not be changed after it was set in that case.
+     * Edits that are waiting for the next frame are dropped. A {@link PagedList} is never diffed, it is shown
+     * at once and loads its pages as the items are bound. While a filter query is active, the list replaces
+     * the filtered one and only its items that match the query are shown, a {@link PagedList} clears the
+     * query. In sorted mode a list that is not sorted is copied and the copy is sorted by the comparator, the
+     * list given is left as it is.
+     * @param data  Data list
+     * @return  {@link IdeaAdapter} The Object that call with this
+     */
+    public IdeaAdapter<T> setListData(List<T> data) {
+        edits.clear();
+        sortedEdits.clear();
+        List<T> given = data;
+        if (comparator != null && data != null) {
+            if (data instanceof PagedList) {
+                throw new UnsupportedOperationException("A PagedList can not be sorted, turn the sorted mode off first");
+            }
+            if (!isSorted(data, comparator)) {
+                //It may be the list shown or the one being diffed, sorting it in place would change them unnoticed.
+                data = new ArrayList<>(data);
+                Collections.sort(data, comparator);
+            }
+        }
+        if (itemFilter != null && itemFilter.isActive() && data instanceof PagedList) {
+            //A PagedList can not be filtered, and the query would keep filtering the old list.
+            itemFilter.submit(null);
+        }
+        if (itemFilter != null && !(data instanceof PagedList) && itemFilter.setSource(data)) {
+            //The list is shown when it is filtered by the current query.
+            return this;
+        }
+        if (pagedList != null) {
+            pagedList.setCallback(null);
+            pagedList = null;
+            if (!(data instanceof PagedList)) {
+                //A PagedList can not be cleared, and diffing it would read the pages that are not loaded.
+                if (differ != null) {
+                    differ.cancel();
+                }
+                this.data = data;
+                notifyDataSetChanged();
+                return this;
+            }
+        }
+        if (data instanceof PagedList) {
+            setPagedList((PagedList<T>) data);
+            return this;
+        }
+
+        if (differ != null) {
+            submitListData(data);
+            return this;
+        }
+
+        if (this.data == null) {
+            this.data = data;
+        } else if (this.data != data) {
+            if (this.data != given) {
+                this.data.clear();
+            }
+            notifyDataSetChanged();
+            this.data = data;
+        }
+        //The notification above came before the new list was set.
+        if (viewTypeCache != null) {
+            viewTypeCache.reset(getItemCount());
+        }
+
+        return this;
+    }
+
+    private void setPagedList(PagedList<T> list) {
+        if (differ != null) {
+            differ.cancel();
+        }
+        pagedList = list;
+        pagedList.setCallback(pagedCallback);
+        this.data = list;
+        notifyDataSetChanged();
+        //Nothing is bound while an endless list is empty, so load its first page here.
+        pagedList.loadAround(0);
+    }
+
+    private void submitListData(List<T> newData) {
+        if (newData == null) {
+            newData = new ArrayList<>();
+        }
+        if (this.data == newData) {
+            //The list shown wins over a list still being diffed.
+            differ.cancel();
+            return;
+        }
+
+        int oldSize = getItemCount();
+        if (oldSize == 0 || newData.isEmpty()) {
+            //Nothing to compare, so don't bother the background thread.
+            differ.cancel();
+            this.data = newData;
+            if (oldSize > 0) {
+                notifyItemRangeRemoved(0, oldSize);
+            } else if (!newData.isEmpty()) {
+                notifyItemRangeInserted(0, newData.size());
+            }
+            return;
+        }
+
+        differ.submit(this.data, newData);
+    }
+
+    /**
+     * Called on the main thread by {@link ListDiffer} with the result of the latest submitted list.
+     */
+    void applyDiff(List<T> newData, DiffUtil.DiffResult result) {
+        this.data = newData;
+        result.dispatchUpdatesTo(updateCallback);
+        //Edits made while diffing are waiting for the new list.
+        edits.schedule();
+        sortedEdits.schedule();
+    }
+
+    /**
+     * Append items to the end of the list. Like the other range edits, the list is changed at the next frame
+     * together with the other edits, and their notifications are merged, so streaming items in costs one
+     * small notification each frame. All range edits must be called on the main thread, and they are not
+     * supported by a {@link PagedList}. A list that is not an {@link ArrayList} is copied into one by the first
+     * edit, so the list given to {@link #setListData(List)} is not changed then. In sorted mode the items go to
+     * their sorted positions instead, like {@link #addSorted(Object)}.
+     */
+    public IdeaAdapter<T> addAll(Collection<? extends T> items) {
+        checkEditable();
+        if (comparator != null) {
+            sortedEdits.add(items);
+        } else {
+            edits.append(items);
+        }
+        return this;
+    }
+
+    /**
+     * Insert items at the position, the position counts the edits that are waiting.
+     */
+    public IdeaAdapter<T> insertRange(int position, Collection<? extends T> items) {
+        checkEditable();
+        checkUnsorted();
+        edits.insert(position, items);
+        return this;
+    }
+
+    public IdeaAdapter<T> removeRange(int position, int count) {
+        checkEditable();
+        checkUnsorted();
+        edits.remove(position, count);
+        return this;
+    }
+
+    public IdeaAdapter<T> move(int fromPosition, int toPosition) {
+        checkEditable();
+        checkUnsorted();
+        edits.move(fromPosition, toPosition);
+        return this;
+    }
+
+    /**
+     * Replace items from the position on, the replaced items are notified as changed.
+     */
+    public IdeaAdapter<T> replace(int position, List<? extends T> items) {
+        checkEditable();
+        checkUnsorted();
+        edits.replace(position, items, null);
+        return this;
+    }
 
-        if (data == null) {
-            this.data = new ArrayList<>();
-        } else {
-            this.data = data;
-        }
+    public IdeaAdapter<T> replace(int position, T item) {
+        checkEditable();
+        checkUnsorted();
+        edits.replace(position, Collections.singletonList(item), null);
+        return this;
     }
 
     /**
-     * Return a item id from the position on the item list while {@link #multiLayout} is not null,
-     * and return {@link #layoutId} when it was reValue or return 0 with others.
-     * @param position position for a item
-     * @return item id for the item
+     * Replace the item and rebind it by {@link #onBindPayloads(MyHolder, int, List, List)} with the payload.
      */
-    @Override
-    public int getItemViewType(int position) {
-        if (multiLayout != null) {
-            return multiLayout.getLayoutId(position);
-        } else if (layoutId != -1) {
-            return layoutId;
-        }
+    public IdeaAdapter<T> replace(int position, T item, Object payload) {
+        checkEditable();
+        checkUnsorted();
+        edits.replace(position, Collections.singletonList(item), payload);
+        return this;
+    }
 
-        return super.getItemViewType(position);
+    /**
+     * Rebind a part of the item at the next frame by {@link #onBindPayloads(MyHolder, int, List, List)},
+     * for small and frequent updates like a progress or a counter. Changes of neighbouring items with the
+     * same payload object are merged into one notification, so prefer constant payloads that only tell what
+     * to rebind, such as an enum, and read the values from the item.
+     */
+    public IdeaAdapter<T> notifyPayload(int position, Object payload) {
+        edits.change(position, 1, payload);
+        return this;
     }
 
     /**
-     * It will call {@link #getItemViewType(int)} to get a viewType.
-     * @param viewType  It was result from {@link #getItemViewType(int)}
+     * Same as {@link #notifyPayload(int, Object)}, for the items from position on.
      */
-    @Override
-    public MyHolder onCreateViewHolder(ViewGroup parent, int viewType) {
-        if (multiLayout != null) {
-            layoutId = viewType;
-        }
+    public IdeaAdapter<T> notifyPayload(int position, int count, Object payload) {
+        edits.change(position, count, payload);
+        return this;
+    }
 
-        if (context == null || context.get() == null) {
-            return null;
+    /**
+     * Keep the list sorted by the comparator from now on, or turn the sorted mode off by null. The list shown
+     * is sorted at once, and a {@link DiffCallback} makes the reordering notified as moves.
+     * <p>
+     * In sorted mode {@link #addSorted(Object)}, {@link #addAll(Collection)}, {@link #removeSorted(Object)} and
+     * {@link #updateSorted(Object, Object)} find the positions by binary search, and like the other range edits
+     * they wait for the next frame, so a burst of items is placed together and its notifications are merged.
+     * Adding k items to a list of n costs O(k log k + k log n) comparisons and one pass over the list after
+     * the first changed position. Edits by position that could break the order throw, while
+     * {@link #notifyPayload(int, Object)} still works, with the positions of the list before the waiting sorted
+     * edits. The items must not be changed in a way that moves them in the order, replace them by
+     * {@link #updateSorted(Object, Object)} instead.
+     */
+    public IdeaAdapter<T> setSortComparator(Comparator<? super T> comparator) {
+        if (comparator != null) {
+            checkEditable();
         }
-
-        View itemView = null; 
-        try {
-            itemView = LayoutInflater.from(context.get()).inflate(layoutId, parent, false);
-        } catch (Exception i) {
-            Log.e(TAG, "Inflate fail");
-            itemView = new View(context.get());
-            itemView.setId(View.generateViewId());
-            return new MyHolder(itemView);
+        flushEdits();
+        this.comparator = comparator;
+        if (comparator == null) {
+            return this;
         }
-        return new MyHolder(itemView);
-    }
 
-    @Override
-    public void onBindViewHolder(MyHolder viewHolder, int position) {
-        onBind(viewHolder, position, data);
+        List<T> pendingList = differ == null ? null : differ.getPendingList();
+        List<T> current = pendingList != null ? pendingList : data;
+        if (current == null || isSorted(current, comparator)) {
+            return this;
+        }
+        if (differ != null) {
+            //The pending list must not be changed while it is being diffed, so sort a copy.
+            List<T> sorted = new ArrayList<>(current);
+            Collections.sort(sorted, comparator);
+            submitListData(sorted);
+        } else {
+            Collections.sort(data, comparator);
+            notifyDataSetChanged();
+        }
+        return this;
     }
 
-    @Override
-    public int getItemCount() {
-        return data == null ? 0 : data.size();
+    public Comparator<? super T> getSortComparator() {
+        return comparator;
     }
 
-    @Override
-    public long getItemId(int position) {
-        return multiLayout == null ? layoutId : multiLayout.getLayoutId(position);
+    /**
+     * Add the item at its sorted position at the next frame, after the items that are equal to it.
+     * @throws IllegalStateException    If the sorted mode is off.
+     */
+    public IdeaAdapter<T> addSorted(T item) {
+        checkSorted();
+        sortedEdits.add(Collections.singletonList(item));
+        return this;
     }
 
     /**
-     * If {@link #multiLayout} is not null, it will be useless.
-     * @param layoutId item id
+     * Remove the item at the next frame. It is looked up by binary search among the items equal to it, and is
+     * the same one by {@link DiffCallback#areItemsTheSame(Object, Object)}, or by equals() without a
+     * {@link DiffCallback}. Nothing happens if it is not in the list.
+     * @throws IllegalStateException    If the sorted mode is off.
      */
-    public IdeaAdapter<T> setSingleLayoutId(int layoutId) {
-        this.layoutId = layoutId;
+    public IdeaAdapter<T> removeSorted(T item) {
+        checkSorted();
+        sortedEdits.remove(item);
         return this;
     }
 
     /**
-     * It will invalidate {@link #layoutId}.
+     * Replace the old item by the new one at the next frame, the new one moves to its sorted position. If it
+     * stays between the same neighbours, it is notified as changed, with the payload of the
+     * {@link DiffCallback} and not at all if the contents are the same. The old item is looked up like
+     * {@link #removeSorted(Object)}, if it is not in the list the new one is only added.
+     * @throws IllegalStateException    If the sorted mode is off.
      */
-    public IdeaAdapter<T> setMultiLayout(MultiLayout multiLayout) {
-        this.multiLayout = multiLayout;
+    public IdeaAdapter<T> updateSorted(T oldItem, T newItem) {
+        checkSorted();
+        sortedEdits.update(oldItem, newItem);
         return this;
     }
 
+    private static <T> boolean isSorted(List<T> list, Comparator<? super T> comparator) {
+        for (int i = 1, size = list.size(); i < size; i++) {
+            if (comparator.compare(list.get(i - 1), list.get(i)) > 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void checkSorted() {
+        checkEditable();
+        if (comparator == null) {
+            throw new IllegalStateException("Set a sort comparator before the sorted edits");
+        }
+    }
+
+    private void checkUnsorted() {
+        if (comparator != null) {
+            throw new IllegalStateException("Edits by position are not allowed in sorted mode, use the sorted edits");
+        }
+    }
+
+    private void checkEditable() {
+        if (pagedList != null) {
+            throw new UnsupportedOperationException("A PagedList can not be edited, invalidate it instead");
+        }
+        if (itemFilter != null && itemFilter.isActive()) {
+            throw new IllegalStateException("A filtered list can not be edited, clear the query first");
+        }
+    }
+
     /**
-     * It will invalidate {@link #data} also refresh the view list.
-     * @param data  Data list
-     * @return  {@link IdeaAdapter} The Object that call with this
+     * Apply the waiting range edits now instead of at the next frame. It does nothing while a list
+     * set by {@link #setListData(List)} is still being diffed, the edits are applied to that list later.
      */
-    public IdeaAdapter<T> setListData(List<T> data) {
-        if (this.data == null) {
-            this.data = data;
-        } else if (this.data != data) {
-            this.data.clear();
-            notifyDataSetChanged();
-            this.data = data;
+    public void flushEdits() {
+        if ((edits.isEmpty() && sortedEdits.isEmpty()) || (differ != null && differ.getPendingList() != null)) {
+            return;
         }
 
-        return this;
+        if (data == null) {
+            data = new ArrayList<>();
+        } else if (!(data instanceof ArrayList)) {
+            //Lists like Arrays.asList() or unmodifiable ones would throw here, far from the edit call.
+            data = new ArrayList<>(data);
+        }
+        BatchingListUpdateCallback callback = new BatchingListUpdateCallback(updateCallback);
+        edits.applyTo(data, callback);
+        if (comparator != null) {
+            //Payload changes above count the positions before the sorted edits.
+            sortedEdits.applyTo(data, comparator, differ == null ? null : differ.getCallback(), callback);
+        } else {
+            sortedEdits.clear();
+        }
+        callback.dispatchLastEvent();
     }
 
     /**
      * ViewHolder that get item view and set something for item.
      */
     public class MyHolder extends RecyclerView.ViewHolder {
-        private SparseArray<View> views;
+        private final ViewBindingTable table;
+        /** Views of the item by the slots of {@link #table}. */
+        private View[] views;
+        /**
+         * Image resource that {@link #setImageResource(int, int)} set last by slot, and the drawable the view had
+         * right after it. Setting the same resource again is skipped while the view still has that drawable.
+         */
+        private int[] boundImageRes = new int[0];
+        private Drawable[] boundImages = new Drawable[0];
         private View viewItem;
+        /** Whether the holder is in the RecycledViewPool now, or was taken out of it but not bound yet. */
+        private boolean pooled;
+
+        private final Dispatcher dispatcher = new Dispatcher();
+        /** The adapter that bound the holder last, it may not be the one created it when the pool is shared. */
+        private IdeaAdapter<T> boundAdapter;
+        /** Position of the last bind, it is only right during the bind. */
+        private int boundPosition = RecyclerView.NO_POSITION;
+        private IdeaAdapter<T> installedBy;
+        private int installedVersion;
+        /** Views that have the dispatcher, with whether they were clickable before it was set. */
+        private final SparseBooleanArray clickInstalled = new SparseBooleanArray();
+        private final SparseBooleanArray longClickInstalled = new SparseBooleanArray();
+        private final SparseBooleanArray focusInstalled = new SparseBooleanArray();
 
-        MyHolder(View itemView) {
+        MyHolder(View itemView, ViewBindingTable table) {
             super(itemView);
 
-            views = new SparseArray<>();
+            this.table = table;
             viewItem = itemView;
+            int[] ids = table.ids();
+            views = new View[ids.length];
+            ViewBindingTable.fill(itemView, ids, views, 0);
+        }
+
+        void markPooled() {
+            pooled = true;
         }
 
         /**
          * Get itemView from the item layout by id.
          */
         <T extends View>T getView(int viewId) {
-            View v = views.get(viewId);
-            if (v == null) {
-                v = viewItem.findViewById(viewId);
-                views.append(viewId, v);
+            return (T)views[slotOf(viewId)];
+        }
+
+        private int slotOf(int viewId) {
+            int slot = table.slotOf(viewId);
+            if (slot == ViewBindingTable.NO_SLOT) {
+                slot = table.obtainSlot(viewId);
+            }
+            if (slot >= views.length) {
+                //Ids learnt after the holder was created.
+                int[] ids = table.ids();
+                View[] grown = new View[ids.length];
+                System.arraycopy(views, 0, grown, 0, views.length);
+                ViewBindingTable.fill(viewItem, ids, grown, views.length);
+                views = grown;
             }
-            return (T)v;
+            return slot;
         }
 
         /**
-         * Set listener for the view search by a resId on the current item.
+         * Set listener for the view search by a resId on the current item. The kind of the listener is found
+         * by instanceof, the first of click, long click, focus change, touch, key and generic motion listener
+         * that it implements is set. Prefer the typed setters, or the listeners of the adapter which are set
+         * once per holder, see {@link IdeaAdapter#setOnItemChildClickListener(int, OnItemChildClickListener)}.
          * @param resId view of item layout
          * @param listener Listener object
          * @return Result of set a listener for a item view.
@@ -203,60 +1297,255 @@ public abstract class IdeaAdapter<T> extends RecyclerView.Adapter<IdeaAdapter<T>
                 return false;
             }
 
-            Class c = listener.getClass();
-            Class[] classes = c.getInterfaces();
-            String listenerName = null;
-            for (Class aClass : classes) {
-                String name = aClass.getName();
-                if (name.contains("android.view.View$On") && name.endsWith("Listener")) {
-                    listenerName = aClass.getName();
-                    break;
-                }
+            if (listener instanceof View.OnClickListener) {
+                v.setOnClickListener((View.OnClickListener)listener);
+            } else if (listener instanceof View.OnLongClickListener) {
+                v.setOnLongClickListener((View.OnLongClickListener)listener);
+            } else if (listener instanceof View.OnFocusChangeListener) {
+                v.setOnFocusChangeListener((View.OnFocusChangeListener)listener);
+            } else if (listener instanceof View.OnTouchListener) {
+                v.setOnTouchListener((View.OnTouchListener)listener);
+            } else if (listener instanceof View.OnKeyListener) {
+                v.setOnKeyListener((View.OnKeyListener)listener);
+            } else if (listener instanceof View.OnGenericMotionListener) {
+                v.setOnGenericMotionListener((View.OnGenericMotionListener)listener);
+            } else {
+                Log.e(TAG, "MyHolder@setListener: Unknown listener.");
+                return false;
             }
 
-            if (listenerName == null) {
+            return true;
+        }
+
+        public boolean setOnClickListener(int resId, View.OnClickListener listener) {
+            View v = getView(resId);
+            if (v == null) {
+                Log.e(TAG, "Failure due to a null view Object");
                 return false;
             }
 
-            switch (listenerName) {
-                case InterfaceName.CLICK:
-                    v.setOnClickListener((View.OnClickListener)listener);
-                    break;
-                case InterfaceName.LONG_CLICK:
-                    v.setOnLongClickListener((View.OnLongClickListener)listener);
-                    break;
-                case InterfaceName.FOCUS_CHANGED:
-                    v.setOnFocusChangeListener((View.OnFocusChangeListener)listener);
-                    break;
-                case InterfaceName.TOUCH:
-                    v.setOnTouchListener((View.OnTouchListener)listener);
-                    break;
-                case InterfaceName.KEY:
-                    v.setOnKeyListener((View.OnKeyListener)listener);
-                    break;
-                case InterfaceName.GENERIC_MOTION:
-                    v.setOnGenericMotionListener((View.OnGenericMotionListener)listener);
-                    break;
-                default:
-                    Log.e(TAG, "MyHolder@setListener: Unknown listener.");
-                    return false;
+            v.setOnClickListener(listener);
+
+            return true;
+        }
+
+        public boolean setOnLongClickListener(int resId, View.OnLongClickListener listener) {
+            View v = getView(resId);
+            if (v == null) {
+                Log.e(TAG, "Failure due to a null view Object");
+                return false;
+            }
+
+            v.setOnLongClickListener(listener);
+
+            return true;
+        }
+
+        public boolean setOnFocusChangeListener(int resId, View.OnFocusChangeListener listener) {
+            View v = getView(resId);
+            if (v == null) {
+                Log.e(TAG, "Failure due to a null view Object");
+                return false;
+            }
+
+            v.setOnFocusChangeListener(listener);
+
+            return true;
+        }
+
+        public boolean setOnTouchListener(int resId, View.OnTouchListener listener) {
+            View v = getView(resId);
+            if (v == null) {
+                Log.e(TAG, "Failure due to a null view Object");
+                return false;
+            }
+
+            v.setOnTouchListener(listener);
+
+            return true;
+        }
+
+        public boolean setOnKeyListener(int resId, View.OnKeyListener listener) {
+            View v = getView(resId);
+            if (v == null) {
+                Log.e(TAG, "Failure due to a null view Object");
+                return false;
+            }
+
+            v.setOnKeyListener(listener);
+
+            return true;
+        }
+
+        public boolean setOnGenericMotionListener(int resId, View.OnGenericMotionListener listener) {
+            View v = getView(resId);
+            if (v == null) {
+                Log.e(TAG, "Failure due to a null view Object");
+                return false;
             }
 
+            v.setOnGenericMotionListener(listener);
+
             return true;
         }
 
+        /**
+         * Set the dispatcher of the holder to the views that have listeners in the adapter, and take it off the
+         * views that have none anymore, only when the listeners of the adapter changed since the last time, or
+         * the holder came from another adapter.
+         */
+        void installListeners(IdeaAdapter<T> adapter) {
+            boundAdapter = adapter;
+            if (installedBy == adapter && installedVersion == adapter.listenerVersion) {
+                return;
+            }
+            installedBy = adapter;
+            installedVersion = adapter.listenerVersion;
+
+            //Views whose listener was removed must not stay clickable and eat the clicks.
+            for (int i = clickInstalled.size() - 1; i >= 0; i--) {
+                int id = clickInstalled.keyAt(i);
+                if (adapter.childClickListeners.get(id) == null) {
+                    View v = getView(id);
+                    if (v != null) {
+                        v.setOnClickListener(null);
+                        v.setClickable(clickInstalled.valueAt(i));
+                    }
+                    clickInstalled.removeAt(i);
+                }
+            }
+            for (int i = longClickInstalled.size() - 1; i >= 0; i--) {
+                int id = longClickInstalled.keyAt(i);
+                if (adapter.childLongClickListeners.get(id) == null) {
+                    View v = getView(id);
+                    if (v != null) {
+                        v.setOnLongClickListener(null);
+                        v.setLongClickable(longClickInstalled.valueAt(i));
+                    }
+                    longClickInstalled.removeAt(i);
+                }
+            }
+            for (int i = focusInstalled.size() - 1; i >= 0; i--) {
+                int id = focusInstalled.keyAt(i);
+                if (adapter.childFocusChangeListeners.get(id) == null) {
+                    View v = getView(id);
+                    if (v != null) {
+                        v.setOnFocusChangeListener(null);
+                    }
+                    focusInstalled.removeAt(i);
+                }
+            }
+
+            for (int i = 0; i < adapter.childClickListeners.size(); i++) {
+                int id = adapter.childClickListeners.keyAt(i);
+                View v = getView(id);
+                if (v != null && clickInstalled.indexOfKey(id) < 0) {
+                    clickInstalled.put(id, v.isClickable());
+                    v.setOnClickListener(dispatcher);
+                }
+            }
+            for (int i = 0; i < adapter.childLongClickListeners.size(); i++) {
+                int id = adapter.childLongClickListeners.keyAt(i);
+                View v = getView(id);
+                if (v != null && longClickInstalled.indexOfKey(id) < 0) {
+                    longClickInstalled.put(id, v.isLongClickable());
+                    v.setOnLongClickListener(dispatcher);
+                }
+            }
+            for (int i = 0; i < adapter.childFocusChangeListeners.size(); i++) {
+                int id = adapter.childFocusChangeListeners.keyAt(i);
+                View v = getView(id);
+                if (v != null && focusInstalled.indexOfKey(id) < 0) {
+                    focusInstalled.put(id, true);
+                    v.setOnFocusChangeListener(dispatcher);
+                }
+            }
+        }
+
+        /**
+         * One per holder, finds out the position and the listener when an event comes.
+         */
+        private final class Dispatcher implements View.OnClickListener, View.OnLongClickListener,
+                View.OnFocusChangeListener {
+            @Override
+            public void onClick(View v) {
+                IdeaAdapter<T> adapter = boundAdapter;
+                int pos = getAdapterPosition();
+                if (adapter == null || pos == RecyclerView.NO_POSITION) {
+                    return;
+                }
+                OnItemChildClickListener<T> listener = adapter.childClickListeners.get(v.getId());
+                if (listener != null) {
+                    listener.onItemChildClick(v, pos, adapter.data.get(pos));
+                }
+            }
+
+            @Override
+            public boolean onLongClick(View v) {
+                IdeaAdapter<T> adapter = boundAdapter;
+                int pos = getAdapterPosition();
+                if (adapter == null || pos == RecyclerView.NO_POSITION) {
+                    return false;
+                }
+                OnItemChildLongClickListener<T> listener = adapter.childLongClickListeners.get(v.getId());
+                return listener != null && listener.onItemChildLongClick(v, pos, adapter.data.get(pos));
+            }
+
+            @Override
+            public void onFocusChange(View v, boolean hasFocus) {
+                IdeaAdapter<T> adapter = boundAdapter;
+                int pos = getAdapterPosition();
+                if (adapter == null || pos == RecyclerView.NO_POSITION) {
+                    return;
+                }
+                OnItemChildFocusChangeListener<T> listener = adapter.childFocusChangeListeners.get(v.getId());
+                if (listener != null) {
+                    listener.onItemChildFocusChange(v, pos, adapter.data.get(pos), hasFocus);
+                }
+            }
+        }
+
         public boolean setText(int resId, CharSequence text) {
             View v = getView(resId);
+            if (v instanceof LayoutTextView) {
+                Layout layout = findTextLayout(resId, text);
+                if (layout != null) {
+                    ((LayoutTextView) v).setTextLayout(layout);
+                } else {
+                    ((LayoutTextView) v).setText(text);
+                }
+                return true;
+            }
             if (v == null || !(v instanceof TextView)) {
                 Log.e(TAG, "Failture due to a null view object.");
                 return false;
             }
 
+            //The view keeps the last text itself. Only a String equal to it is skipped, other CharSequences
+            //may differ in spans.
+            if (text instanceof String && text.equals(((TextView)v).getText())) {
+                return true;
+            }
             ((TextView)v).setText(text);
 
             return true;
         }
 
+        /**
+         * @return  Layout of the text computed ahead by the {@link TextPrecomputer} for the item being bound.
+         */
+        private Layout findTextLayout(int resId, CharSequence text) {
+            IdeaAdapter<T> adapter = boundAdapter;
+            if (adapter == null || adapter.textPrecomputer == null) {
+                return null;
+            }
+            List<T> data = adapter.data;
+            if (data == null || boundPosition < 0 || boundPosition >= data.size()) {
+                return null;
+            }
+            return adapter.textPrecomputer.find(data.get(boundPosition), resId, text);
+        }
+
         public boolean setImageDrawable(int resId, Drawable drawable) {
             View v = getView(resId);
             if (v == null) {
@@ -265,18 +1554,46 @@ public abstract class IdeaAdapter<T> extends RecyclerView.Adapter<IdeaAdapter<T>
             }
 
             ((ImageView)v).setImageDrawable(drawable);
+            ImageLoader loader = imageLoader();
+            if (loader != null) {
+                //The view is written once, the loader only forgets it.
+                loader.release((ImageView)v);
+            }
 
             return true;
         }
 
         public boolean setImageResource(int resId, int imgRes) {
-            View v = getView(resId);
+            int slot = slotOf(resId);
+            View v = views[slot];
             if (v == null) {
                 Log.e(TAG, "Failure due to a null view Object");
                 return false;
             }
 
-            ((ImageView)v).setImageResource(imgRes);
+            ImageView iv = (ImageView)v;
+            if (slot >= boundImageRes.length) {
+                int[] grownRes = new int[views.length];
+                Drawable[] grownImages = new Drawable[views.length];
+                System.arraycopy(boundImageRes, 0, grownRes, 0, boundImageRes.length);
+                System.arraycopy(boundImages, 0, grownImages, 0, boundImages.length);
+                boundImageRes = grownRes;
+                boundImages = grownImages;
+            }
+            Drawable shown = iv.getDrawable();
+            if (imgRes != 0 && boundImageRes[slot] == imgRes && shown != null && shown == boundImages[slot]) {
+                return true;
+            }
+
+            ImageLoader loader = imageLoader();
+            if (loader != null) {
+                loader.loadResource(iv, imgRes);
+            } else {
+                iv.setImageResource(imgRes);
+            }
+            //Null while the loader is decoding, then the next bind asks the loader again.
+            boundImageRes[slot] = imgRes;
+            boundImages[slot] = iv.getDrawable();
 
             return true;
         }
@@ -288,28 +1605,53 @@ public abstract class IdeaAdapter<T> extends RecyclerView.Adapter<IdeaAdapter<T>
                 return false;
             }
 
-            ((ImageView)v).setImageBitmap(bm);
+            ImageLoader loader = imageLoader();
+            if (loader != null) {
+                loader.show((ImageView)v, bm);
+            } else {
+                ((ImageView)v).setImageBitmap(bm);
+            }
+
+            return true;
+        }
+
+        /**
+         * Decode the image file off the main thread, downsampled to the size of the view. It uses the loader of
+         * the adapter, or {@link ImageLoader#getDefault(Context)} if the adapter has none.
+         */
+        public boolean setImageFile(int resId, String path) {
+            View v = getView(resId);
+            if (v == null) {
+                Log.e(TAG, "Failure due to a null view Object");
+                return false;
+            }
+
+            ImageLoader loader = imageLoader();
+            if (loader == null) {
+                loader = ImageLoader.getDefault(v.getContext());
+            }
+            loader.loadFile((ImageView)v, path);
 
             return true;
         }
 
-        private final class InterfaceName {
-            final static String SCROLL_CHANGED = "android.view.View$OnScrollChangeListener";
-            final static String LAYOUT_CHANGED = "android.view.View$OnLayoutChangeListener";
-            final static String CAPTURED_POINTER = "android.view.View$OnCapturedPointerListener";
-            final static String KEY = "android.view.View$OnKeyListener";
-            final static String TOUCH = "android.view.View$OnTouchListener";
-            final static String HOVER = "android.view.View$OnHoverListener";
-            final static String GENERIC_MOTION = "android.view.View$OnGenericMotionListener";
-            final static String LONG_CLICK = "android.view.View$OnLongClickListener";
-            final static String DRAG = "android.view.View$OnDragListener";
-            final static String FOCUS_CHANGED = "android.view.View$OnFocusChangeListener";
-            final static String CLICK = "android.view.View$OnClickListener";
-            final static String CONTEXT_CLICK = "android.view.View$OnContextClickListener";
-            final static String CONTEXT_MENU = "android.view.View$OnCreateContextMenuListener";
-            final static String SYSTEMUI_VISIBILITY_CHANGE = "android.view.View$OnSystemUiVisibilityChangeListener";
-            final static String ATTACH_STATE_CHANGE = "android.view.View$OnAttachStateChangeListener";
-            final static String APPLY_WINDOW_INSETS = "android.view.View$OnApplyWindowInsetsListener";
+        private ImageLoader imageLoader() {
+            return boundAdapter != null ? boundAdapter.imageLoader : IdeaAdapter.this.imageLoader;
+        }
+
+        /**
+         * Results of the images still decoding are not wanted anymore.
+         */
+        void cancelImages() {
+            ImageLoader loader = imageLoader();
+            if (loader == null) {
+                return;
+            }
+            for (View v : views) {
+                if (v instanceof ImageView) {
+                    loader.cancel((ImageView)v);
+                }
+            }
         }
     }
 
@@ -337,10 +1679,74 @@ public abstract class IdeaAdapter<T> extends RecyclerView.Adapter<IdeaAdapter<T>
         }
     }
 
+    /**
+     * Used by async diffing to find out what changed between two lists.
+     * @param <T>   A type convert to adapter.
+     */
+    public static abstract class DiffCallback<T> {
+        /**
+         * Whether the two objects represent the same item, usually compare their ids.
+         */
+        public abstract boolean areItemsTheSame(T oldItem, T newItem);
+
+        /**
+         * Called only when {@link #areItemsTheSame(Object, Object)} returns true, return false to rebind the item.
+         */
+        public abstract boolean areContentsTheSame(T oldItem, T newItem);
+
+        /**
+         * Payload passed to the changed item, null means a full rebind.
+         */
+        public Object getChangePayload(T oldItem, T newItem) {
+            return null;
+        }
+    }
+
+    /**
+     * Give every item a unique key of long, used as the stable id of the item.
+     * @param <T>   A type convert to adapter.
+     */
+    public interface ItemKeyProvider<T> {
+        long getKey(T item);
+    }
+
+    /**
+     * Text of the item that a filter query is matched with. It is called on a background thread, so it must
+     * only read the item.
+     * @param <T>   A type convert to adapter.
+     */
+    public interface FilterKeyExtractor<T> {
+        CharSequence getFilterKey(T item);
+    }
+
+    public interface OnItemChildClickListener<T> {
+        void onItemChildClick(View view, int position, T item);
+    }
+
+    public interface OnItemChildLongClickListener<T> {
+        boolean onItemChildLongClick(View view, int position, T item);
+    }
+
+    public interface OnItemChildFocusChangeListener<T> {
+        void onItemChildFocusChange(View view, int position, T item, boolean hasFocus);
+    }
+
     /**
      * It can be used to set a multi type list.
      */
     public interface MultiLayout {
         int getLayoutId(int pos);
     }
+
+    /**
+     * Build the item view of a viewType in code, see {@link #registerViewType(int, ViewFactory)}.
+     */
+    public interface ViewFactory {
+        /**
+         * It may be called on a warm up thread, so it must not touch views that are shown.
+         * Give the views ids, {@link MyHolder} finds them by id like the views of a layout.
+         * @param parent    Don't add the view to it, use it for the layout params only.
+         */
+        View createView(Context context, ViewGroup parent);
+    }
 }
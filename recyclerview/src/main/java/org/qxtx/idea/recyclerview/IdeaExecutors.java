@@ -0,0 +1,67 @@
+package org.qxtx.idea.recyclerview;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.os.Process;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Threads shared by the adapters of this library. Work that should not run on the main thread
+ * goes to {@link #background()}, results come back through {@link #main()}.
+ */
+final class IdeaExecutors {
+    private static final int THREAD_COUNT = Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors() - 1));
+
+    private static Handler mainHandler;
+    private static Executor backgroundExecutor;
+
+    private IdeaExecutors() {}
+
+    /**
+     * Handler of the main thread.
+     */
+    static synchronized Handler main() {
+        if (mainHandler == null) {
+            mainHandler = new Handler(Looper.getMainLooper());
+        }
+        return mainHandler;
+    }
+
+    static boolean isMainThread() {
+        return Looper.myLooper() == Looper.getMainLooper();
+    }
+
+    /**
+     * A small pool of background-priority daemon threads. Idle threads die after a while.
+     */
+    static synchronized Executor background() {
+        if (backgroundExecutor == null) {
+            ThreadPoolExecutor executor = new ThreadPoolExecutor(THREAD_COUNT, THREAD_COUNT,
+                    30, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+                private final AtomicInteger count = new AtomicInteger();
+
+                @Override
+                public Thread newThread(final Runnable r) {
+                    Thread thread = new Thread(new Runnable() {
+                        @Override
+                        public void run() {
+                            Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+                            r.run();
+                        }
+                    }, "IdeaAdapter-" + count.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+            executor.allowCoreThreadTimeOut(true);
+            backgroundExecutor = executor;
+        }
+        return backgroundExecutor;
+    }
+}
@@ -0,0 +1,369 @@
+package org.qxtx.idea.recyclerview;
+
+import android.content.Context;
+import android.content.res.Resources;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.util.DisplayMetrics;
+import android.util.Log;
+import android.util.LruCache;
+import android.view.ViewGroup;
+import android.widget.ImageView;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.Executor;
+
+/**
+ * Decode images for the ImageViews of the items off the main thread, used by {@link IdeaAdapter.MyHolder} after
+ * {@link IdeaAdapter#setImageLoader(ImageLoader)}.
+ * <p>
+ * Images are downsampled to the size of the view and kept in a memory cache bounded by bytes. Bitmaps evicted
+ * from the cache, that no view shows, are reused to decode new images, only the ones that the loader decoded
+ * itself, never a bitmap given to {@link #show(ImageView, Bitmap)}. A view only shows the result of the last
+ * request made for it, a request is cancelled when the view asks for another image or its holder is recycled.
+ * Use it on the main thread.
+ */
+public class ImageLoader {
+    private static final String TAG = "ImageLoader";
+
+    private static ImageLoader defaultLoader;
+
+    private final Resources resources;
+    private final DisplayMetrics displayMetrics;
+    private final LruCache<String, Bitmap> cache;
+    private final BitmapPool pool;
+    private Executor executor;
+
+    /** The request of every view, and the bitmap that it shows. */
+    private final WeakHashMap<ImageView, Request> requests = new WeakHashMap<>();
+    private final WeakHashMap<ImageView, Bitmap> shown = new WeakHashMap<>();
+    private final Set<Bitmap> cached = Collections.newSetFromMap(new IdentityHashMap<Bitmap, Boolean>());
+    /** Bitmaps decoded by the loader, the only ones that may be decoded into again. */
+    private final Set<Bitmap> owned = Collections.newSetFromMap(new WeakHashMap<Bitmap, Boolean>());
+
+    /**
+     * @param maxCacheBytes Bytes of the bitmaps kept in the memory cache, a quarter more is kept for reuse.
+     */
+    public ImageLoader(Context context, int maxCacheBytes) {
+        resources = context.getApplicationContext().getResources();
+        displayMetrics = resources.getDisplayMetrics();
+        pool = new BitmapPool(Math.max(1, maxCacheBytes / 4));
+        cache = new LruCache<String, Bitmap>(Math.max(1, maxCacheBytes)) {
+            @Override
+            protected int sizeOf(String key, Bitmap value) {
+                return value.getAllocationByteCount();
+            }
+
+            @Override
+            protected void entryRemoved(boolean evicted, String key, Bitmap oldValue, Bitmap newValue) {
+                if (oldValue != newValue) {
+                    cached.remove(oldValue);
+                    recycleIfUnused(oldValue);
+                }
+            }
+        };
+    }
+
+    /**
+     * Loader with a cache of 1/8 of the max memory of the app, shared by all adapters.
+     */
+    public static synchronized ImageLoader getDefault(Context context) {
+        if (defaultLoader == null) {
+            long maxMemory = Runtime.getRuntime().maxMemory();
+            defaultLoader = new ImageLoader(context, (int) Math.min(Integer.MAX_VALUE, maxMemory / 8));
+        }
+        return defaultLoader;
+    }
+
+    /**
+     * Executor that images are decoded on, null to use the shared background threads of the library.
+     */
+    public ImageLoader setExecutor(Executor executor) {
+        this.executor = executor;
+        return this;
+    }
+
+    public void loadResource(ImageView view, int imgRes) {
+        load(view, new Request(imgRes, null));
+    }
+
+    public void loadFile(ImageView view, String path) {
+        load(view, new Request(0, path));
+    }
+
+    /**
+     * Show the bitmap at once, a request still running for the view will not overwrite it. The bitmap stays the
+     * caller's, it is never reused to decode other images.
+     */
+    public void show(ImageView view, Bitmap bitmap) {
+        cancel(view);
+        setShown(view, bitmap);
+        view.setImageBitmap(bitmap);
+    }
+
+    /**
+     * The result of the request running for the view will not be shown.
+     */
+    public void cancel(ImageView view) {
+        Request request = requests.remove(view);
+        if (request != null) {
+            request.cancelled = true;
+        }
+    }
+
+    /**
+     * The view will not show a bitmap of this loader anymore, it is cleared.
+     */
+    public void clear(ImageView view) {
+        cancel(view);
+        view.setImageDrawable(null);
+        setShown(view, null);
+    }
+
+    /**
+     * The caller sets something else into the view itself, the loader forgets the view without writing it.
+     */
+    void release(ImageView view) {
+        cancel(view);
+        setShown(view, null);
+    }
+
+    /**
+     * Drop the cached bitmaps, for example when memory is low.
+     */
+    public void evictAll() {
+        cache.evictAll();
+        pool.clear();
+    }
+
+    private void load(ImageView view, Request request) {
+        request.width = targetSize(view.getWidth(), view.getLayoutParams() == null ? 0 : view.getLayoutParams().width,
+                displayMetrics.widthPixels);
+        request.height = targetSize(view.getHeight(), view.getLayoutParams() == null ? 0 : view.getLayoutParams().height,
+                displayMetrics.heightPixels);
+        request.key = request.path != null
+                ? request.path + '@' + request.width + 'x' + request.height
+                : "res:" + request.imgRes + '@' + request.width + 'x' + request.height;
+
+        Request running = requests.get(view);
+        if (running != null && !running.cancelled && running.key.equals(request.key)) {
+            return;
+        }
+        cancel(view);
+
+        Bitmap hit = cache.get(request.key);
+        if (hit != null) {
+            setShown(view, hit);
+            view.setImageBitmap(hit);
+            return;
+        }
+
+        //Don't let a recycled view show the image of its last item while decoding.
+        view.setImageDrawable(null);
+        setShown(view, null);
+        requests.put(view, request);
+        request.view = view;
+        (executor == null ? IdeaExecutors.background() : executor).execute(request);
+    }
+
+    private void onDecoded(Request request, Bitmap bitmap) {
+        ImageView view = request.view;
+        if (bitmap == null) {
+            if (view != null && requests.get(view) == request) {
+                requests.remove(view);
+                if (!request.cancelled && request.imgRes != 0) {
+                    //Not a bitmap, like a vector or a shape drawable, let the view load it.
+                    view.setImageResource(request.imgRes);
+                }
+            }
+            return;
+        }
+
+        owned.add(bitmap);
+        cached.add(bitmap);
+        cache.put(request.key, bitmap);
+        if (request.cancelled || view == null || requests.get(view) != request) {
+            return;
+        }
+        requests.remove(view);
+        setShown(view, bitmap);
+        view.setImageBitmap(bitmap);
+    }
+
+    private void setShown(ImageView view, Bitmap bitmap) {
+        Bitmap old = bitmap == null ? shown.remove(view) : shown.put(view, bitmap);
+        if (old != null && old != bitmap) {
+            recycleIfUnused(old);
+        }
+    }
+
+    /**
+     * Give the bitmap to the reuse pool if the loader decoded it, it is not cached and no view shows it anymore.
+     */
+    private void recycleIfUnused(Bitmap bitmap) {
+        if (!bitmap.isMutable() || !owned.contains(bitmap) || cached.contains(bitmap)
+                || shown.containsValue(bitmap)) {
+            return;
+        }
+        pool.put(bitmap);
+    }
+
+    private Bitmap decode(Request request) {
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inJustDecodeBounds = true;
+        decode(request, options);
+        if (options.outWidth <= 0 || options.outHeight <= 0) {
+            return null;
+        }
+
+        options.inJustDecodeBounds = false;
+        options.inSampleSize = sampleSize(options.outWidth, options.outHeight, request.width, request.height);
+        options.inMutable = true;
+        options.inBitmap = pool.take(options.outWidth / options.inSampleSize,
+                options.outHeight / options.inSampleSize, options.inPreferredConfig);
+        try {
+            return decode(request, options);
+        } catch (IllegalArgumentException e) {
+            //The reused bitmap does not fit.
+            options.inBitmap = null;
+            return decode(request, options);
+        }
+    }
+
+    private Bitmap decode(Request request, BitmapFactory.Options options) {
+        return request.path != null
+                ? BitmapFactory.decodeFile(request.path, options)
+                : BitmapFactory.decodeResource(resources, request.imgRes, options);
+    }
+
+    private static int targetSize(int measured, int layoutParam, int screen) {
+        if (measured > 0) {
+            return measured;
+        }
+        if (layoutParam > 0) {
+            return layoutParam;
+        }
+        return layoutParam == ViewGroup.LayoutParams.WRAP_CONTENT ? 0 : screen;
+    }
+
+    /**
+     * The biggest power of 2 that keeps the decoded image not smaller than the target, 0 target means no limit.
+     */
+    private static int sampleSize(int width, int height, int targetWidth, int targetHeight) {
+        int sampleSize = 1;
+        if (targetWidth <= 0 || targetHeight <= 0) {
+            return sampleSize;
+        }
+        while (width / (sampleSize * 2) >= targetWidth && height / (sampleSize * 2) >= targetHeight) {
+            sampleSize *= 2;
+        }
+        return sampleSize;
+    }
+
+    private final class Request implements Runnable {
+        final int imgRes;
+        final String path;
+        int width;
+        int height;
+        String key;
+        ImageView view;
+        volatile boolean cancelled;
+
+        Request(int imgRes, String path) {
+            this.imgRes = imgRes;
+            this.path = path;
+        }
+
+        @Override
+        public void run() {
+            if (cancelled) {
+                IdeaExecutors.main().post(new Runnable() {
+                    @Override
+                    public void run() {
+                        onDecoded(Request.this, null);
+                    }
+                });
+                return;
+            }
+
+            Bitmap bitmap = null;
+            try {
+                bitmap = decode(this);
+            } catch (RuntimeException | OutOfMemoryError e) {
+                Log.e(TAG, "Decode " + key + " fail", e);
+            }
+
+            final Bitmap result = bitmap;
+            IdeaExecutors.main().post(new Runnable() {
+                @Override
+                public void run() {
+                    onDecoded(Request.this, result);
+                }
+            });
+        }
+    }
+
+    /**
+     * Bitmaps that can be decoded into by inBitmap, bounded by bytes. Taken on background threads.
+     */
+    private static final class BitmapPool {
+        private final int maxBytes;
+        private final List<Bitmap> bitmaps = new ArrayList<>();
+        private int bytes;
+
+        BitmapPool(int maxBytes) {
+            this.maxBytes = maxBytes;
+        }
+
+        synchronized void put(Bitmap bitmap) {
+            if (bitmap.isRecycled() || bitmaps.contains(bitmap)) {
+                return;
+            }
+            int size = bitmap.getAllocationByteCount();
+            if (size > maxBytes) {
+                return;
+            }
+            while (bytes + size > maxBytes && !bitmaps.isEmpty()) {
+                bytes -= bitmaps.remove(0).getAllocationByteCount();
+            }
+            bitmaps.add(bitmap);
+            bytes += size;
+        }
+
+        /**
+         * @return  The smallest bitmap that a decode of the size fits in, or null.
+         */
+        synchronized Bitmap take(int width, int height, Bitmap.Config config) {
+            int needed = width * height * bytesPerPixel(config);
+            Bitmap best = null;
+            for (Bitmap bitmap : bitmaps) {
+                int size = bitmap.getAllocationByteCount();
+                if (size >= needed && (best == null || size < best.getAllocationByteCount())) {
+                    best = bitmap;
+                }
+            }
+            if (best != null) {
+                bitmaps.remove(best);
+                bytes -= best.getAllocationByteCount();
+            }
+            return best;
+        }
+
+        synchronized void clear() {
+            bitmaps.clear();
+            bytes = 0;
+        }
+
+        private static int bytesPerPixel(Bitmap.Config config) {
+            if (config == Bitmap.Config.RGB_565 || config == Bitmap.Config.ARGB_4444) {
+                return 2;
+            }
+            return config == Bitmap.Config.ALPHA_8 ? 1 : 4;
+        }
+    }
+}
@@ -0,0 +1,430 @@
+package org.qxtx.idea.recyclerview;
+
+import android.support.v7.util.ListUpdateCallback;
+import android.widget.Filter;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.Executor;
+
+/**
+ * Filter of {@link IdeaAdapter}. An item matches a query if every word of the query starts a word of the filter
+ * key of the item, ignoring case.
+ * <p>
+ * The keys are indexed once per list on a background thread, all their words sorted, so a query only looks up
+ * the range of words starting with it. A query that extends the shown one only checks the items shown. Results
+ * are positions in the list in order, so the change from the shown result is found by merging the two, and only
+ * the removed and inserted ranges are notified.
+ * <p>
+ * Filter runs its requests one by one on its own thread and can not stop the one running, so the query is only
+ * handed to the main thread through it, and the work runs on the library executor, where a newer query makes
+ * the running one stop and drop its result.
+ * @param <T>   A type convert to adapter.
+ */
+final class ItemFilter<T> extends Filter {
+    private static final String[] NO_WORDS = new String[0];
+    /** Cancellation is checked every this many items. */
+    private static final int CHECK_MASK = 1023;
+
+    interface Target<T> {
+        /**
+         * The list shown without a query.
+         */
+        List<T> currentList();
+
+        /**
+         * Show the items. The positions are of the items in the list they were taken from, null for all of
+         * them. They are only given if the list is the same one, otherwise the adapter must compare the lists
+         * itself.
+         */
+        void showFiltered(List<T> items, int[] oldPositions, int[] newPositions, boolean incremental);
+    }
+
+    private final Target<T> target;
+    private final IdeaAdapter.FilterKeyExtractor<T> extractor;
+    private Executor executor;
+
+    /** List being filtered while a query is shown or running, null without a query. */
+    private List<T> source;
+    /** Increased when {@link #source} changes, the index of an older version is built again. */
+    private int sourceVersion;
+    private String query = "";
+    private String shownQuery = "";
+    /** Positions in {@link #shownIndex} that are shown, null while the whole source is shown. */
+    private int[] shown;
+    private Index<T> shownIndex;
+    private volatile Index<T> index;
+
+    /** Increased on every query, a running query stops when it is not the latest anymore. */
+    private volatile int generation;
+
+    ItemFilter(Target<T> target, IdeaAdapter.FilterKeyExtractor<T> extractor) {
+        this.target = target;
+        this.extractor = extractor;
+    }
+
+    void setExecutor(Executor executor) {
+        this.executor = executor;
+    }
+
+    /**
+     * @return  Whether a query is shown or running.
+     */
+    boolean isActive() {
+        return source != null;
+    }
+
+    /**
+     * The list shown without a query changed, its index is out of date.
+     */
+    void onListChanged() {
+        if (source == null) {
+            sourceVersion++;
+        }
+    }
+
+    /**
+     * A new list replaces the one being filtered, it is filtered by the current query.
+     * @return  Whether a query is active, then the list is shown when it is filtered.
+     */
+    boolean setSource(List<T> list) {
+        if (source == null) {
+            sourceVersion++;
+            return false;
+        }
+        source = list == null ? new ArrayList<T>() : list;
+        sourceVersion++;
+        start(query);
+        return true;
+    }
+
+    @Override
+    protected FilterResults performFiltering(CharSequence constraint) {
+        FilterResults results = new FilterResults();
+        results.values = constraint == null ? "" : constraint.toString();
+        return results;
+    }
+
+    @Override
+    protected void publishResults(CharSequence constraint, FilterResults results) {
+        submit((String) results.values);
+    }
+
+    /**
+     * Must be called on the main thread.
+     */
+    void submit(CharSequence rawQuery) {
+        String newQuery = rawQuery == null ? "" : rawQuery.toString().trim().toLowerCase(Locale.ROOT);
+        if (newQuery.equals(query)) {
+            return;
+        }
+        query = newQuery;
+        if (source == null && !newQuery.isEmpty()) {
+            source = target.currentList();
+        }
+        start(newQuery);
+    }
+
+    private void start(final String runQuery) {
+        final int runGeneration = ++generation;
+        if (runQuery.isEmpty()) {
+            showAll();
+            return;
+        }
+
+        final String[] words = splitWords(runQuery);
+        final int version = sourceVersion;
+        Index<T> current = index;
+        final Index<T> reuse = current != null && current.version == version && current.source == source ? current : null;
+        //The list may be changed on the main thread later, the index is built from a copy.
+        final List<T> snapshot = reuse == null ? new ArrayList<>(source) : null;
+        final List<T> runSource = source;
+        final boolean narrow = shown != null && reuse != null && shownIndex == reuse
+                && !shownQuery.isEmpty() && runQuery.startsWith(shownQuery);
+        final int[] narrowFrom = narrow ? shown : null;
+
+        (executor == null ? IdeaExecutors.background() : executor).execute(new Runnable() {
+            @Override
+            public void run() {
+                if (runGeneration != generation) {
+                    return;
+                }
+                Index<T> runIndex = reuse;
+                if (runIndex == null) {
+                    runIndex = Index.build(runSource, snapshot, version, extractor, ItemFilter.this, runGeneration);
+                    if (runIndex == null) {
+                        return;
+                    }
+                    index = runIndex;
+                }
+                final int[] result = runIndex.query(words, narrowFrom, ItemFilter.this, runGeneration);
+                if (result == null) {
+                    return;
+                }
+
+                final Index<T> resultIndex = runIndex;
+                IdeaExecutors.main().post(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (runGeneration != generation) {
+                            return;
+                        }
+                        if (resultIndex.version != sourceVersion || resultIndex.source != source) {
+                            //The list changed while filtering.
+                            start(query);
+                            return;
+                        }
+                        show(runQuery, resultIndex, result);
+                    }
+                });
+            }
+        });
+    }
+
+    private void show(String resultQuery, Index<T> resultIndex, int[] result) {
+        List<T> items = new ArrayList<>(result.length);
+        for (int position : result) {
+            items.add(resultIndex.items.get(position));
+        }
+
+        //Positions can be merged if both results are taken from the same content.
+        boolean incremental = shown == null ? target.currentList() == resultIndex.source : shownIndex == resultIndex;
+        int[] oldPositions = shown;
+        shown = result;
+        shownIndex = resultIndex;
+        shownQuery = resultQuery;
+        target.showFiltered(items, incremental ? oldPositions : null, incremental ? result : null, incremental);
+    }
+
+    private void showAll() {
+        if (source == null) {
+            return;
+        }
+        List<T> all = source;
+        boolean incremental = shown == null
+                ? target.currentList() == all
+                : shownIndex.source == all && shownIndex.version == sourceVersion;
+        int[] oldPositions = shown;
+        source = null;
+        shown = null;
+        shownIndex = null;
+        shownQuery = "";
+        target.showFiltered(all, incremental ? oldPositions : null, null, incremental);
+    }
+
+    private boolean isCancelled(int runGeneration) {
+        return runGeneration != generation;
+    }
+
+    /**
+     * Lower case words of the text, split by white spaces.
+     */
+    static String[] splitWords(CharSequence text) {
+        if (text == null || text.length() == 0) {
+            return NO_WORDS;
+        }
+        String lower = text.toString().toLowerCase(Locale.ROOT);
+        List<String> words = null;
+        int start = -1;
+        for (int i = 0, length = lower.length(); i <= length; i++) {
+            boolean space = i == length || Character.isWhitespace(lower.charAt(i));
+            if (!space && start < 0) {
+                start = i;
+            } else if (space && start >= 0) {
+                if (words == null) {
+                    words = new ArrayList<>(4);
+                }
+                words.add(lower.substring(start, i));
+                start = -1;
+            }
+        }
+        return words == null ? NO_WORDS : words.toArray(new String[words.size()]);
+    }
+
+    /**
+     * Call the removes and inserts that turn the old positions into the new ones, both in order. Null stands for
+     * all positions of a list of the size.
+     */
+    static void dispatchMerge(int[] oldPositions, int oldSize, int[] newPositions, int newSize,
+                              ListUpdateCallback callback) {
+        int oldCount = oldPositions == null ? oldSize : oldPositions.length;
+        int newCount = newPositions == null ? newSize : newPositions.length;
+        int i = 0;
+        int j = 0;
+        int position = 0;
+        while (i < oldCount || j < newCount) {
+            int oldValue = i < oldCount ? (oldPositions == null ? i : oldPositions[i]) : Integer.MAX_VALUE;
+            int newValue = j < newCount ? (newPositions == null ? j : newPositions[j]) : Integer.MAX_VALUE;
+            if (oldValue < newValue) {
+                callback.onRemoved(position, 1);
+                i++;
+            } else if (newValue < oldValue) {
+                callback.onInserted(position, 1);
+                position++;
+                j++;
+            } else {
+                position++;
+                i++;
+                j++;
+            }
+        }
+    }
+
+    /**
+     * Words of the filter keys of a list, sorted.
+     */
+    private static final class Index<T> {
+        /** The list the index was built for, and its version. */
+        final List<T> source;
+        final int version;
+        /** Copy of the list taken when the index was built. */
+        final List<T> items;
+        /** Words of every item. */
+        final String[][] itemWords;
+        /** All words sorted, with the positions of their items. */
+        final String[] words;
+        final int[] positions;
+
+        private Index(List<T> source, int version, List<T> items, String[][] itemWords, String[] words,
+                      int[] positions) {
+            this.source = source;
+            this.version = version;
+            this.items = items;
+            this.itemWords = itemWords;
+            this.words = words;
+            this.positions = positions;
+        }
+
+        /**
+         * @return  The index, or null if it was cancelled.
+         */
+        static <T> Index<T> build(List<T> source, List<T> items, int version, IdeaAdapter.FilterKeyExtractor<T> extractor,
+                                  ItemFilter<T> filter, int runGeneration) {
+            int size = items.size();
+            String[][] itemWords = new String[size][];
+            int total = 0;
+            for (int i = 0; i < size; i++) {
+                if ((i & CHECK_MASK) == 0 && filter.isCancelled(runGeneration)) {
+                    return null;
+                }
+                T item = items.get(i);
+                itemWords[i] = item == null ? NO_WORDS : splitWords(extractor.getFilterKey(item));
+                total += itemWords[i].length;
+            }
+
+            Entry[] entries = new Entry[total];
+            int count = 0;
+            for (int i = 0; i < size; i++) {
+                for (String word : itemWords[i]) {
+                    entries[count++] = new Entry(word, i);
+                }
+            }
+            if (filter.isCancelled(runGeneration)) {
+                return null;
+            }
+            Arrays.sort(entries);
+
+            String[] words = new String[total];
+            int[] positions = new int[total];
+            for (int i = 0; i < total; i++) {
+                words[i] = entries[i].word;
+                positions[i] = entries[i].position;
+            }
+            return new Index<>(source, version, items, itemWords, words, positions);
+        }
+
+        /**
+         * @param narrowFrom    Positions that are known to contain the result in order, or null.
+         * @return  Positions of the items that match all the words in order, or null if it was cancelled.
+         */
+        int[] query(String[] queryWords, int[] narrowFrom, ItemFilter<T> filter, int runGeneration) {
+            //Look up the word that the fewest items start with.
+            int bestStart = 0;
+            int bestEnd = words.length;
+            for (String queryWord : queryWords) {
+                int start = lowerBound(queryWord);
+                int end = lowerBound(queryWord + '\uffff');
+                if (end - start < bestEnd - bestStart) {
+                    bestStart = start;
+                    bestEnd = end;
+                }
+            }
+
+            int[] candidates;
+            int candidateCount;
+            if (narrowFrom != null && narrowFrom.length <= bestEnd - bestStart) {
+                candidates = narrowFrom;
+                candidateCount = narrowFrom.length;
+            } else {
+                candidates = Arrays.copyOfRange(positions, bestStart, bestEnd);
+                Arrays.sort(candidates);
+                candidateCount = 0;
+                for (int i = 0; i < candidates.length; i++) {
+                    if (candidateCount == 0 || candidates[i] != candidates[candidateCount - 1]) {
+                        candidates[candidateCount++] = candidates[i];
+                    }
+                }
+            }
+
+            int[] result = new int[candidateCount];
+            int count = 0;
+            for (int i = 0; i < candidateCount; i++) {
+                if ((i & CHECK_MASK) == 0 && filter.isCancelled(runGeneration)) {
+                    return null;
+                }
+                if (matches(itemWords[candidates[i]], queryWords)) {
+                    result[count++] = candidates[i];
+                }
+            }
+            return count == result.length ? result : Arrays.copyOf(result, count);
+        }
+
+        private int lowerBound(String key) {
+            int low = 0;
+            int high = words.length;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (words[mid].compareTo(key) < 0) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            return low;
+        }
+
+        private static boolean matches(String[] itemWords, String[] queryWords) {
+            for (String queryWord : queryWords) {
+                boolean found = false;
+                for (String itemWord : itemWords) {
+                    if (itemWord.startsWith(queryWord)) {
+                        found = true;
+                        break;
+                    }
+                }
+                if (!found) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    private static final class Entry implements Comparable<Entry> {
+        final String word;
+        final int position;
+
+        Entry(String word, int position) {
+            this.word = word;
+            this.position = position;
+        }
+
+        @Override
+        public int compareTo(Entry other) {
+            int result = word.compareTo(other.word);
+            return result != 0 ? result : position - other.position;
+        }
+    }
+}
@@ -0,0 +1,217 @@
+package org.qxtx.idea.recyclerview;
+
+import android.support.v7.widget.RecyclerView;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Index from the key of {@link IdeaAdapter.ItemKeyProvider} to the position in the data list.
+ * <p>
+ * The notifications of the adapter shift the indexed positions in place, by one pass over the map that asks no
+ * key, so a look up right after an insert or a remove is still O(1). Positions whose items are not known, the
+ * inserted and changed ones and all of them after a full change, are kept as ranges and indexed lazily while
+ * looking for a key that is not found. Entries left by replaced items are found out by checking the key of the
+ * item at the indexed position, so they do no harm. Many notifications without a look up between them, like
+ * the result of a diff, drop the index instead, indexing the list once again is cheaper than a pass for each.
+ * @param <T>   A type convert to adapter.
+ */
+final class KeyIndex<T> {
+    private static final int MISSING = -1;
+    /** End of a range that goes to the end of the list, whatever its size is. */
+    private static final int END = Integer.MAX_VALUE;
+    /** Passes over the map allowed between two look ups. */
+    private static final int MAX_SHIFTS = 8;
+
+    private final IdeaAdapter.ItemKeyProvider<T> provider;
+    private final LongIntMap positions = new LongIntMap();
+    /** Sorted ranges [start, end) of the positions not indexed yet, as pairs. */
+    private int[] unindexed = {0, END};
+    private int rangeCount = 1;
+    private int shifts;
+
+    KeyIndex(IdeaAdapter.ItemKeyProvider<T> provider) {
+        this.provider = provider;
+    }
+
+    IdeaAdapter.ItemKeyProvider<T> getProvider() {
+        return provider;
+    }
+
+    long keyOf(T item) {
+        return provider.getKey(item);
+    }
+
+    void invalidateAll() {
+        positions.clear();
+        unindexed[0] = 0;
+        unindexed[1] = END;
+        rangeCount = 1;
+        shifts = 0;
+    }
+
+    void onInserted(int position, int count) {
+        if (count <= 0 || !beginShift()) {
+            return;
+        }
+        positions.shiftValues(position, count);
+        for (int i = 0; i < rangeCount; i++) {
+            if (unindexed[2 * i] >= position) {
+                unindexed[2 * i] += count;
+            }
+            if (unindexed[2 * i + 1] > position && unindexed[2 * i + 1] != END) {
+                unindexed[2 * i + 1] += count;
+            }
+        }
+        addRange(position, position + count);
+    }
+
+    void onRemoved(int position, int count) {
+        if (count <= 0 || !beginShift()) {
+            return;
+        }
+        int end = position + count;
+        positions.removeValues(position, end);
+        positions.shiftValues(end, -count);
+        for (int i = 0; i < 2 * rangeCount; i++) {
+            int p = unindexed[i];
+            if (p != END) {
+                unindexed[i] = p < position ? p : (p < end ? position : p - count);
+            }
+        }
+        normalize();
+    }
+
+    void onMoved(int fromPosition, int toPosition) {
+        if (fromPosition == toPosition || !beginShift()) {
+            return;
+        }
+        positions.moveValue(fromPosition, toPosition);
+        //The moved item is indexed again if it was not, whatever it was before.
+        for (int i = 0; i < 2 * rangeCount; i++) {
+            int p = unindexed[i];
+            if (p == END) {
+                continue;
+            }
+            if (p > fromPosition) {
+                p--;
+            }
+            if (p >= toPosition && (i % 2 == 0 || p > toPosition)) {
+                p++;
+            }
+            unindexed[i] = p;
+        }
+        addRange(toPosition, toPosition + 1);
+    }
+
+    /**
+     * Items in the range were replaced, maybe by items of other keys. The other positions are still right.
+     */
+    void onChanged(int position, int count) {
+        if (count > 0) {
+            addRange(position, position + count);
+        }
+    }
+
+    /**
+     * @return Position of the item with the key, or {@link RecyclerView#NO_POSITION}.
+     */
+    int find(List<T> data, long key) {
+        if (data == null) {
+            return RecyclerView.NO_POSITION;
+        }
+        shifts = 0;
+
+        int size = data.size();
+        int position = positions.get(key, MISSING);
+        if (position != MISSING) {
+            T item = position < size ? data.get(position) : null;
+            if (item != null && keyOf(item) == key) {
+                return position;
+            }
+            //Left by an item that was replaced.
+            positions.remove(key);
+        }
+
+        //Too many entries of replaced items, index again from the start.
+        if (positions.size() > 2 * size + 16) {
+            invalidateAll();
+        }
+
+        //Items not loaded yet of a PagedList are null, they have no key.
+        while (rangeCount > 0 && unindexed[0] < size) {
+            int i = unindexed[0]++;
+            if (unindexed[0] >= unindexed[1]) {
+                removeFirstRange();
+            }
+            T item = data.get(i);
+            if (item == null) {
+                continue;
+            }
+            long k = keyOf(item);
+            positions.put(k, i);
+            if (k == key) {
+                return i;
+            }
+        }
+        return RecyclerView.NO_POSITION;
+    }
+
+    /**
+     * @return  Whether the positions should be shifted, false when the index was dropped instead.
+     */
+    private boolean beginShift() {
+        if (positions.size() == 0) {
+            invalidateAll();
+            return false;
+        }
+        if (++shifts > MAX_SHIFTS) {
+            invalidateAll();
+            return false;
+        }
+        return true;
+    }
+
+    private void addRange(int start, int end) {
+        if (2 * rangeCount + 2 > unindexed.length) {
+            unindexed = Arrays.copyOf(unindexed, unindexed.length * 2);
+        }
+        int i = rangeCount;
+        while (i > 0 && unindexed[2 * i - 2] > start) {
+            unindexed[2 * i] = unindexed[2 * i - 2];
+            unindexed[2 * i + 1] = unindexed[2 * i - 1];
+            i--;
+        }
+        unindexed[2 * i] = start;
+        unindexed[2 * i + 1] = end;
+        rangeCount++;
+        normalize();
+    }
+
+    /**
+     * Drop the empty ranges and join the ones that touch.
+     */
+    private void normalize() {
+        int count = 0;
+        for (int i = 0; i < rangeCount; i++) {
+            int start = unindexed[2 * i];
+            int end = unindexed[2 * i + 1];
+            if (start >= end) {
+                continue;
+            }
+            if (count > 0 && start <= unindexed[2 * count - 1]) {
+                unindexed[2 * count - 1] = Math.max(unindexed[2 * count - 1], end);
+            } else {
+                unindexed[2 * count] = start;
+                unindexed[2 * count + 1] = end;
+                count++;
+            }
+        }
+        rangeCount = count;
+    }
+
+    private void removeFirstRange() {
+        System.arraycopy(unindexed, 2, unindexed, 0, 2 * rangeCount - 2);
+        rangeCount--;
+    }
+}
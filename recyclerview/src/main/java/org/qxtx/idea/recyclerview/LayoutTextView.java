@@ -0,0 +1,184 @@
+package org.qxtx.idea.recyclerview;
+
+import android.content.Context;
+import android.content.res.TypedArray;
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.text.Layout;
+import android.text.StaticLayout;
+import android.text.TextPaint;
+import android.text.TextUtils;
+import android.util.AttributeSet;
+import android.view.View;
+
+/**
+ * A light view that shows a text by a {@link Layout}, which can be computed ahead of time off the main thread by
+ * {@link TextPrecomputer}. {@link IdeaAdapter.MyHolder#setText(int, CharSequence)} gives it the precomputed
+ * layout of the text if there is one, then showing the text does not measure it on the main thread.
+ * <p>
+ * It reads android:textSize, android:textColor, android:lineSpacingExtra and android:lineSpacingMultiplier
+ * from the layout. Without a precomputed layout it lays the text out itself like a TextView does. Give it an exact
+ * or match_parent width, a wrap_content width measures the text on the main thread anyway.
+ */
+public class LayoutTextView extends View {
+    private static final int[] ATTRS = {
+            android.R.attr.textSize,
+            android.R.attr.textColor,
+            android.R.attr.lineSpacingExtra,
+            android.R.attr.lineSpacingMultiplier
+    };
+
+    private final TextPaint paint = new TextPaint(Paint.ANTI_ALIAS_FLAG);
+    private float spacingAdd;
+    private float spacingMult = 1f;
+    private Layout.Alignment alignment = Layout.Alignment.ALIGN_NORMAL;
+
+    private CharSequence text = "";
+    private Layout layout;
+
+    public LayoutTextView(Context context) {
+        this(context, null);
+    }
+
+    public LayoutTextView(Context context, AttributeSet attrs) {
+        super(context, attrs);
+
+        paint.density = getResources().getDisplayMetrics().density;
+        TypedArray a = context.obtainStyledAttributes(attrs, ATTRS);
+        try {
+            paint.setTextSize(a.getDimension(0, 14 * getResources().getDisplayMetrics().scaledDensity));
+            paint.setColor(a.getColor(1, 0xff000000));
+            spacingAdd = a.getDimension(2, 0f);
+            spacingMult = a.getFloat(3, 1f);
+        } finally {
+            a.recycle();
+        }
+    }
+
+    public CharSequence getText() {
+        return text;
+    }
+
+    public void setText(CharSequence text) {
+        if (text == null) {
+            text = "";
+        }
+        if (TextUtils.equals(this.text, text)) {
+            return;
+        }
+        this.text = text;
+        layout = null;
+        requestLayout();
+        invalidate();
+    }
+
+    /**
+     * Show the text of the layout by the layout itself. It is only used if its width fits this view,
+     * otherwise the text is laid out again.
+     */
+    public void setTextLayout(Layout layout) {
+        if (layout == this.layout) {
+            return;
+        }
+        int oldHeight = this.layout == null ? -1 : this.layout.getHeight();
+        this.text = layout.getText();
+        this.layout = layout;
+        if (layout.getHeight() != oldHeight || layout.getWidth() != getContentWidth()) {
+            requestLayout();
+        }
+        invalidate();
+    }
+
+    /**
+     * Paint of the text, call {@link #requestLayout()} after changing it.
+     */
+    public TextPaint getPaint() {
+        return paint;
+    }
+
+    public LayoutTextView setTextSize(float px) {
+        paint.setTextSize(px);
+        layout = null;
+        requestLayout();
+        return this;
+    }
+
+    public LayoutTextView setTextColor(int color) {
+        paint.setColor(color);
+        invalidate();
+        return this;
+    }
+
+    public LayoutTextView setLineSpacing(float add, float mult) {
+        spacingAdd = add;
+        spacingMult = mult;
+        layout = null;
+        requestLayout();
+        return this;
+    }
+
+    public LayoutTextView setAlignment(Layout.Alignment alignment) {
+        this.alignment = alignment;
+        layout = null;
+        requestLayout();
+        return this;
+    }
+
+    public float getLineSpacingExtra() {
+        return spacingAdd;
+    }
+
+    public float getLineSpacingMultiplier() {
+        return spacingMult;
+    }
+
+    public Layout.Alignment getAlignment() {
+        return alignment;
+    }
+
+    /**
+     * Width that the text is laid out in, 0 before the view is laid out.
+     */
+    int getContentWidth() {
+        return Math.max(0, getWidth() - getPaddingLeft() - getPaddingRight());
+    }
+
+    @Override
+    protected void onMeasure(int widthMeasureSpec, int heightMeasureSpec) {
+        int widthMode = MeasureSpec.getMode(widthMeasureSpec);
+        int widthSize = MeasureSpec.getSize(widthMeasureSpec);
+        int padding = getPaddingLeft() + getPaddingRight();
+
+        int width;
+        if (widthMode == MeasureSpec.EXACTLY) {
+            width = widthSize;
+        } else {
+            int desired = (int) Math.ceil(Layout.getDesiredWidth(text, paint)) + padding;
+            width = widthMode == MeasureSpec.AT_MOST ? Math.min(desired, widthSize) : desired;
+        }
+
+        int contentWidth = Math.max(0, width - padding);
+        if (layout == null || layout.getWidth() != contentWidth) {
+            layout = new StaticLayout(text, paint, contentWidth, alignment, spacingMult, spacingAdd, true);
+        }
+
+        int height = layout.getHeight() + getPaddingTop() + getPaddingBottom();
+        setMeasuredDimension(width, resolveSize(height, heightMeasureSpec));
+    }
+
+    @Override
+    protected void onDraw(Canvas canvas) {
+        if (layout == null) {
+            return;
+        }
+        //A precomputed layout draws with its own paint.
+        TextPaint layoutPaint = layout.getPaint();
+        if (layoutPaint != paint && layoutPaint.getColor() != paint.getColor()) {
+            layoutPaint.setColor(paint.getColor());
+        }
+        canvas.save();
+        canvas.translate(getPaddingLeft(), getPaddingTop());
+        layout.draw(canvas);
+        canvas.restore();
+    }
+}
@@ -0,0 +1,142 @@
+package org.qxtx.idea.recyclerview;
+
+import android.support.v7.util.DiffUtil;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+/**
+ * Compute the difference between the list shown by {@link IdeaAdapter} and a new list on a background
+ * executor, then hand the result back to the adapter on the main thread. Only the result of the latest
+ * submitted list is applied, results of older lists are dropped.
+ * @param <T>   A type convert to adapter.
+ */
+final class ListDiffer<T> {
+    private final IdeaAdapter<T> adapter;
+    private final IdeaAdapter.DiffCallback<T> callback;
+    private final boolean detectMoves;
+    private Executor executor;
+
+    /** Increased on every submit, a result is only applied while its generation is still the latest. */
+    private volatile int generation;
+    private List<T> pendingList;
+
+    ListDiffer(IdeaAdapter<T> adapter, IdeaAdapter.DiffCallback<T> callback, boolean detectMoves) {
+        this.adapter = adapter;
+        this.callback = callback;
+        this.detectMoves = detectMoves;
+    }
+
+    void setExecutor(Executor executor) {
+        this.executor = executor;
+    }
+
+    Executor getExecutor() {
+        return executor;
+    }
+
+    IdeaAdapter.DiffCallback<T> getCallback() {
+        return callback;
+    }
+
+    /**
+     * Forget the list that is being diffed now, its result will not be applied.
+     */
+    void cancel() {
+        generation++;
+        pendingList = null;
+    }
+
+    /**
+     * The list submitted last if it is not shown yet, or null.
+     */
+    List<T> getPendingList() {
+        return pendingList;
+    }
+
+    /**
+     * Must be called on the main thread.
+     * @param oldData   The list shown now. It is copied, so it can be changed while diffing.
+     * @param newData   The list to show. It must not be changed after submitted.
+     */
+    void submit(List<T> oldData, final List<T> newData) {
+        final int runGeneration = ++generation;
+        pendingList = newData;
+        final List<T> oldSnapshot = new ArrayList<>(oldData);
+        Executor runExecutor = executor == null ? IdeaExecutors.background() : executor;
+
+        runExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                if (runGeneration != generation) {
+                    return;
+                }
+
+                final DiffUtil.DiffResult result = DiffUtil.calculateDiff(
+                        new SnapshotCallback<>(callback, oldSnapshot, newData), detectMoves);
+                IdeaExecutors.main().post(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (runGeneration == generation) {
+                            pendingList = null;
+                            adapter.applyDiff(newData, result);
+                        }
+                    }
+                });
+            }
+        });
+    }
+
+    private static class SnapshotCallback<T> extends DiffUtil.Callback {
+        private final IdeaAdapter.DiffCallback<T> callback;
+        private final List<T> oldData;
+        private final List<T> newData;
+
+        SnapshotCallback(IdeaAdapter.DiffCallback<T> callback, List<T> oldData, List<T> newData) {
+            this.callback = callback;
+            this.oldData = oldData;
+            this.newData = newData;
+        }
+
+        @Override
+        public int getOldListSize() {
+            return oldData.size();
+        }
+
+        @Override
+        public int getNewListSize() {
+            return newData.size();
+        }
+
+        @Override
+        public boolean areItemsTheSame(int oldPos, int newPos) {
+            T oldItem = oldData.get(oldPos);
+            T newItem = newData.get(newPos);
+            if (oldItem == null || newItem == null) {
+                return oldItem == newItem;
+            }
+            return callback.areItemsTheSame(oldItem, newItem);
+        }
+
+        @Override
+        public boolean areContentsTheSame(int oldPos, int newPos) {
+            T oldItem = oldData.get(oldPos);
+            T newItem = newData.get(newPos);
+            if (oldItem == null || newItem == null) {
+                return oldItem == newItem;
+            }
+            return callback.areContentsTheSame(oldItem, newItem);
+        }
+
+        @Override
+        public Object getChangePayload(int oldPos, int newPos) {
+            T oldItem = oldData.get(oldPos);
+            T newItem = newData.get(newPos);
+            if (oldItem == null || newItem == null) {
+                return null;
+            }
+            return callback.getChangePayload(oldItem, newItem);
+        }
+    }
+}
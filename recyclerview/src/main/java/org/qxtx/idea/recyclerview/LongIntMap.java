@@ -0,0 +1,192 @@
+package org.qxtx.idea.recyclerview;
+
+import java.util.Arrays;
+
+/**
+ * Hash map from long to int without boxing, open addressing with linear probing. A removed entry leaves no
+ * tombstone, the entries after it in the probe run are shifted back into the hole. The values can be shifted
+ * all together in one pass, for maps whose values are positions in a list.
+ */
+final class LongIntMap {
+    private static final int MIN_CAPACITY = 16;
+
+    private long[] keys;
+    private int[] values;
+    private boolean[] used;
+    private int size;
+    private int mask;
+
+    LongIntMap() {
+        this(MIN_CAPACITY);
+    }
+
+    LongIntMap(int expectedSize) {
+        allocate(capacityFor(expectedSize));
+    }
+
+    int size() {
+        return size;
+    }
+
+    /**
+     * @return The value of the key, or missing when the key is not in the map.
+     */
+    int get(long key, int missing) {
+        int i = indexOf(key);
+        while (used[i]) {
+            if (keys[i] == key) {
+                return values[i];
+            }
+            i = (i + 1) & mask;
+        }
+        return missing;
+    }
+
+    void put(long key, int value) {
+        int i = indexOf(key);
+        while (used[i]) {
+            if (keys[i] == key) {
+                values[i] = value;
+                return;
+            }
+            i = (i + 1) & mask;
+        }
+
+        used[i] = true;
+        keys[i] = key;
+        values[i] = value;
+        if (++size > (mask + 1) >> 1) {
+            rehash((mask + 1) << 1);
+        }
+    }
+
+    void remove(long key) {
+        int i = indexOf(key);
+        while (used[i]) {
+            if (keys[i] == key) {
+                removeAt(i);
+                return;
+            }
+            i = (i + 1) & mask;
+        }
+    }
+
+    /**
+     * Remove the entries whose values are in [start, end).
+     */
+    void removeValues(int start, int end) {
+        if (size == 0 || start >= end) {
+            return;
+        }
+        //Removing shifts entries back into visited slots, so find them all first.
+        long[] removed = new long[8];
+        int count = 0;
+        for (int i = 0; i < used.length; i++) {
+            if (used[i] && values[i] >= start && values[i] < end) {
+                if (count == removed.length) {
+                    removed = Arrays.copyOf(removed, count * 2);
+                }
+                removed[count++] = keys[i];
+            }
+        }
+        for (int i = 0; i < count; i++) {
+            remove(removed[i]);
+        }
+    }
+
+    /**
+     * Add delta to the values not smaller than from.
+     */
+    void shiftValues(int from, int delta) {
+        if (size == 0 || delta == 0) {
+            return;
+        }
+        for (int i = 0; i < used.length; i++) {
+            if (used[i] && values[i] >= from) {
+                values[i] += delta;
+            }
+        }
+    }
+
+    /**
+     * Values are positions in a list and the item at from moved to to, the values between them follow.
+     */
+    void moveValue(int from, int to) {
+        if (size == 0 || from == to) {
+            return;
+        }
+        for (int i = 0; i < used.length; i++) {
+            if (!used[i]) {
+                continue;
+            }
+            int value = values[i];
+            if (value == from) {
+                values[i] = to;
+            } else if (from < to && value > from && value <= to) {
+                values[i] = value - 1;
+            } else if (from > to && value >= to && value < from) {
+                values[i] = value + 1;
+            }
+        }
+    }
+
+    void clear() {
+        if (size > 0) {
+            Arrays.fill(used, false);
+            size = 0;
+        }
+    }
+
+    private void removeAt(int hole) {
+        int i = hole;
+        while (true) {
+            i = (i + 1) & mask;
+            if (!used[i]) {
+                break;
+            }
+            //The entry may fill the hole only if the hole is on its probe run, from its home slot to i.
+            int home = indexOf(keys[i]);
+            if (((i - home) & mask) >= ((i - hole) & mask)) {
+                keys[hole] = keys[i];
+                values[hole] = values[i];
+                hole = i;
+            }
+        }
+        used[hole] = false;
+        size--;
+    }
+
+    private int indexOf(long key) {
+        int h = (int) (key ^ (key >>> 32)) * 0x9E3779B9;
+        return (h ^ (h >>> 16)) & mask;
+    }
+
+    private void rehash(int capacity) {
+        long[] oldKeys = keys;
+        int[] oldValues = values;
+        boolean[] oldUsed = used;
+
+        allocate(capacity);
+        for (int i = 0; i < oldUsed.length; i++) {
+            if (oldUsed[i]) {
+                put(oldKeys[i], oldValues[i]);
+            }
+        }
+    }
+
+    private void allocate(int capacity) {
+        keys = new long[capacity];
+        values = new int[capacity];
+        used = new boolean[capacity];
+        mask = capacity - 1;
+        size = 0;
+    }
+
+    private static int capacityFor(int expectedSize) {
+        int capacity = MIN_CAPACITY;
+        while (capacity < expectedSize * 2 && capacity < (1 << 30)) {
+            capacity <<= 1;
+        }
+        return capacity;
+    }
+}
@@ -0,0 +1,292 @@
+package org.qxtx.idea.recyclerview;
+
+import android.util.Log;
+import android.util.SparseArray;
+import android.util.SparseBooleanArray;
+import android.util.SparseIntArray;
+
+import java.util.AbstractList;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+/**
+ * List that loads its items page by page through a {@link PageLoader} on a background executor, set it to
+ * {@link IdeaAdapter#setListData(List)}. Only a bounded number of pages are kept, so a huge catalogue runs in
+ * bounded memory.
+ * <p>
+ * An item that is not loaded yet is null, {@link IdeaAdapter#onBind} should bind a placeholder for it.
+ * Binding an item, and scrolling, load the pages within the prefetch distance of it. When there are more pages
+ * than the max, the pages far from the position asked for last are evicted first, the least recently used of
+ * them first, and they are loaded again when they are needed.
+ * <p>
+ * With placeholders the size is the total count from the start, otherwise the list grows page by page as the
+ * last page is approached, until the loader returns less than a page. It can not be changed by the range edits
+ * of the adapter. Use it on the main thread.
+ * @param <T>   A type convert to adapter.
+ */
+public class PagedList<T> extends AbstractList<T> {
+    private static final String TAG = "PagedList";
+
+    public static final int DEFAULT_PREFETCH_DISTANCE = 20;
+    public static final int DEFAULT_MAX_PAGES = 10;
+
+    /**
+     * Loads a page of items, called on a background thread.
+     */
+    public interface PageLoader<T> {
+        /**
+         * @return  Items of the page, less than pageSize only if it is the last page. null is taken as
+         *          a failed load, the page is asked for again the next time it is needed.
+         */
+        List<T> loadPage(int page, int pageSize);
+    }
+
+    /**
+     * Told on the main thread when items appeared or were loaded into placeholders.
+     */
+    interface Callback {
+        void onInserted(int position, int count);
+
+        void onChanged(int position, int count);
+    }
+
+    private final PageLoader<T> loader;
+    private final int pageSize;
+    private int prefetchDistance = DEFAULT_PREFETCH_DISTANCE;
+    private int maxPages = DEFAULT_MAX_PAGES;
+    private Executor executor;
+
+    /** Total count with placeholders, -1 without. */
+    private int totalCount = -1;
+    /** Size without placeholders, the items of all pages appended so far. */
+    private int appendedCount;
+    private boolean endReached;
+
+    private final SparseArray<List<T>> pages = new SparseArray<>();
+    private final SparseIntArray lastUsed = new SparseIntArray();
+    private final SparseBooleanArray loading = new SparseBooleanArray();
+    private int useTick;
+    private int lastPosition;
+    /** Increased by {@link #invalidate()}, so pages loaded before are dropped. */
+    private int generation;
+    private Callback callback;
+
+    public PagedList(PageLoader<T> loader, int pageSize) {
+        if (pageSize <= 0) {
+            throw new IllegalArgumentException("pageSize must be positive");
+        }
+        this.loader = loader;
+        this.pageSize = pageSize;
+    }
+
+    /**
+     * Show placeholders for all the items from the start, the loader must have exactly totalCount items.
+     */
+    public PagedList<T> setPlaceholders(int totalCount) {
+        this.totalCount = Math.max(0, totalCount);
+        return this;
+    }
+
+    /**
+     * Load the pages within this many items before and after the position that was bound or scrolled to.
+     */
+    public PagedList<T> setPrefetchDistance(int prefetchDistance) {
+        this.prefetchDistance = Math.max(0, prefetchDistance);
+        return this;
+    }
+
+    /**
+     * Pages kept in memory at most, at least the pages within the prefetch distance.
+     */
+    public PagedList<T> setMaxPages(int maxPages) {
+        this.maxPages = Math.max(1, maxPages);
+        return this;
+    }
+
+    /**
+     * Executor that the loader runs on, null to use the shared background threads of the library.
+     */
+    public PagedList<T> setExecutor(Executor executor) {
+        this.executor = executor;
+        return this;
+    }
+
+    public int getPageSize() {
+        return pageSize;
+    }
+
+    /**
+     * @return  Whether the last page was loaded, always true with placeholders because the size is known.
+     */
+    public boolean isEndReached() {
+        return totalCount >= 0 || endReached;
+    }
+
+    /**
+     * @return  Whether the item at the position is loaded, an item that is not loaded is null.
+     */
+    public boolean isLoaded(int position) {
+        return pages.get(position / pageSize) != null;
+    }
+
+    @Override
+    public int size() {
+        return totalCount >= 0 ? totalCount : appendedCount;
+    }
+
+    /**
+     * @return  The item, or null if its page is not loaded. It does not load the page, see {@link #loadAround(int)}.
+     */
+    @Override
+    public T get(int position) {
+        if (position < 0 || position >= size()) {
+            throw new IndexOutOfBoundsException("position " + position + ", size " + size());
+        }
+
+        int page = position / pageSize;
+        List<T> items = pages.get(page);
+        if (items == null) {
+            return null;
+        }
+        int index = position - page * pageSize;
+        return index < items.size() ? items.get(index) : null;
+    }
+
+    /**
+     * Make sure the pages within the prefetch distance of the position are loaded or being loaded.
+     */
+    public void loadAround(int position) {
+        lastPosition = position;
+        int first = Math.max(0, position - prefetchDistance) / pageSize;
+        int last = (position + prefetchDistance) / pageSize;
+
+        int lastPage = lastPageToLoad();
+        for (int page = first; page <= last && page <= lastPage; page++) {
+            if (pages.get(page) != null) {
+                lastUsed.put(page, ++useTick);
+            } else {
+                load(page);
+            }
+        }
+    }
+
+    /**
+     * Drop all pages, the visible ones are loaded again.
+     */
+    public void invalidate() {
+        generation++;
+        pages.clear();
+        lastUsed.clear();
+        loading.clear();
+        loadAround(lastPosition);
+    }
+
+    void setCallback(Callback callback) {
+        this.callback = callback;
+    }
+
+    private int lastPageToLoad() {
+        if (totalCount >= 0) {
+            return totalCount == 0 ? -1 : (totalCount - 1) / pageSize;
+        }
+        //Without placeholders only the next page after the appended ones can be loaded.
+        int appendedPages = (appendedCount + pageSize - 1) / pageSize;
+        return endReached ? appendedPages - 1 : appendedPages;
+    }
+
+    private void load(final int page) {
+        if (loading.get(page)) {
+            return;
+        }
+        loading.put(page, true);
+
+        final int runGeneration = generation;
+        Executor runExecutor = executor == null ? IdeaExecutors.background() : executor;
+        runExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                List<T> result = null;
+                try {
+                    result = loader.loadPage(page, pageSize);
+                } catch (RuntimeException e) {
+                    Log.e(TAG, "Load page " + page + " fail", e);
+                }
+
+                final List<T> items = result;
+                IdeaExecutors.main().post(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (runGeneration == generation) {
+                            loading.delete(page);
+                            onPageLoaded(page, items);
+                        }
+                    }
+                });
+            }
+        });
+    }
+
+    private void onPageLoaded(int page, List<T> items) {
+        if (items == null) {
+            return;
+        }
+
+        pages.put(page, items);
+        lastUsed.put(page, ++useTick);
+        int start = page * pageSize;
+
+        if (totalCount >= 0) {
+            int count = Math.min(pageSize, totalCount - start);
+            if (callback != null && count > 0) {
+                callback.onChanged(start, count);
+            }
+        } else if (start >= appendedCount) {
+            //A new page at the end.
+            appendedCount = start + items.size();
+            endReached = items.size() < pageSize;
+            if (callback != null && !items.isEmpty()) {
+                callback.onInserted(start, items.size());
+            }
+        } else if (callback != null) {
+            //An evicted page came back.
+            callback.onChanged(start, Math.min(items.size(), appendedCount - start));
+        }
+
+        evict();
+    }
+
+    private void evict() {
+        int keepFirst = Math.max(0, lastPosition - prefetchDistance) / pageSize;
+        int keepLast = (lastPosition + prefetchDistance) / pageSize;
+
+        while (pages.size() > maxPages) {
+            int victim = -1;
+            int victimUsed = Integer.MAX_VALUE;
+            int farthest = -1;
+            int farthestDistance = -1;
+
+            for (int i = 0; i < pages.size(); i++) {
+                int page = pages.keyAt(i);
+                if (page < keepFirst || page > keepLast) {
+                    int used = lastUsed.get(page);
+                    if (used < victimUsed) {
+                        victimUsed = used;
+                        victim = page;
+                    }
+                }
+                int distance = page < keepFirst ? keepFirst - page : page - keepLast;
+                if (distance > farthestDistance) {
+                    farthestDistance = distance;
+                    farthest = page;
+                }
+            }
+
+            if (victim < 0) {
+                //Everything is near the position, max pages is smaller than the prefetch window.
+                victim = farthest;
+            }
+            pages.remove(victim);
+            lastUsed.delete(victim);
+        }
+    }
+}
@@ -0,0 +1,161 @@
+package org.qxtx.idea.recyclerview;
+
+import android.support.v7.widget.LinearLayoutManager;
+import android.support.v7.widget.RecyclerView;
+import android.util.SparseIntArray;
+
+/**
+ * RecycledViewPool shared by the child RecyclerViews nested in the rows of an {@link IdeaAdapter}, get it by
+ * {@link IdeaAdapter#getSharedPool()}. Holders of a viewType are reused by any child {@link IdeaAdapter}.
+ * <p>
+ * The size of every viewType adapts to the demand: it starts at the initial size, grows by one when a child asked
+ * for a holder that the pool did not have, up to the max size of the viewType, and shrinks by one when a row is
+ * detached while there was no miss of the viewType since the last detach. Holders beyond the size are evicted.
+ */
+public class SharedViewPool extends RecyclerView.RecycledViewPool {
+    public static final int DEFAULT_INITIAL_SIZE = 5;
+    public static final int DEFAULT_MAX_SIZE = 30;
+
+    private final int initialSize;
+    private int defaultMaxSize = DEFAULT_MAX_SIZE;
+
+    private final SparseIntArray maxSizes = new SparseIntArray();
+    private final SparseIntArray sizes = new SparseIntArray();
+    private final SparseIntArray missesSinceTrim = new SparseIntArray();
+    private int misses;
+    private int evictions;
+
+    public SharedViewPool() {
+        this(DEFAULT_INITIAL_SIZE);
+    }
+
+    public SharedViewPool(int initialSize) {
+        this.initialSize = Math.max(1, initialSize);
+    }
+
+    /**
+     * Upper limit of the size of the viewType, the pool never keeps more holders of it.
+     */
+    public SharedViewPool setMaxSize(int viewType, int maxSize) {
+        maxSizes.put(viewType, Math.max(1, maxSize));
+        if (sizeOf(viewType) > maxSize) {
+            resize(viewType, maxSize);
+        }
+        return this;
+    }
+
+    /**
+     * Upper limit of the viewTypes that have no max size of their own.
+     */
+    public SharedViewPool setDefaultMaxSize(int maxSize) {
+        defaultMaxSize = Math.max(1, maxSize);
+        return this;
+    }
+
+    /**
+     * Let the child RecyclerView use this pool. Its LinearLayoutManager, if it has one, gives its holders back
+     * to the pool when the row is detached, so other rows can reuse them.
+     */
+    public void attach(RecyclerView child) {
+        if (child.getRecycledViewPool() != this) {
+            child.setRecycledViewPool(this);
+        }
+        RecyclerView.LayoutManager layoutManager = child.getLayoutManager();
+        if (layoutManager instanceof LinearLayoutManager) {
+            ((LinearLayoutManager) layoutManager).setRecycleChildrenOnDetach(true);
+        }
+    }
+
+    /**
+     * The size that the viewType adapted to now.
+     */
+    public int sizeOf(int viewType) {
+        return sizes.get(viewType, initialSize);
+    }
+
+    public int getMissCount() {
+        return misses;
+    }
+
+    /**
+     * Holders dropped because the pool of their viewType was full.
+     */
+    public int getEvictionCount() {
+        return evictions;
+    }
+
+    @Override
+    public void setMaxRecycledViews(int viewType, int max) {
+        sizes.put(viewType, max);
+        super.setMaxRecycledViews(viewType, max);
+    }
+
+    @Override
+    public RecyclerView.ViewHolder getRecycledView(int viewType) {
+        RecyclerView.ViewHolder holder = super.getRecycledView(viewType);
+        if (holder == null) {
+            misses++;
+            missesSinceTrim.put(viewType, missesSinceTrim.get(viewType) + 1);
+            int size = sizeOf(viewType);
+            if (size < maxSizeOf(viewType)) {
+                resize(viewType, size + 1);
+            }
+        }
+        return holder;
+    }
+
+    @Override
+    public void putRecycledView(RecyclerView.ViewHolder holder) {
+        int viewType = holder.getItemViewType();
+        if (sizes.indexOfKey(viewType) < 0) {
+            resize(viewType, initialSize);
+        }
+        if (getRecycledViewCount(viewType) >= sizeOf(viewType)) {
+            evictions++;
+        }
+        super.putRecycledView(holder);
+    }
+
+    /**
+     * Called by the owner adapter when one of its rows is detached, shrink the viewTypes that are not in demand.
+     */
+    void onRowDetached() {
+        for (int i = 0; i < sizes.size(); i++) {
+            int viewType = sizes.keyAt(i);
+            int size = sizes.valueAt(i);
+            if (missesSinceTrim.get(viewType) == 0 && size > initialSize) {
+                resize(viewType, size - 1);
+            }
+        }
+        missesSinceTrim.clear();
+    }
+
+    /**
+     * Drop the holders beyond the initial size of every viewType, for example when memory is low.
+     */
+    public void trim() {
+        for (int i = 0; i < sizes.size(); i++) {
+            resize(sizes.keyAt(i), Math.min(sizes.valueAt(i), initialSize));
+        }
+    }
+
+    @Override
+    public void clear() {
+        super.clear();
+        sizes.clear();
+        missesSinceTrim.clear();
+    }
+
+    private int maxSizeOf(int viewType) {
+        return maxSizes.get(viewType, defaultMaxSize);
+    }
+
+    private void resize(int viewType, int size) {
+        int count = getRecycledViewCount(viewType);
+        while (count > size && super.getRecycledView(viewType) != null) {
+            count--;
+            evictions++;
+        }
+        setMaxRecycledViews(viewType, size);
+    }
+}
@@ -0,0 +1,350 @@
+package org.qxtx.idea.recyclerview;
+
+import android.support.v7.util.ListUpdateCallback;
+import android.view.Choreographer;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Adds, removes and updates of a sorted data list of {@link IdeaAdapter} waiting for the next frame, the
+ * positions are found by the comparator when they are applied.
+ * <p>
+ * The waiting items are sorted once, then every one of them finds its position in the list by a binary search,
+ * so k items take O(k log k + k log n) to place. The list is changed by one merge from the first touched
+ * position on, instead of shifting the list once per item, and every inserted, removed and changed item is
+ * reported in order to a {@link ListUpdateCallback}, which is expected to merge neighbouring ones. Appending
+ * items that sort after the whole list, like new messages by time, only touches the end of the list.
+ * It must be used on the main thread.
+ * @param <T>   A type convert to adapter.
+ */
+class SortedBatch<T> implements Choreographer.FrameCallback {
+
+    interface Target {
+        /**
+         * Frame comes, apply the edits by {@link #applyTo(List, Comparator, IdeaAdapter.DiffCallback,
+         * ListUpdateCallback)}.
+         */
+        void onEditFrame();
+    }
+
+    private final Target target;
+    private final ArrayList<Add<T>> adds = new ArrayList<>();
+    private final ArrayList<T> removes = new ArrayList<>();
+    private boolean scheduled;
+
+    SortedBatch(Target target) {
+        this.target = target;
+    }
+
+    boolean isEmpty() {
+        return adds.isEmpty() && removes.isEmpty();
+    }
+
+    void add(Collection<? extends T> items) {
+        if (items == null || items.isEmpty()) {
+            return;
+        }
+        adds.ensureCapacity(adds.size() + items.size());
+        for (T item : items) {
+            adds.add(new Add<T>(item, null));
+        }
+        schedule();
+    }
+
+    void remove(T item) {
+        removes.add(item);
+        schedule();
+    }
+
+    /**
+     * Replace the item by a new one that may sort somewhere else. If the old item is not in the list, the new
+     * one is only added.
+     */
+    void update(T oldItem, T newItem) {
+        adds.add(new Add<>(newItem, oldItem));
+        schedule();
+    }
+
+    /**
+     * Drop the waiting edits, used when the whole list is replaced.
+     */
+    void clear() {
+        adds.clear();
+        removes.clear();
+        unschedule();
+    }
+
+    /**
+     * Apply the waiting edits to the list, which must be sorted by the comparator.
+     * @param diffCallback  Tells whether a removed item is the one in the list and whether an updated item
+     *                      has to be rebound. Without it items are the same when they are equal.
+     */
+    void applyTo(List<T> data, Comparator<? super T> comparator, IdeaAdapter.DiffCallback<T> diffCallback,
+                 ListUpdateCallback callback) {
+        unschedule();
+        if (isEmpty()) {
+            return;
+        }
+
+        //A stable sort keeps items that compare equal in the order they were added.
+        ArrayList<Add<T>> sorted = new ArrayList<>(adds);
+        Collections.sort(sorted, new AddComparator<>(comparator));
+        ArrayList<Removal<T>> removals = new ArrayList<>(removes.size());
+        for (T item : removes) {
+            //An item added or updated in this batch is never shown, the update still removes the old item.
+            if (cancelAdd(sorted, item, comparator, diffCallback)) {
+                continue;
+            }
+            int position = indexOf(data, item, comparator, diffCallback);
+            if (position >= 0) {
+                removals.add(new Removal<T>(position, null));
+            }
+        }
+        for (Add<T> add : sorted) {
+            if (add.replaced != null) {
+                int position = indexOf(data, add.replaced, comparator, diffCallback);
+                if (position >= 0) {
+                    removals.add(new Removal<>(position, add));
+                }
+            }
+        }
+        adds.clear();
+        removes.clear();
+        Collections.sort(removals);
+
+        int size = data.size();
+        int first = size;
+        int slotFrom = 0;
+        for (Add<T> add : sorted) {
+            if (!add.cancelled) {
+                add.slot = upperBound(data, add.item, comparator, slotFrom, size);
+                slotFrom = add.slot;
+                first = Math.min(first, add.slot);
+            }
+        }
+        if (!removals.isEmpty()) {
+            first = Math.min(first, removals.get(0).position);
+        }
+
+        //Merge the list from the first touched position with the added items.
+        ArrayList<T> tail = new ArrayList<>(size - first + sorted.size());
+        int out = first;
+        int a = 0;
+        int r = 0;
+        for (int i = first; i <= size; i++) {
+            Removal<T> removal = null;
+            if (r < removals.size() && removals.get(r).position == i) {
+                removal = removals.get(r++);
+                //Removed twice, the second time finds nothing.
+                while (r < removals.size() && removals.get(r).position == i) {
+                    r++;
+                }
+            }
+            Add<T> replacement = removal == null ? null : removal.replacement;
+            //An updated item that stays between the same neighbours is changed instead of removed and added.
+            boolean inPlace = replacement != null && !replacement.cancelled
+                    && (replacement.slot == i || replacement.slot == i + 1);
+            int slotEnd = inPlace ? i + 1 : i;
+            boolean replaced = false;
+
+            for (; a < sorted.size() && (sorted.get(a).cancelled || sorted.get(a).slot <= slotEnd); a++) {
+                Add<T> add = sorted.get(a);
+                if (add.cancelled) {
+                    continue;
+                }
+                tail.add(add.item);
+                if (inPlace && add == replacement) {
+                    replaced = true;
+                    T oldItem = data.get(i);
+                    if (diffCallback == null) {
+                        callback.onChanged(out, 1, null);
+                    } else if (!diffCallback.areContentsTheSame(oldItem, add.item)) {
+                        callback.onChanged(out, 1, diffCallback.getChangePayload(oldItem, add.item));
+                    }
+                } else {
+                    callback.onInserted(out, 1);
+                }
+                out++;
+            }
+
+            if (i == size) {
+                break;
+            }
+            if (removal == null) {
+                tail.add(data.get(i));
+                out++;
+            } else if (!replaced) {
+                callback.onRemoved(out, 1);
+            }
+        }
+
+        data.subList(first, size).clear();
+        data.addAll(tail);
+    }
+
+    @Override
+    public void doFrame(long frameTimeNanos) {
+        scheduled = false;
+        target.onEditFrame();
+    }
+
+    /**
+     * Ask for a frame again, for the edits that could not be applied at the last one.
+     */
+    void schedule() {
+        if (!scheduled && !isEmpty()) {
+            scheduled = true;
+            postFrame();
+        }
+    }
+
+    private void unschedule() {
+        if (scheduled) {
+            scheduled = false;
+            removeFrame();
+        }
+    }
+
+    /**
+     * Wait for the next frame, tests without a Choreographer override it.
+     */
+    void postFrame() {
+        Choreographer.getInstance().postFrameCallback(this);
+    }
+
+    void removeFrame() {
+        Choreographer.getInstance().removeFrameCallback(this);
+    }
+
+    /**
+     * @return  Position of the item in the sorted list, or -1.
+     */
+    static <T> int indexOf(List<T> data, T item, Comparator<? super T> comparator,
+                           IdeaAdapter.DiffCallback<T> diffCallback) {
+        int size = data.size();
+        for (int i = lowerBound(data, item, comparator, 0, size); i < size; i++) {
+            T other = data.get(i);
+            if (comparator.compare(other, item) != 0) {
+                break;
+            }
+            if (isSameItem(other, item, diffCallback)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * First position in [from, to) whose item sorts after the item, where the item is inserted after the
+     * items equal to it.
+     */
+    static <T> int upperBound(List<T> data, T item, Comparator<? super T> comparator, int from, int to) {
+        int low = from;
+        int high = to;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (comparator.compare(data.get(mid), item) <= 0) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    private static <T> int lowerBound(List<T> data, T item, Comparator<? super T> comparator, int from, int to) {
+        int low = from;
+        int high = to;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (comparator.compare(data.get(mid), item) < 0) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * @return  Whether a waiting add of the item was cancelled.
+     */
+    private static <T> boolean cancelAdd(List<Add<T>> sorted, T item, Comparator<? super T> comparator,
+                                      IdeaAdapter.DiffCallback<T> diffCallback) {
+        int low = 0;
+        int high = sorted.size();
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (comparator.compare(sorted.get(mid).item, item) < 0) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        for (int i = low; i < sorted.size() && comparator.compare(sorted.get(i).item, item) == 0; i++) {
+            Add<T> add = sorted.get(i);
+            if (!add.cancelled && isSameItem(add.item, item, diffCallback)) {
+                add.cancelled = true;
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static <T> boolean isSameItem(T a, T b, IdeaAdapter.DiffCallback<T> diffCallback) {
+        if (a == b) {
+            return true;
+        }
+        if (a == null || b == null) {
+            return false;
+        }
+        return diffCallback != null ? diffCallback.areItemsTheSame(a, b) : a.equals(b);
+    }
+
+    private static final class Add<T> {
+        final T item;
+        /** The item that it replaces, or null. */
+        final T replaced;
+        /** Position in the list before the batch that the item goes before. */
+        int slot;
+        boolean cancelled;
+
+        Add(T item, T replaced) {
+            this.item = item;
+            this.replaced = replaced;
+        }
+    }
+
+    private static final class AddComparator<T> implements Comparator<Add<T>> {
+        private final Comparator<? super T> comparator;
+
+        AddComparator(Comparator<? super T> comparator) {
+            this.comparator = comparator;
+        }
+
+        @Override
+        public int compare(Add<T> a, Add<T> b) {
+            return comparator.compare(a.item, b.item);
+        }
+    }
+
+    private static final class Removal<T> implements Comparable<Removal<T>> {
+        final int position;
+        /** The update that takes the place of the removed item, or null. */
+        final Add<T> replacement;
+
+        Removal(int position, Add<T> replacement) {
+            this.position = position;
+            this.replacement = replacement;
+        }
+
+        @Override
+        public int compareTo(Removal<T> other) {
+            return position < other.position ? -1 : (position == other.position ? 0 : 1);
+        }
+    }
+}
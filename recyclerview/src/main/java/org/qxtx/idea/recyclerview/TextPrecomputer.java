@@ -0,0 +1,315 @@
+package org.qxtx.idea.recyclerview;
+
+import android.text.Layout;
+import android.text.StaticLayout;
+import android.text.TextPaint;
+import android.text.TextUtils;
+import android.util.LruCache;
+import android.util.SparseArray;
+import android.view.View;
+import android.widget.TextView;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+/**
+ * Lay out the texts of the items that are about to be bound on a background executor, set it by
+ * {@link IdeaAdapter#setTextPrecomputer(TextPrecomputer)} and tell it the text of every view id by
+ * {@link #addText(int, TextExtractor)}.
+ * <p>
+ * The style of the text, the paint, the width and the line spacing, is taken from the view of the id when a
+ * bound holder has been laid out. After that every bind lays out the texts of the next items in the direction
+ * of the scroll, and keeps the layouts in a cache per view id bounded by count, keyed by the item. Then
+ * {@link IdeaAdapter.MyHolder#setText(int, CharSequence)} of a {@link LayoutTextView} only looks the layout
+ * up. A TextView can not take a layout before API 28, but laying the text out ahead still fills the glyph
+ * cache that its own measuring uses, so its texts are laid out and not kept.
+ * Use it on the main thread.
+ * @param <T>   A type convert to adapter.
+ */
+public class TextPrecomputer<T> {
+    public static final int DEFAULT_PREFETCH_COUNT = 10;
+
+    /**
+     * Text of the item for a view id, called on the main thread.
+     */
+    public interface TextExtractor<T> {
+        CharSequence getText(T item);
+    }
+
+    private final int maxLayouts;
+    private final SparseArray<Entry<T>> entries = new SparseArray<>();
+    private int prefetchCount = DEFAULT_PREFETCH_COUNT;
+    private Executor executor;
+
+    private int lastPosition = -1;
+    private int lastDirection;
+    /** Last position that texts were scheduled for in the direction of {@link #lastDirection}. */
+    private int scheduledEnd = -1;
+    private int scheduledVersion;
+    /** Increased when a style changes. */
+    private int styleVersion;
+
+    /**
+     * @param maxLayouts    Layouts kept for every view id.
+     */
+    public TextPrecomputer(int maxLayouts) {
+        this.maxLayouts = Math.max(1, maxLayouts);
+    }
+
+    public TextPrecomputer<T> addText(int viewId, TextExtractor<T> extractor) {
+        entries.put(viewId, new Entry<>(viewId, extractor, maxLayouts));
+        return this;
+    }
+
+    /**
+     * Items after the bound one, in the direction of the scroll, whose texts are laid out ahead.
+     */
+    public TextPrecomputer<T> setPrefetchCount(int prefetchCount) {
+        this.prefetchCount = Math.max(0, prefetchCount);
+        return this;
+    }
+
+    /**
+     * Executor that texts are laid out on, null to use the shared background threads of the library.
+     */
+    public TextPrecomputer<T> setExecutor(Executor executor) {
+        this.executor = executor;
+        return this;
+    }
+
+    /**
+     * Drop all layouts, for example after the text size of the views changed.
+     */
+    public void evictAll() {
+        for (int i = 0; i < entries.size(); i++) {
+            entries.valueAt(i).cache.evictAll();
+        }
+        scheduledVersion = -1;
+    }
+
+    /**
+     * The positions of the items changed, lay out ahead from the next bind again.
+     */
+    void onDataChanged() {
+        scheduledVersion = -1;
+    }
+
+    /**
+     * @return  The layout of the text of the item for the view id if it was computed, or null.
+     */
+    Layout find(T item, int viewId, CharSequence text) {
+        Entry<T> entry = entries.get(viewId);
+        if (entry == null || item == null || text == null) {
+            return null;
+        }
+        Layout layout = entry.cache.get(item);
+        return layout != null && TextUtils.equals(layout.getText(), text) ? layout : null;
+    }
+
+    /**
+     * The holder was bound to the position, take the styles from it and lay out the texts ahead.
+     */
+    void onBound(IdeaAdapter<T>.MyHolder holder, int position, List<T> data) {
+        for (int i = 0; i < entries.size(); i++) {
+            Entry<T> entry = entries.valueAt(i);
+            TextStyle style = TextStyle.update(entry.style, holder.<View>getView(entry.viewId));
+            if (style != entry.style) {
+                entry.style = style;
+                entry.cache.evictAll();
+                entry.version++;
+                styleVersion++;
+            }
+        }
+
+        int direction = position >= lastPosition ? 1 : -1;
+        lastPosition = position;
+        int size = data == null ? 0 : data.size();
+        if (prefetchCount == 0 || size == 0) {
+            return;
+        }
+
+        int from = position + direction;
+        int to = Math.max(0, Math.min(size - 1, position + direction * prefetchCount));
+        if (direction == lastDirection && scheduledVersion == styleVersion) {
+            //Don't schedule the positions scheduled by the binds before again.
+            from = direction > 0 ? Math.max(from, scheduledEnd + 1) : Math.min(from, scheduledEnd - 1);
+        }
+        if (direction > 0 ? from > to : from < to) {
+            return;
+        }
+        lastDirection = direction;
+        scheduledEnd = to;
+        scheduledVersion = styleVersion;
+
+        List<Job<T>> jobs = null;
+        for (int p = from; direction > 0 ? p <= to : p >= to; p += direction) {
+            T item = data.get(p);
+            if (item == null) {
+                continue;
+            }
+            for (int i = 0; i < entries.size(); i++) {
+                Entry<T> entry = entries.valueAt(i);
+                if (entry.style == null || entry.cache.get(item) != null) {
+                    continue;
+                }
+                CharSequence text = entry.extractor.getText(item);
+                if (text == null) {
+                    continue;
+                }
+                if (jobs == null) {
+                    jobs = new ArrayList<>();
+                }
+                jobs.add(new Job<>(entry, item, text));
+            }
+        }
+        if (jobs != null) {
+            (executor == null ? IdeaExecutors.background() : executor).execute(new LayoutTask<>(jobs));
+        }
+    }
+
+    private static final class Entry<T> {
+        final int viewId;
+        final TextExtractor<T> extractor;
+        final LruCache<T, Layout> cache;
+        TextStyle style;
+        /** Version of {@link #style}, layouts of an old style are not kept. */
+        volatile int version;
+
+        Entry(int viewId, TextExtractor<T> extractor, int maxLayouts) {
+            this.viewId = viewId;
+            this.extractor = extractor;
+            this.cache = new LruCache<>(maxLayouts);
+        }
+    }
+
+    private static final class Job<T> {
+        final Entry<T> entry;
+        final T item;
+        final CharSequence text;
+        final TextStyle style;
+        final int version;
+
+        Job(Entry<T> entry, T item, CharSequence text) {
+            this.entry = entry;
+            this.item = item;
+            this.text = text;
+            this.style = entry.style;
+            this.version = entry.version;
+        }
+    }
+
+    private static final class LayoutTask<T> implements Runnable {
+        private final List<Job<T>> jobs;
+
+        LayoutTask(List<Job<T>> jobs) {
+            this.jobs = jobs;
+        }
+
+        @Override
+        public void run() {
+            for (Job<T> job : jobs) {
+                if (job.version != job.entry.version) {
+                    continue;
+                }
+                //Paints are not thread safe, and the layout keeps its paint to draw, so it gets its own copy.
+                Layout layout = job.style.layout(job.text, new TextPaint(job.style.paint));
+                if (job.style.keep && job.version == job.entry.version) {
+                    job.entry.cache.put(job.item, layout);
+                }
+            }
+        }
+    }
+
+    /**
+     * What the layout of a text depends on, taken from a view on the main thread.
+     */
+    static final class TextStyle {
+        final TextPaint paint;
+        final int width;
+        final Layout.Alignment alignment;
+        final float spacingMult;
+        final float spacingAdd;
+        final boolean includePad;
+        /** Whether the view can show the layout, otherwise it is only laid out to fill the glyph cache. */
+        final boolean keep;
+
+        private TextStyle(TextPaint paint, int width, Layout.Alignment alignment, float spacingMult,
+                          float spacingAdd, boolean includePad, boolean keep) {
+            this.paint = new TextPaint(paint);
+            this.width = width;
+            this.alignment = alignment;
+            this.spacingMult = spacingMult;
+            this.spacingAdd = spacingAdd;
+            this.includePad = includePad;
+            this.keep = keep;
+        }
+
+        /**
+         * @return  The current style if the view still has it or is not laid out yet, otherwise the new style
+         *          of the view. Nothing is allocated while the style stays the same.
+         */
+        static TextStyle update(TextStyle current, View view) {
+            TextPaint paint;
+            int width;
+            Layout.Alignment alignment;
+            float spacingMult;
+            float spacingAdd;
+            boolean includePad;
+            boolean keep;
+            if (view instanceof LayoutTextView) {
+                LayoutTextView textView = (LayoutTextView) view;
+                paint = textView.getPaint();
+                width = textView.getContentWidth();
+                alignment = textView.getAlignment();
+                spacingMult = textView.getLineSpacingMultiplier();
+                spacingAdd = textView.getLineSpacingExtra();
+                includePad = true;
+                keep = true;
+            } else if (view instanceof TextView) {
+                TextView textView = (TextView) view;
+                paint = textView.getPaint();
+                width = textView.getWidth() - textView.getCompoundPaddingLeft() - textView.getCompoundPaddingRight();
+                alignment = Layout.Alignment.ALIGN_NORMAL;
+                spacingMult = textView.getLineSpacingMultiplier();
+                spacingAdd = textView.getLineSpacingExtra();
+                includePad = textView.getIncludeFontPadding();
+                keep = false;
+            } else {
+                return current;
+            }
+
+            if (width <= 0) {
+                return current;
+            }
+            if (current != null
+                    && width == current.width
+                    && keep == current.keep
+                    && includePad == current.includePad
+                    && spacingMult == current.spacingMult
+                    && spacingAdd == current.spacingAdd
+                    && alignment == current.alignment
+                    && samePaint(paint, current.paint)) {
+                return current;
+            }
+            return new TextStyle(paint, width, alignment, spacingMult, spacingAdd, includePad, keep);
+        }
+
+        /**
+         * Whether the paints lay out texts the same way, the color does not matter.
+         */
+        private static boolean samePaint(TextPaint a, TextPaint b) {
+            return a.getTextSize() == b.getTextSize()
+                    && a.getTextScaleX() == b.getTextScaleX()
+                    && a.getTextSkewX() == b.getTextSkewX()
+                    && a.getLetterSpacing() == b.getLetterSpacing()
+                    && a.getFlags() == b.getFlags()
+                    && a.getTypeface() == b.getTypeface()
+                    && a.getTextLocale().equals(b.getTextLocale());
+        }
+
+        Layout layout(CharSequence text, TextPaint paint) {
+            return new StaticLayout(text, paint, width, alignment, spacingMult, spacingAdd, includePad);
+        }
+    }
+}
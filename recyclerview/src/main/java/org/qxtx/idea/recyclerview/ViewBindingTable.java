@@ -0,0 +1,62 @@
+package org.qxtx.idea.recyclerview;
+
+import android.view.View;
+
+/**
+ * View ids used by the holders of one viewType, each id has a dense slot index. A holder looks up all the known
+ * ids once when it is created and keeps the views in a plain array by slot, so a bind only reads the array.
+ * <p>
+ * Ids are learnt the first time a holder asks for them, or declared ahead by
+ * {@link IdeaAdapter#bindViewIds(int, int...)}. Holders may be created on a warm up thread, they only read
+ * {@link #ids()}, which is replaced as a whole when an id is added.
+ */
+final class ViewBindingTable {
+    static final int NO_SLOT = -1;
+
+    private final LongIntMap slots = new LongIntMap();
+    private volatile int[] ids = new int[0];
+
+    /**
+     * Must be called on the main thread.
+     */
+    int slotOf(int viewId) {
+        return slots.get(viewId, NO_SLOT);
+    }
+
+    /**
+     * Must be called on the main thread.
+     * @return  Slot of the id, added if it is new.
+     */
+    int obtainSlot(int viewId) {
+        int slot = slots.get(viewId, NO_SLOT);
+        if (slot != NO_SLOT) {
+            return slot;
+        }
+
+        int[] oldIds = ids;
+        int[] newIds = new int[oldIds.length + 1];
+        System.arraycopy(oldIds, 0, newIds, 0, oldIds.length);
+        slot = oldIds.length;
+        newIds[slot] = viewId;
+        slots.put(viewId, slot);
+        ids = newIds;
+        return slot;
+    }
+
+    /**
+     * Ids by slot. Do not change the array.
+     */
+    int[] ids() {
+        return ids;
+    }
+
+    /**
+     * Find the views of the slots from start to the end of the table in the item view.
+     * @param views Views by slot, at least as long as the table.
+     */
+    static void fill(View itemView, int[] ids, View[] views, int start) {
+        for (int i = start; i < ids.length; i++) {
+            views[i] = itemView.findViewById(ids[i]);
+        }
+    }
+}
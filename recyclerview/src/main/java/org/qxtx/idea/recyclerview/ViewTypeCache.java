@@ -0,0 +1,133 @@
+package org.qxtx.idea.recyclerview;
+
+/**
+ * The viewType of every position, asked to {@link IdeaAdapter.MultiLayout} once and kept in an int array until
+ * the item at the position changes. Entries are filled lazily, the notifications of the adapter shift them with
+ * the items and forget the changed ones. Counts of the known viewTypes are kept along, so the count of a
+ * viewType is O(1) once all positions are known. Use it on the main thread.
+ */
+final class ViewTypeCache {
+    /** Not asked yet, {@link IdeaAdapter.MultiLayout} must never return it. */
+    private static final int UNKNOWN = Integer.MIN_VALUE;
+
+    private int[] types = new int[0];
+    private int size;
+    private int unknownCount;
+    /** Count of the known entries by viewType. */
+    private final LongIntMap counts = new LongIntMap();
+
+    int get(int position, IdeaAdapter.MultiLayout multiLayout) {
+        if (position >= size) {
+            //The list grew without a notification, don't cache what can not be kept right.
+            return multiLayout.getLayoutId(position);
+        }
+
+        int type = types[position];
+        if (type == UNKNOWN) {
+            type = multiLayout.getLayoutId(position);
+            if (type != UNKNOWN) {
+                types[position] = type;
+                unknownCount--;
+                counts.put(type, counts.get(type, 0) + 1);
+            }
+        }
+        return type;
+    }
+
+    /**
+     * @return  Items of the viewType, it asks for the viewTypes that are not known yet once.
+     */
+    int count(int viewType, IdeaAdapter.MultiLayout multiLayout) {
+        if (unknownCount > 0) {
+            for (int i = 0; i < size && unknownCount > 0; i++) {
+                get(i, multiLayout);
+            }
+        }
+        return counts.get(viewType, 0);
+    }
+
+    /**
+     * Forget everything, the list now has the size.
+     */
+    void reset(int size) {
+        ensureCapacity(size);
+        fill(0, size);
+        this.size = size;
+        unknownCount = size;
+        counts.clear();
+    }
+
+    void onInserted(int position, int count) {
+        if (position > size) {
+            reset(size + count);
+            return;
+        }
+        ensureCapacity(size + count);
+        System.arraycopy(types, position, types, position + count, size - position);
+        fill(position, position + count);
+        size += count;
+        unknownCount += count;
+    }
+
+    void onRemoved(int position, int count) {
+        count = Math.min(count, size - position);
+        if (count <= 0) {
+            return;
+        }
+        forget(position, position + count);
+        System.arraycopy(types, position + count, types, position, size - position - count);
+        size -= count;
+        unknownCount -= count;
+    }
+
+    void onMoved(int fromPosition, int toPosition) {
+        if (fromPosition >= size || toPosition >= size) {
+            return;
+        }
+        int type = types[fromPosition];
+        if (fromPosition < toPosition) {
+            System.arraycopy(types, fromPosition + 1, types, fromPosition, toPosition - fromPosition);
+        } else {
+            System.arraycopy(types, toPosition, types, toPosition + 1, fromPosition - toPosition);
+        }
+        types[toPosition] = type;
+    }
+
+    void onChanged(int position, int count) {
+        int end = Math.min(position + count, size);
+        forget(position, end);
+    }
+
+    /**
+     * Make the known entries of the range unknown.
+     */
+    private void forget(int start, int end) {
+        for (int i = start; i < end; i++) {
+            int type = types[i];
+            if (type != UNKNOWN) {
+                types[i] = UNKNOWN;
+                unknownCount++;
+                int count = counts.get(type, 0) - 1;
+                if (count > 0) {
+                    counts.put(type, count);
+                } else {
+                    counts.remove(type);
+                }
+            }
+        }
+    }
+
+    private void fill(int start, int end) {
+        for (int i = start; i < end; i++) {
+            types[i] = UNKNOWN;
+        }
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity > types.length) {
+            int[] grown = new int[Math.max(capacity, types.length + (types.length >> 1) + 16)];
+            System.arraycopy(types, 0, grown, 0, size);
+            types = grown;
+        }
+    }
+}
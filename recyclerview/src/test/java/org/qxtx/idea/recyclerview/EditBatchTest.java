@@ -0,0 +1,253 @@
+package org.qxtx.idea.recyclerview;
+
+import android.support.v7.util.BatchingListUpdateCallback;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Range edits of {@link EditBatch}, applied in order and reported to a merging callback.
+ */
+public class EditBatchTest {
+
+    @Test
+    public void appendsOfOneFrameAreOneInsert() {
+        List<String> data = list("a", "b");
+        TestBatch batch = new TestBatch(data);
+        batch.append(Arrays.asList("c", "d"));
+        batch.append(Collections.singletonList("e"));
+        batch.append(Collections.<String>emptyList());
+        assertEquals(5, batch.pendingSize());
+        assertTrue(batch.scheduled);
+
+        RecordingCallback callback = apply(batch, data);
+
+        assertEquals(list("a", "b", "c", "d", "e"), data);
+        assertEquals(1, callback.calls);
+        assertEquals(Arrays.asList("insert 2", "insert 3", "insert 4"), callback.events);
+        assertFalse(batch.scheduled);
+        assertTrue(batch.isEmpty());
+    }
+
+    @Test
+    public void appendGoesToTheEndOfTheListWhenApplied() {
+        List<String> data = list("a", "b");
+        TestBatch batch = new TestBatch(data);
+        batch.append(Collections.singletonList("z"));
+        batch.insert(1, Collections.singletonList("x"));
+
+        RecordingCallback callback = apply(batch, data);
+
+        assertEquals(list("a", "x", "b", "z"), data);
+        assertEquals(2, callback.calls);
+        assertReplayed(data, callback);
+    }
+
+    @Test
+    public void neighbouringRemovesAreOneRemove() {
+        List<String> data = list("a", "b", "c", "d", "e");
+        TestBatch batch = new TestBatch(data);
+        batch.remove(2, 1);
+        batch.remove(1, 1);
+        batch.remove(1, 2);
+        assertEquals(1, batch.pendingSize());
+
+        RecordingCallback callback = apply(batch, data);
+
+        assertEquals(list("a"), data);
+        assertEquals(1, callback.calls);
+        assertReplayed(data, callback);
+    }
+
+    @Test
+    public void replacesAndChangesWithTheSamePayloadAreOneChange() {
+        List<String> data = list("a", "b", "c", "d");
+        Object payload = new Object();
+        TestBatch batch = new TestBatch(data);
+        batch.replace(1, Collections.singletonList("B"), payload);
+        batch.change(2, 1, payload);
+        batch.change(0, 1, null);
+
+        RecordingCallback callback = apply(batch, data);
+
+        assertEquals(list("a", "B", "c", "d"), data);
+        assertEquals(2, callback.calls);
+        assertEquals(Arrays.asList("change 1", "change 2", "change 0"), callback.events);
+    }
+
+    @Test
+    public void moveIsReportedAsItIs() {
+        List<String> data = list("a", "b", "c");
+        TestBatch batch = new TestBatch(data);
+        batch.move(0, 2);
+        batch.move(1, 1);
+
+        RecordingCallback callback = apply(batch, data);
+
+        assertEquals(list("b", "c", "a"), data);
+        assertEquals(Collections.singletonList("move 0 2"), callback.events);
+        assertEquals(data, callback.replayed());
+    }
+
+    @Test
+    public void positionsAreCheckedAgainstTheWaitingSize() {
+        List<String> data = list("a", "b");
+        TestBatch batch = new TestBatch(data);
+        batch.append(Collections.singletonList("c"));
+        batch.remove(2, 1);
+        try {
+            batch.remove(2, 1);
+            fail();
+        } catch (IndexOutOfBoundsException expected) {
+        }
+        try {
+            batch.insert(3, Collections.singletonList("x"));
+            fail();
+        } catch (IndexOutOfBoundsException expected) {
+        }
+        batch.insert(2, Collections.singletonList("x"));
+        assertEquals(3, batch.pendingSize());
+    }
+
+    @Test
+    public void clearDropsTheWaitingEdits() {
+        List<String> data = list("a", "b");
+        TestBatch batch = new TestBatch(data);
+        batch.remove(0, 2);
+        batch.clear();
+        assertFalse(batch.scheduled);
+        assertEquals(2, batch.pendingSize());
+
+        RecordingCallback callback = apply(batch, data);
+
+        assertEquals(list("a", "b"), data);
+        assertEquals(0, callback.calls);
+    }
+
+    @Test
+    public void randomEditsMatchAModelList() {
+        Random random = new Random(11);
+        for (int round = 0; round < 500; round++) {
+            List<String> data = new ArrayList<>();
+            for (int i = random.nextInt(20); i > 0; i--) {
+                data.add("old" + i);
+            }
+            List<String> model = new ArrayList<>(data);
+            TestBatch batch = new TestBatch(data);
+            int next = 0;
+            for (int i = random.nextInt(15); i > 0; i--) {
+                int size = model.size();
+                switch (random.nextInt(size == 0 ? 2 : 6)) {
+                    case 0: {
+                        List<String> items = Arrays.asList("new" + next++, "new" + next++);
+                        batch.append(items);
+                        model.addAll(items);
+                        break;
+                    }
+                    case 1: {
+                        int position = random.nextInt(size + 1);
+                        List<String> items = Collections.singletonList("new" + next++);
+                        batch.insert(position, items);
+                        model.addAll(position, items);
+                        break;
+                    }
+                    case 2: {
+                        int position = random.nextInt(size);
+                        int count = 1 + random.nextInt(size - position);
+                        batch.remove(position, count);
+                        model.subList(position, position + count).clear();
+                        break;
+                    }
+                    case 3: {
+                        int from = random.nextInt(size);
+                        int to = random.nextInt(size);
+                        batch.move(from, to);
+                        model.add(to, model.remove(from));
+                        break;
+                    }
+                    case 4: {
+                        int position = random.nextInt(size);
+                        String item = "replaced" + next++;
+                        batch.replace(position, Collections.singletonList(item), null);
+                        model.set(position, item);
+                        break;
+                    }
+                    default:
+                        batch.change(random.nextInt(size), 1, null);
+                        break;
+                }
+                assertEquals(model.size(), batch.pendingSize());
+            }
+
+            RecordingCallback callback = apply(batch, data);
+
+            assertEquals(model, data);
+            assertReplayed(data, callback);
+        }
+    }
+
+    private static RecordingCallback apply(TestBatch batch, List<String> data) {
+        RecordingCallback callback = new RecordingCallback(data);
+        BatchingListUpdateCallback batching = new BatchingListUpdateCallback(callback);
+        batch.applyTo(data, batching);
+        batching.dispatchLastEvent();
+        return callback;
+    }
+
+    /**
+     * Old items are still in their places after the notifications, unless they were replaced.
+     */
+    private static void assertReplayed(List<String> data, RecordingCallback callback) {
+        List<Object> replayed = callback.replayed();
+        assertEquals(data.size(), replayed.size());
+        for (int i = 0; i < data.size(); i++) {
+            String item = data.get(i);
+            if (replayed.get(i) == RecordingCallback.INSERTED) {
+                assertFalse(item.startsWith("old"));
+            } else if (!item.startsWith("replaced")) {
+                assertEquals(item, replayed.get(i));
+            }
+        }
+    }
+
+    private static List<String> list(String... items) {
+        return new ArrayList<>(Arrays.asList(items));
+    }
+
+    /**
+     * There are no frames on the JVM, the edits are applied by the test.
+     */
+    private static final class TestBatch extends EditBatch<String> {
+        boolean scheduled;
+
+        TestBatch(final List<String> data) {
+            super(new Target() {
+                @Override
+                public int committedSize() {
+                    return data.size();
+                }
+
+                @Override
+                public void onEditFrame() {
+                }
+            });
+        }
+
+        @Override
+        void postFrame() {
+            scheduled = true;
+        }
+
+        @Override
+        void removeFrame() {
+            scheduled = false;
+        }
+    }
+}
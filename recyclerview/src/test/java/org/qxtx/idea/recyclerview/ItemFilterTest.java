@@ -0,0 +1,127 @@
+package org.qxtx.idea.recyclerview;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Notifications of {@link ItemFilter#dispatchMerge(int[], int, int[], int, android.support.v7.util.ListUpdateCallback)}
+ * between two results of the same list.
+ */
+public class ItemFilterTest {
+
+    @Test
+    public void narrowingTheWholeListRemovesTheRest() {
+        RecordingCallback callback = merge(null, 5, new int[]{1, 3}, 2);
+
+        assertEquals(Arrays.asList("remove 0", "remove 1", "remove 2"), callback.events);
+        assertEquals(Arrays.<Object>asList(1, 3), callback.replayed());
+    }
+
+    @Test
+    public void clearingTheQueryInsertsTheRest() {
+        RecordingCallback callback = merge(new int[]{1, 3}, 2, null, 5);
+
+        assertEquals(Arrays.asList("insert 0", "insert 2", "insert 4"), callback.events);
+        assertReplayed(new int[]{1, 3}, 2, null, 5, callback);
+    }
+
+    @Test
+    public void sameResultIsNotNotified() {
+        RecordingCallback callback = merge(new int[]{0, 2, 4}, 3, new int[]{0, 2, 4}, 3);
+
+        assertTrue(callback.events.isEmpty());
+    }
+
+    @Test
+    public void emptyResults() {
+        assertTrue(merge(new int[0], 0, new int[0], 0).events.isEmpty());
+        assertEquals(Arrays.asList("insert 0", "insert 1"), merge(new int[0], 0, new int[]{3, 7}, 2).events);
+        assertEquals(Arrays.asList("remove 0", "remove 0"), merge(new int[]{3, 7}, 2, new int[0], 0).events);
+    }
+
+    @Test
+    public void disjointResultsReplaceEveryItem() {
+        RecordingCallback callback = merge(new int[]{0, 1}, 2, new int[]{2, 3}, 2);
+
+        assertEquals(Arrays.asList("remove 0", "remove 0", "insert 0", "insert 1"), callback.events);
+        assertReplayed(new int[]{0, 1}, 2, new int[]{2, 3}, 2, callback);
+    }
+
+    @Test
+    public void interleavedResultsKeepTheCommonItems() {
+        RecordingCallback callback = merge(new int[]{0, 2, 4, 6}, 4, new int[]{1, 2, 5, 6, 7}, 5);
+
+        assertEquals(Arrays.asList("remove 0", "insert 0", "remove 2", "insert 2", "insert 4"), callback.events);
+        assertReplayed(new int[]{0, 2, 4, 6}, 4, new int[]{1, 2, 5, 6, 7}, 5, callback);
+    }
+
+    @Test
+    public void randomResultsReplayToTheNewOne() {
+        Random random = new Random(7);
+        for (int round = 0; round < 1000; round++) {
+            int size = random.nextInt(40);
+            int[] oldPositions = random.nextInt(5) == 0 ? null : subset(random, size);
+            int[] newPositions = random.nextInt(5) == 0 ? null : subset(random, size);
+            int oldSize = oldPositions == null ? size : oldPositions.length;
+            int newSize = newPositions == null ? size : newPositions.length;
+
+            RecordingCallback callback = merge(oldPositions, oldSize, newPositions, newSize);
+            assertReplayed(oldPositions, oldSize, newPositions, newSize, callback);
+        }
+    }
+
+    private static RecordingCallback merge(int[] oldPositions, int oldSize, int[] newPositions, int newSize) {
+        RecordingCallback callback = new RecordingCallback(positions(oldPositions, oldSize));
+        ItemFilter.dispatchMerge(oldPositions, oldSize, newPositions, newSize, callback);
+        return callback;
+    }
+
+    /**
+     * After the notifications the items kept from the old result are where the new result has them, and the
+     * others were inserted.
+     */
+    private static void assertReplayed(int[] oldPositions, int oldSize, int[] newPositions, int newSize,
+                                       RecordingCallback callback) {
+        List<Object> replayed = callback.replayed();
+        List<Integer> expected = positions(newPositions, newSize);
+        List<Integer> old = positions(oldPositions, oldSize);
+        assertEquals(expected.size(), replayed.size());
+        for (int i = 0; i < expected.size(); i++) {
+            if (old.contains(expected.get(i))) {
+                assertEquals(expected.get(i), replayed.get(i));
+            } else {
+                assertSame(RecordingCallback.INSERTED, replayed.get(i));
+            }
+        }
+    }
+
+    private static List<Integer> positions(int[] positions, int size) {
+        List<Integer> list = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            list.add(positions == null ? i : positions[i]);
+        }
+        return list;
+    }
+
+    private static int[] subset(Random random, int size) {
+        List<Integer> kept = new ArrayList<>();
+        for (int i = 0; i < size; i++) {
+            if (random.nextBoolean()) {
+                kept.add(i);
+            }
+        }
+        Collections.sort(kept);
+        int[] result = new int[kept.size()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = kept.get(i);
+        }
+        return result;
+    }
+}
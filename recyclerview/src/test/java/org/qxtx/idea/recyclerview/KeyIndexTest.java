@@ -0,0 +1,204 @@
+package org.qxtx.idea.recyclerview;
+
+import android.support.v7.widget.RecyclerView;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * {@link KeyIndex} kept along a list by the notifications of its changes.
+ */
+public class KeyIndexTest {
+    private final CountingProvider provider = new CountingProvider();
+    private final KeyIndex<Long> index = new KeyIndex<>(provider);
+
+    @Test
+    public void firstLookUpIndexesOnlyUntilTheKey() {
+        List<Long> data = keys(0, 100);
+
+        assertEquals(10, index.find(data, 10));
+        assertEquals(11, provider.calls);
+        provider.calls = 0;
+        assertEquals(5, index.find(data, 5));
+        assertEquals(1, provider.calls);
+        assertEquals(RecyclerView.NO_POSITION, index.find(data, 1000));
+        assertEquals(RecyclerView.NO_POSITION, index.find(null, 5));
+    }
+
+    @Test
+    public void insertAtTheHeadShiftsThePositions() {
+        List<Long> data = keys(0, 100);
+        index.find(data, 1000);
+
+        data.add(0, 1000L);
+        data.add(0, 1001L);
+        index.onInserted(0, 2);
+        provider.calls = 0;
+
+        assertEquals(52, index.find(data, 50));
+        assertEquals(1, provider.calls);
+        //Only the inserted items are indexed.
+        assertEquals(0, index.find(data, 1001));
+        assertTrue(provider.calls <= 4);
+    }
+
+    @Test
+    public void removeNearTheHeadShiftsThePositions() {
+        List<Long> data = keys(0, 100);
+        index.find(data, 1000);
+
+        data.subList(1, 4).clear();
+        index.onRemoved(1, 3);
+        provider.calls = 0;
+
+        assertEquals(96, index.find(data, 99));
+        assertEquals(0, index.find(data, 0));
+        assertEquals(2, provider.calls);
+        assertEquals(RecyclerView.NO_POSITION, index.find(data, 2));
+    }
+
+    @Test
+    public void moveShiftsThePositionsBetween() {
+        List<Long> data = keys(0, 10);
+        index.find(data, 1000);
+
+        data.add(7, data.remove(2));
+        index.onMoved(2, 7);
+
+        for (int i = 0; i < data.size(); i++) {
+            assertEquals(i, index.find(data, data.get(i)));
+        }
+    }
+
+    @Test
+    public void replacedItemIsRejectedByItsKey() {
+        List<Long> data = keys(0, 10);
+        index.find(data, 1000);
+
+        data.set(4, 40L);
+        index.onChanged(4, 1);
+
+        assertEquals(RecyclerView.NO_POSITION, index.find(data, 4));
+        assertEquals(4, index.find(data, 40));
+    }
+
+    @Test
+    public void fullChangeIndexesAgainLazily() {
+        List<Long> data = keys(0, 10);
+        index.find(data, 1000);
+
+        data = keys(20, 30);
+        index.invalidateAll();
+        provider.calls = 0;
+
+        assertEquals(RecyclerView.NO_POSITION, index.find(data, 5));
+        assertEquals(10, provider.calls);
+        assertEquals(3, index.find(data, 23));
+    }
+
+    @Test
+    public void manyNotificationsWithoutLookUpDropTheIndex() {
+        List<Long> data = keys(0, 100);
+        index.find(data, 1000);
+
+        for (int i = 0; i < 20; i++) {
+            data.add(0, 1000L + i);
+            index.onInserted(0, 1);
+        }
+        provider.calls = 0;
+
+        assertEquals(70, index.find(data, 50));
+        assertEquals(71, provider.calls);
+    }
+
+    @Test
+    public void placeholdersHaveNoKey() {
+        List<Long> data = keys(0, 5);
+        data.set(2, null);
+
+        assertEquals(RecyclerView.NO_POSITION, index.find(data, 2));
+        assertEquals(3, index.find(data, 3));
+    }
+
+    @Test
+    public void randomEditsMatchALinearSearch() {
+        Random random = new Random(5);
+        List<Long> data = keys(0, 50);
+        long nextKey = 50;
+        for (int step = 0; step < 20000; step++) {
+            int size = data.size();
+            switch (random.nextInt(size == 0 ? 1 : 6)) {
+                case 0: {
+                    int position = random.nextInt(size + 1);
+                    int count = 1 + random.nextInt(3);
+                    for (int i = 0; i < count; i++) {
+                        data.add(position + i, nextKey++);
+                    }
+                    index.onInserted(position, count);
+                    break;
+                }
+                case 1: {
+                    int position = random.nextInt(size);
+                    int count = 1 + random.nextInt(Math.min(3, size - position));
+                    data.subList(position, position + count).clear();
+                    index.onRemoved(position, count);
+                    break;
+                }
+                case 2: {
+                    int from = random.nextInt(size);
+                    int to = random.nextInt(size);
+                    data.add(to, data.remove(from));
+                    index.onMoved(from, to);
+                    break;
+                }
+                case 3: {
+                    int position = random.nextInt(size);
+                    data.set(position, nextKey++);
+                    index.onChanged(position, 1);
+                    break;
+                }
+                case 4:
+                    if (random.nextInt(50) == 0) {
+                        data = keys(nextKey, nextKey + random.nextInt(60));
+                        nextKey += 60;
+                        index.invalidateAll();
+                    }
+                    break;
+                default:
+                    break;
+            }
+
+            if (random.nextInt(3) == 0) {
+                long key = random.nextInt(4) == 0 || data.isEmpty()
+                        ? random.nextInt((int) nextKey + 1) : data.get(random.nextInt(data.size()));
+                assertEquals(data.indexOf(key), index.find(data, key));
+            }
+        }
+    }
+
+    private static List<Long> keys(long from, long to) {
+        List<Long> list = new ArrayList<>();
+        for (long key = from; key < to; key++) {
+            list.add(key);
+        }
+        return list;
+    }
+
+    /**
+     * The item is its key, the keys asked are counted.
+     */
+    private static final class CountingProvider implements IdeaAdapter.ItemKeyProvider<Long> {
+        int calls;
+
+        @Override
+        public long getKey(Long item) {
+            calls++;
+            return item;
+        }
+    }
+}
@@ -0,0 +1,170 @@
+package org.qxtx.idea.recyclerview;
+
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * {@link LongIntMap} against a {@link HashMap}.
+ */
+public class LongIntMapTest {
+    private static final int MISSING = Integer.MIN_VALUE;
+
+    @Test
+    public void putGetAndOverwrite() {
+        LongIntMap map = new LongIntMap();
+        map.put(5, 1);
+        map.put(Long.MIN_VALUE, 2);
+        map.put(-5, 3);
+        map.put(5, 4);
+
+        assertEquals(3, map.size());
+        assertEquals(4, map.get(5, MISSING));
+        assertEquals(2, map.get(Long.MIN_VALUE, MISSING));
+        assertEquals(3, map.get(-5, MISSING));
+        assertEquals(MISSING, map.get(6, MISSING));
+    }
+
+    @Test
+    public void growsPastItsCapacity() {
+        LongIntMap map = new LongIntMap();
+        for (int i = 0; i < 10000; i++) {
+            map.put(i * 31L << 32, i);
+        }
+        assertEquals(10000, map.size());
+        for (int i = 0; i < 10000; i++) {
+            assertEquals(i, map.get(i * 31L << 32, MISSING));
+        }
+    }
+
+    @Test
+    public void removeKeepsTheOtherEntriesReachable() {
+        LongIntMap map = new LongIntMap();
+        for (int i = 0; i < 8; i++) {
+            map.put(i, i);
+        }
+        map.remove(3);
+        map.remove(3);
+        map.remove(100);
+
+        assertEquals(7, map.size());
+        assertEquals(MISSING, map.get(3, MISSING));
+        for (int i = 0; i < 8; i++) {
+            if (i != 3) {
+                assertEquals(i, map.get(i, MISSING));
+            }
+        }
+    }
+
+    @Test
+    public void clearEmptiesTheMap() {
+        LongIntMap map = new LongIntMap();
+        map.put(1, 1);
+        map.clear();
+        assertEquals(0, map.size());
+        assertEquals(MISSING, map.get(1, MISSING));
+        map.put(1, 2);
+        assertEquals(2, map.get(1, MISSING));
+    }
+
+    @Test
+    public void valuesFollowTheListPositions() {
+        LongIntMap map = new LongIntMap();
+        for (int i = 0; i < 6; i++) {
+            map.put(100 + i, i);
+        }
+
+        //[100, 101, 102, 103, 104, 105] -> [100, 101, x, x, 102, 103, 104, 105]
+        map.shiftValues(2, 2);
+        assertEquals(1, map.get(101, MISSING));
+        assertEquals(4, map.get(102, MISSING));
+        //-> [100, 101, x, x, 105]
+        map.removeValues(4, 7);
+        map.shiftValues(7, -3);
+        assertEquals(MISSING, map.get(102, MISSING));
+        assertEquals(MISSING, map.get(104, MISSING));
+        assertEquals(4, map.get(105, MISSING));
+        //-> [101, x, x, 100, 105]
+        map.moveValue(0, 3);
+        assertEquals(3, map.get(100, MISSING));
+        assertEquals(0, map.get(101, MISSING));
+        //-> [105, 101, x, x, 100]
+        map.moveValue(4, 0);
+        assertEquals(0, map.get(105, MISSING));
+        assertEquals(1, map.get(101, MISSING));
+        assertEquals(4, map.get(100, MISSING));
+        assertEquals(3, map.size());
+    }
+
+    @Test
+    public void randomOperationsMatchAHashMap() {
+        Random random = new Random(3);
+        LongIntMap map = new LongIntMap();
+        Map<Long, Integer> model = new HashMap<>();
+        for (int step = 0; step < 200000; step++) {
+            long key = key(random.nextInt(64));
+            switch (random.nextInt(8)) {
+                case 0:
+                case 1:
+                case 2: {
+                    int value = random.nextInt(100);
+                    map.put(key, value);
+                    model.put(key, value);
+                    break;
+                }
+                case 3:
+                case 4:
+                    map.remove(key);
+                    model.remove(key);
+                    break;
+                case 5: {
+                    int start = random.nextInt(100);
+                    int end = start + random.nextInt(10);
+                    map.removeValues(start, end);
+                    for (Iterator<Integer> it = model.values().iterator(); it.hasNext(); ) {
+                        int value = it.next();
+                        if (value >= start && value < end) {
+                            it.remove();
+                        }
+                    }
+                    break;
+                }
+                case 6: {
+                    int from = random.nextInt(100);
+                    int delta = random.nextInt(5) - 2;
+                    map.shiftValues(from, delta);
+                    for (Map.Entry<Long, Integer> entry : model.entrySet()) {
+                        if (entry.getValue() >= from) {
+                            entry.setValue(entry.getValue() + delta);
+                        }
+                    }
+                    break;
+                }
+                default:
+                    if (random.nextInt(1000) == 0) {
+                        map.clear();
+                        model.clear();
+                    }
+                    break;
+            }
+
+            assertEquals(model.size(), map.size());
+            for (int k = 0; k < 64; k++) {
+                Integer expected = model.get(key(k));
+                assertEquals(expected == null ? MISSING : expected, map.get(key(k), MISSING));
+            }
+        }
+    }
+
+    /**
+     * Few keys, half of them with the same hash, so long runs of entries are removed from often.
+     */
+    private static long key(int k) {
+        return k < 32 ? k * 0x100000001L : k;
+    }
+}
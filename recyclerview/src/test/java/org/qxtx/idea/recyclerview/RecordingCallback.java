@@ -0,0 +1,63 @@
+package org.qxtx.idea.recyclerview;
+
+import android.support.v7.util.ListUpdateCallback;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Keeps the notifications as text, like "insert 2", and replays them on a list of the old items.
+ */
+class RecordingCallback implements ListUpdateCallback {
+    /** Stands for an inserted item when the notifications are replayed. */
+    static final Object INSERTED = new Object();
+
+    final List<String> events = new ArrayList<>();
+    /** Calls of the callback, a range is one call. */
+    int calls;
+    private final List<Object> replay;
+
+    RecordingCallback(List<?> oldItems) {
+        replay = new ArrayList<Object>(oldItems);
+    }
+
+    @Override
+    public void onInserted(int position, int count) {
+        calls++;
+        for (int i = 0; i < count; i++) {
+            events.add("insert " + (position + i));
+            replay.add(position + i, INSERTED);
+        }
+    }
+
+    @Override
+    public void onRemoved(int position, int count) {
+        calls++;
+        for (int i = 0; i < count; i++) {
+            events.add("remove " + position);
+            replay.remove(position);
+        }
+    }
+
+    @Override
+    public void onMoved(int fromPosition, int toPosition) {
+        calls++;
+        events.add("move " + fromPosition + " " + toPosition);
+        replay.add(toPosition, replay.remove(fromPosition));
+    }
+
+    @Override
+    public void onChanged(int position, int count, Object payload) {
+        calls++;
+        for (int i = 0; i < count; i++) {
+            events.add("change " + (position + i));
+        }
+    }
+
+    /**
+     * The old items after the notifications, with {@link #INSERTED} where items were inserted.
+     */
+    List<Object> replayed() {
+        return replay;
+    }
+}
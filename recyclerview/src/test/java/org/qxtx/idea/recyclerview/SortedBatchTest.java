@@ -0,0 +1,366 @@
+package org.qxtx.idea.recyclerview;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Merges of {@link SortedBatch} and the notifications they report.
+ */
+public class SortedBatchTest {
+    private static final Comparator<Item> BY_RANK = new Comparator<Item>() {
+        @Override
+        public int compare(Item a, Item b) {
+            return a.rank < b.rank ? -1 : (a.rank == b.rank ? 0 : 1);
+        }
+    };
+
+    private static final IdeaAdapter.DiffCallback<Item> BY_ID = new IdeaAdapter.DiffCallback<Item>() {
+        @Override
+        public boolean areItemsTheSame(Item oldItem, Item newItem) {
+            return oldItem.id == newItem.id;
+        }
+
+        @Override
+        public boolean areContentsTheSame(Item oldItem, Item newItem) {
+            return oldItem.rank == newItem.rank && oldItem.text.equals(newItem.text);
+        }
+    };
+
+    private final Item a = new Item(1, 10, "a");
+    private final Item b = new Item(2, 20, "b");
+    private final Item c = new Item(3, 30, "c");
+
+    @Test
+    public void addsAfterEqualItemsInTheOrderAdded() {
+        List<Item> data = list(a, b, c);
+        Item x = new Item(4, 20, "x");
+        Item y = new Item(5, 20, "y");
+        Item first = new Item(6, 0, "first");
+
+        TestBatch batch = new TestBatch();
+        batch.add(Arrays.asList(x, first, y));
+        RecordingCallback callback = apply(batch, data, BY_ID);
+
+        assertEquals(list(first, a, b, x, y, c), data);
+        assertEquals(Arrays.asList("insert 0", "insert 3", "insert 4"), callback.events);
+        assertReplayed(data, callback);
+        assertFalse(batch.scheduled);
+    }
+
+    @Test
+    public void addsAfterTheEndOnlyTouchTheTail() {
+        List<Item> data = list(a, b, c);
+        Item x = new Item(4, 40, "x");
+        Item y = new Item(5, 50, "y");
+
+        TestBatch batch = new TestBatch();
+        batch.add(Arrays.asList(y, x));
+        RecordingCallback callback = apply(batch, data, BY_ID);
+
+        assertEquals(list(a, b, c, x, y), data);
+        assertEquals(Arrays.asList("insert 3", "insert 4"), callback.events);
+    }
+
+    @Test
+    public void removesTheSameItemAmongEqualOnes() {
+        Item b2 = new Item(4, 20, "b2");
+        List<Item> data = list(a, b, b2, c);
+
+        TestBatch batch = new TestBatch();
+        batch.remove(new Item(4, 20, "b2"));
+        //Removed twice, the second time finds nothing.
+        batch.remove(b2);
+        RecordingCallback callback = apply(batch, data, BY_ID);
+
+        assertEquals(list(a, b, c), data);
+        assertEquals(Collections.singletonList("remove 2"), callback.events);
+        assertReplayed(data, callback);
+    }
+
+    @Test
+    public void removeOfAMissingItemDoesNothing() {
+        List<Item> data = list(a, b, c);
+
+        TestBatch batch = new TestBatch();
+        batch.remove(new Item(9, 20, "missing"));
+        RecordingCallback callback = apply(batch, data, BY_ID);
+
+        assertEquals(list(a, b, c), data);
+        assertTrue(callback.events.isEmpty());
+    }
+
+    @Test
+    public void removeOfAWaitingAddCancelsIt() {
+        List<Item> data = list(a, b, c);
+        Item x = new Item(4, 20, "x");
+        Item y = new Item(5, 25, "y");
+
+        TestBatch batch = new TestBatch();
+        batch.add(Arrays.asList(x, y));
+        batch.remove(x);
+        RecordingCallback callback = apply(batch, data, BY_ID);
+
+        assertEquals(list(a, b, y, c), data);
+        assertEquals(Collections.singletonList("insert 2"), callback.events);
+    }
+
+    @Test
+    public void updateBetweenTheSameNeighboursIsAChange() {
+        List<Item> data = list(a, b, c);
+        Item newB = new Item(2, 25, "b");
+
+        TestBatch batch = new TestBatch();
+        batch.update(b, newB);
+        RecordingCallback callback = apply(batch, data, BY_ID);
+
+        assertEquals(list(a, newB, c), data);
+        assertSame(newB, data.get(1));
+        assertEquals(Collections.singletonList("change 1"), callback.events);
+    }
+
+    @Test
+    public void updateWithTheSameContentsIsNotNotified() {
+        List<Item> data = list(a, b, c);
+        Item sameB = new Item(2, 20, "b");
+
+        TestBatch batch = new TestBatch();
+        batch.update(b, sameB);
+        RecordingCallback callback = apply(batch, data, BY_ID);
+
+        assertSame(sameB, data.get(1));
+        assertTrue(callback.events.isEmpty());
+    }
+
+    @Test
+    public void updateWithoutDiffCallbackIsAlwaysAChange() {
+        List<Item> data = list(a, b, c);
+        Item sameB = new Item(2, 20, "b");
+
+        TestBatch batch = new TestBatch();
+        batch.update(b, sameB);
+        RecordingCallback callback = apply(batch, data, null);
+
+        assertSame(sameB, data.get(1));
+        assertEquals(Collections.singletonList("change 1"), callback.events);
+    }
+
+    @Test
+    public void updateThatSortsElsewhereMovesTheItem() {
+        List<Item> data = list(a, b, c);
+        Item newA = new Item(1, 35, "a");
+
+        TestBatch batch = new TestBatch();
+        batch.update(a, newA);
+        RecordingCallback callback = apply(batch, data, BY_ID);
+
+        assertEquals(list(b, c, newA), data);
+        assertEquals(Arrays.asList("remove 0", "insert 2"), callback.events);
+        assertReplayed(data, callback);
+    }
+
+    @Test
+    public void updateOfAMissingItemOnlyAdds() {
+        List<Item> data = list(a, c);
+        Item newB = new Item(2, 20, "b");
+
+        TestBatch batch = new TestBatch();
+        batch.update(b, newB);
+        RecordingCallback callback = apply(batch, data, BY_ID);
+
+        assertEquals(list(a, newB, c), data);
+        assertEquals(Collections.singletonList("insert 1"), callback.events);
+    }
+
+    @Test
+    public void removeOfAnUpdatedItemRemovesTheOldOne() {
+        List<Item> data = list(a, b, c);
+        Item newB = new Item(2, 25, "b2");
+
+        TestBatch batch = new TestBatch();
+        batch.update(b, newB);
+        batch.remove(newB);
+        RecordingCallback callback = apply(batch, data, BY_ID);
+
+        assertEquals(list(a, c), data);
+        assertEquals(Collections.singletonList("remove 1"), callback.events);
+    }
+
+    @Test
+    public void removeOfAnItemUpdatedInPlaceRemovesIt() {
+        List<Item> data = list(a, b, c);
+        Item newB = new Item(2, 20, "b2");
+
+        TestBatch batch = new TestBatch();
+        batch.update(b, newB);
+        batch.remove(newB);
+        RecordingCallback callback = apply(batch, data, BY_ID);
+
+        assertEquals(list(a, c), data);
+        assertEquals(Collections.singletonList("remove 1"), callback.events);
+    }
+
+    @Test
+    public void clearDropsTheWaitingEdits() {
+        List<Item> data = list(a, b, c);
+
+        TestBatch batch = new TestBatch();
+        batch.add(Collections.singletonList(new Item(4, 0, "x")));
+        assertTrue(batch.scheduled);
+        batch.clear();
+        assertFalse(batch.scheduled);
+        RecordingCallback callback = apply(batch, data, BY_ID);
+
+        assertEquals(list(a, b, c), data);
+        assertTrue(callback.events.isEmpty());
+    }
+
+    @Test
+    public void randomBatchesMatchASortOfTheResult() {
+        Random random = new Random(42);
+        for (int round = 0; round < 500; round++) {
+            List<Item> data = new ArrayList<>();
+            int nextId = 0;
+            for (int i = random.nextInt(30); i > 0; i--) {
+                data.add(new Item(nextId++, random.nextInt(20), "old"));
+            }
+            Collections.sort(data, BY_RANK);
+            List<Item> expected = new ArrayList<>(data);
+            List<Item> old = new ArrayList<>(data);
+
+            TestBatch batch = new TestBatch();
+            for (int i = random.nextInt(10); i > 0; i--) {
+                int choice = random.nextInt(3);
+                if (choice == 0 || expected.isEmpty()) {
+                    Item item = new Item(nextId++, random.nextInt(20), "new");
+                    batch.add(Collections.singletonList(item));
+                    expected.add(item);
+                } else {
+                    Item item = expected.remove(random.nextInt(expected.size()));
+                    //An update of an item added in the batch would keep both, only items in the list are updated.
+                    if (choice == 1 || !old.contains(item)) {
+                        batch.remove(item);
+                    } else {
+                        Item updated = new Item(item.id, random.nextInt(20), "updated");
+                        batch.update(item, updated);
+                        expected.add(updated);
+                    }
+                }
+            }
+            RecordingCallback callback = apply(batch, data, BY_ID);
+
+            assertSorted(data);
+            assertEquals(ids(sortedById(expected)), ids(sortedById(data)));
+            assertReplayed(data, callback);
+            assertTrue(old.containsAll(withoutInserted(callback.replayed())));
+        }
+    }
+
+    private static RecordingCallback apply(TestBatch batch, List<Item> data,
+                                           IdeaAdapter.DiffCallback<Item> diffCallback) {
+        RecordingCallback callback = new RecordingCallback(data);
+        batch.applyTo(data, BY_RANK, diffCallback, callback);
+        return callback;
+    }
+
+    /**
+     * The items that were not inserted are still in their places after the notifications.
+     */
+    private static void assertReplayed(List<Item> data, RecordingCallback callback) {
+        List<Object> replayed = callback.replayed();
+        assertEquals(data.size(), replayed.size());
+        for (int i = 0; i < replayed.size(); i++) {
+            if (replayed.get(i) != RecordingCallback.INSERTED && replayed.get(i) != data.get(i)) {
+                //Changed in place, the new item took the place of the old one.
+                assertEquals(((Item) replayed.get(i)).id, data.get(i).id);
+            }
+        }
+    }
+
+    private static void assertSorted(List<Item> data) {
+        for (int i = 1; i < data.size(); i++) {
+            assertTrue(BY_RANK.compare(data.get(i - 1), data.get(i)) <= 0);
+        }
+    }
+
+    private static List<Object> withoutInserted(List<Object> replayed) {
+        List<Object> kept = new ArrayList<>(replayed);
+        kept.removeAll(Collections.singleton(RecordingCallback.INSERTED));
+        return kept;
+    }
+
+    private static List<Item> sortedById(List<Item> items) {
+        List<Item> sorted = new ArrayList<>(items);
+        Collections.sort(sorted, new Comparator<Item>() {
+            @Override
+            public int compare(Item a, Item b) {
+                return a.id - b.id;
+            }
+        });
+        return sorted;
+    }
+
+    private static List<String> ids(List<Item> items) {
+        List<String> ids = new ArrayList<>(items.size());
+        for (Item item : items) {
+            ids.add(item.id + ":" + item.rank + ":" + item.text);
+        }
+        return ids;
+    }
+
+    private static List<Item> list(Item... items) {
+        return new ArrayList<>(Arrays.asList(items));
+    }
+
+    /**
+     * Item sorted by rank, the same item as another one when their ids are equal.
+     */
+    private static final class Item {
+        final int id;
+        final int rank;
+        final String text;
+
+        Item(int id, int rank, String text) {
+            this.id = id;
+            this.rank = rank;
+            this.text = text;
+        }
+
+        @Override
+        public String toString() {
+            return id + ":" + rank + ":" + text;
+        }
+    }
+
+    /**
+     * There are no frames on the JVM, the edits are applied by the test.
+     */
+    private static final class TestBatch extends SortedBatch<Item> {
+        boolean scheduled;
+
+        TestBatch() {
+            super(new Target() {
+                @Override
+                public void onEditFrame() {
+                }
+            });
+        }
+
+        @Override
+        void postFrame() {
+            scheduled = true;
+        }
+
+        @Override
+        void removeFrame() {
+            scheduled = false;
+        }
+    }
+}
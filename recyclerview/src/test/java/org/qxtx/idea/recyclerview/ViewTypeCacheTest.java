@@ -0,0 +1,184 @@
+package org.qxtx.idea.recyclerview;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * {@link ViewTypeCache} shifted by the notifications of a model list, whose items are their viewTypes.
+ */
+public class ViewTypeCacheTest {
+    private final List<Integer> data = new ArrayList<>();
+    private final CountingLayout layout = new CountingLayout();
+    private final ViewTypeCache cache = new ViewTypeCache();
+
+    @Test
+    public void asksEveryPositionOnce() {
+        reset(1, 2, 1);
+
+        assertEquals(2, cache.get(1, layout));
+        assertEquals(2, cache.get(1, layout));
+        assertEquals(1, layout.calls);
+        assertEquals(2, cache.count(1, layout));
+        assertEquals(1, cache.count(2, layout));
+        assertEquals(0, cache.count(3, layout));
+        assertEquals(3, layout.calls);
+    }
+
+    @Test
+    public void insertShiftsTheKnownTypes() {
+        reset(1, 2, 3);
+        cache.count(1, layout);
+
+        data.addAll(1, Arrays.asList(4, 4));
+        cache.onInserted(1, 2);
+        layout.calls = 0;
+
+        assertEquals(3, cache.get(4, layout));
+        assertEquals(0, layout.calls);
+        assertEquals(2, cache.count(4, layout));
+        assertEquals(2, layout.calls);
+        assertModel();
+    }
+
+    @Test
+    public void removeForgetsTheRemovedTypes() {
+        reset(1, 2, 2, 3);
+        cache.count(1, layout);
+
+        data.subList(1, 3).clear();
+        cache.onRemoved(1, 2);
+        layout.calls = 0;
+
+        assertEquals(0, cache.count(2, layout));
+        assertEquals(1, cache.count(3, layout));
+        assertEquals(0, layout.calls);
+        assertModel();
+    }
+
+    @Test
+    public void moveKeepsTheTypes() {
+        reset(1, 2, 3, 4);
+        cache.count(1, layout);
+
+        data.add(3, data.remove(0));
+        cache.onMoved(0, 3);
+        data.add(0, data.remove(2));
+        cache.onMoved(2, 0);
+        layout.calls = 0;
+
+        assertModel();
+        assertEquals(0, layout.calls);
+    }
+
+    @Test
+    public void changeAsksAgain() {
+        reset(1, 2, 3);
+        cache.count(1, layout);
+
+        data.set(1, 5);
+        cache.onChanged(1, 1);
+        layout.calls = 0;
+
+        assertEquals(0, cache.count(2, layout));
+        assertEquals(1, cache.count(5, layout));
+        assertEquals(1, layout.calls);
+    }
+
+    @Test
+    public void positionsPastTheSizeAreNotCached() {
+        reset(1);
+        data.add(2);
+
+        assertEquals(2, cache.get(1, layout));
+        assertEquals(2, cache.get(1, layout));
+        assertEquals(2, layout.calls);
+    }
+
+    @Test
+    public void randomNotificationsMatchTheModel() {
+        Random random = new Random(13);
+        reset();
+        for (int step = 0; step < 20000; step++) {
+            int size = data.size();
+            switch (random.nextInt(size == 0 ? 1 : 5)) {
+                case 0: {
+                    int position = random.nextInt(size + 1);
+                    int count = 1 + random.nextInt(3);
+                    for (int i = 0; i < count; i++) {
+                        data.add(position, random.nextInt(4));
+                    }
+                    cache.onInserted(position, count);
+                    break;
+                }
+                case 1: {
+                    int position = random.nextInt(size);
+                    int count = 1 + random.nextInt(Math.min(3, size - position));
+                    data.subList(position, position + count).clear();
+                    cache.onRemoved(position, count);
+                    break;
+                }
+                case 2: {
+                    int from = random.nextInt(size);
+                    int to = random.nextInt(size);
+                    data.add(to, data.remove(from));
+                    cache.onMoved(from, to);
+                    break;
+                }
+                case 3: {
+                    int position = random.nextInt(size);
+                    data.set(position, random.nextInt(4));
+                    cache.onChanged(position, 1);
+                    break;
+                }
+                default:
+                    cache.get(random.nextInt(size), layout);
+                    break;
+            }
+
+            if (random.nextInt(10) == 0) {
+                assertModel();
+            }
+        }
+    }
+
+    private void reset(Integer... types) {
+        data.clear();
+        data.addAll(Arrays.asList(types));
+        cache.reset(data.size());
+        layout.calls = 0;
+    }
+
+    /**
+     * Every position and every count is the one of the model list.
+     */
+    private void assertModel() {
+        for (int type = 0; type < 6; type++) {
+            int expected = 0;
+            for (int item : data) {
+                if (item == type) {
+                    expected++;
+                }
+            }
+            assertEquals(expected, cache.count(type, layout));
+        }
+        for (int i = 0; i < data.size(); i++) {
+            assertEquals((int) data.get(i), cache.get(i, layout));
+        }
+    }
+
+    private final class CountingLayout implements IdeaAdapter.MultiLayout {
+        int calls;
+
+        @Override
+        public int getLayoutId(int pos) {
+            calls++;
+            return data.get(pos);
+        }
+    }
+}